@@ -2,9 +2,6 @@ package edu.cornell.gdiac.downstream;
 
 import java.util.ArrayList;
 
-import com.badlogic.gdx.physics.box2d.Body;
-import com.badlogic.gdx.physics.box2d.Contact;
-
 import edu.cornell.gdiac.downstream.models.*;
 import edu.cornell.gdiac.downstream.obstacle.Obstacle;
 
@@ -21,29 +18,34 @@ public class CollisionController {
 	public ArrayList<WhirlpoolModel> pools = new ArrayList<WhirlpoolModel>();
 
 
-	private Body bCollide;
+	private Obstacle oCollide;
 	private String sCollide;
 	private boolean win = false;
 
 	public CollisionController(PlayerModel koi){
 		this.koi = koi;
-		bCollide = koi.getBody();
+		oCollide = koi;
 		sCollide = "koi";
 	}
 
-	//Called when a collision is made
-	public boolean begin(Contact contact){
-		Body body1 = contact.getFixtureA().getBody();
-		Body body2 = contact.getFixtureB().getBody();
-		String s1 = ((Obstacle)body1.getUserData()).getName();
-		String s2 = ((Obstacle)body2.getUserData()).getName();
+	/**
+	 * Handles a contact that began in the last step, returning true if it kills the koi
+	 *
+	 * @param o1	The obstacle owning the first fixture
+	 * @param o2	The obstacle owning the second fixture
+	 *
+	 * @return true if the contact kills the koi
+	 */
+	public boolean begin(Obstacle o1, Obstacle o2){
+		String s1 = o1.getName();
+		String s2 = o2.getName();
 		if(s1.startsWith("koi")){
 			sCollide = s2;
-			bCollide = body2;
+			oCollide = o2;
 		}
 		else if(s2.startsWith("koi")){
 			sCollide = s1;
-			bCollide = body1;
+			oCollide = o1;
 		}
 		else {
 			return false;
@@ -52,8 +54,8 @@ public class CollisionController {
 				sCollide.startsWith("lotus") || 
 				sCollide.startsWith("fade") || 
 				sCollide.startsWith("lantern")){
-			if(!tethers.contains((TetherModel) bCollide.getUserData())){
-				tethers.add((TetherModel) bCollide.getUserData());
+			if(!tethers.contains((TetherModel) oCollide)){
+				tethers.add((TetherModel) oCollide);
 			}
 		}
 		else if(sCollide.startsWith("goal")){win = true; return false;}
@@ -71,22 +73,24 @@ public class CollisionController {
 		return false;
 	}
 
-	public void end(Contact contact) {
-
-
-		Body body1 = contact.getFixtureA().getBody();
-		Body body2 = contact.getFixtureB().getBody();
-		String s1 = ((Obstacle)body1.getUserData()).getName();
-		String s2 = ((Obstacle)body2.getUserData()).getName();
-		Body bCollide;
+	/**
+	 * Handles a contact that ended in the last step
+	 *
+	 * @param o1	The obstacle owning the first fixture
+	 * @param o2	The obstacle owning the second fixture
+	 */
+	public void end(Obstacle o1, Obstacle o2) {
+		String s1 = o1.getName();
+		String s2 = o2.getName();
+		Obstacle oCollide;
 		String sCollide;
 		if(s1.startsWith("koi")){
 			sCollide = s2;
-			bCollide = body2;
+			oCollide = o2;
 		}
 		else if(s2.startsWith("koi")){
 			sCollide = s1;
-			bCollide = body1;
+			oCollide = o1;
 		}
 		else {
 			return;
@@ -95,7 +99,7 @@ public class CollisionController {
 				sCollide.startsWith("lotus") || 
 				sCollide.startsWith("fade") || 
 				sCollide.startsWith("lantern")){
-			tethers.remove((TetherModel) bCollide.getUserData());
+			tethers.remove((TetherModel) oCollide);
 		}
 		else if(sCollide.startsWith("whirl")){}
 		else if(sCollide.startsWith("rock")){}
@@ -0,0 +1,342 @@
+/*
+ * CompiledLevel.java
+ *
+ * Even with a streaming parser, loading a level still means tokenizing the JSON,
+ * converting every number from text, and triangulating every wall.  A compiled
+ * level (.dlvl) stores all of that already done: flat float arrays for the
+ * geometry and the ear clipping indices for each polygon.  Loading one is a
+ * memory map and a handful of bulk copies.
+ *
+ * Compiled levels are a cache.  The JSON file is still the source of truth, and
+ * the header records a hash of the JSON that was compiled.  If the JSON has
+ * changed since, the compiled level is ignored.
+ */
+package edu.cornell.gdiac.downstream;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+import com.badlogic.gdx.math.*;
+
+import edu.cornell.gdiac.downstream.obstacle.PolygonObstacle;
+
+/**
+ * Static class for writing and loading compiled levels.
+ *
+ * The file is little-endian, and every section starts on a 4-byte boundary:
+ *
+ *   int   magic ("DLVL")
+ *   int   format version
+ *   long  CRC32 of the source JSON
+ *   int   level number
+ *   int   1 if there is a player, followed by 2 floats
+ *   vectors: goal, lilypads, lotuses, lanterns, map, rocks
+ *            (int count, followed by count x,y pairs)
+ *   whirlpools (int count, followed by count x,y,z,w quads)
+ *   enemies (int count, 2*count floats of start positions, then each path)
+ *   walls, shores (int count, then each polygon followed by its triangles)
+ *
+ * A path or polygon is an int length followed by that many floats.  Triangles
+ * are an int length followed by that many shorts, padded to 4 bytes.
+ */
+public class CompiledLevel {
+	/** The extension for compiled level files */
+	public static final String EXTENSION = ".dlvl";
+	/** The first four bytes of every compiled level ("DLVL") */
+	private static final int MAGIC = 0x4C564C44;
+	/** The format version.  Bump this whenever the layout changes. */
+	public static final int VERSION = 1;
+
+	/**
+	 * Compiles a JSON level file.
+	 *
+	 * @param json		The JSON level file
+	 * @param output	The compiled level file to write
+	 */
+	public static void compile(File json, File output) throws IOException {
+		byte[] source = readFully(json);
+		LevelEditor.Level level = LevelParser.read(new InputStreamReader(new ByteArrayInputStream(source)));
+		EarClippingTriangulator triangulator = new EarClippingTriangulator();
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+		try {
+			writeInt(out, MAGIC);
+			writeInt(out, VERSION);
+			writeLong(out, hash(source));
+			writeInt(out, level.number);
+			writeInt(out, level.player == null ? 0 : 1);
+			if (level.player != null) {
+				writeFloat(out, level.player.x);
+				writeFloat(out, level.player.y);
+			}
+			writeVectors(out, level.goal);
+			writeVectors(out, level.lilypads);
+			writeVectors(out, level.lotuses);
+			writeVectors(out, level.lanterns);
+			writeVectors(out, level.map);
+			writeVectors(out, level.rocks);
+
+			writeInt(out, level.whirlpools == null ? 0 : level.whirlpools.size());
+			if (level.whirlpools != null) {
+				for (LevelEditor.Vector4 pool : level.whirlpools) {
+					writeFloat(out, pool.x);
+					writeFloat(out, pool.y);
+					writeFloat(out, pool.z);
+					writeFloat(out, pool.w);
+				}
+			}
+
+			writeInt(out, level.getEnemyCount());
+			writeFloats(out, level.enemyStarts, false);
+			for (float[] path : level.enemyPaths) {
+				writeFloats(out, path, true);
+			}
+
+			writePolygons(out, level.walls, triangulator);
+			writePolygons(out, level.shores, triangulator);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the compiled level, or null if it is missing or out of date.
+	 *
+	 * The compiled level is out of date if it was written by a different
+	 * format version, or if the JSON file exists and no longer matches the
+	 * hash in the header.
+	 *
+	 * @param compiled	The compiled level file
+	 * @param json		The JSON level file it was compiled from
+	 *
+	 * @return the compiled level, or null if it is missing or out of date.
+	 */
+	public static LevelEditor.Level load(File compiled, File json) {
+		if (!compiled.exists()) {
+			return null;
+		}
+		try {
+			FileInputStream stream = new FileInputStream(compiled);
+			try {
+				FileChannel channel = stream.getChannel();
+				ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				buffer.order(ByteOrder.LITTLE_ENDIAN);
+				if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+					return null;
+				}
+				long hash = buffer.getLong();
+				if (json.exists() && hash(readFully(json)) != hash) {
+					return null;
+				}
+				return read(buffer);
+			} finally {
+				stream.close();
+			}
+		} catch (Exception e) {
+			System.out.println(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the level stored in the buffer (after the header)
+	 *
+	 * @param buffer	The mapped level file
+	 *
+	 * @return the level stored in the buffer
+	 */
+	private static LevelEditor.Level read(ByteBuffer buffer) {
+		LevelEditor.Level level = new LevelEditor.Level();
+		level.number = buffer.getInt();
+		if (buffer.getInt() != 0) {
+			level.player = new Vector2(buffer.getFloat(), buffer.getFloat());
+		}
+		level.goal = readVectors(buffer);
+		level.lilypads = readVectors(buffer);
+		level.lotuses = readVectors(buffer);
+		level.lanterns = readVectors(buffer);
+		level.map = readVectors(buffer);
+		level.rocks = readVectors(buffer);
+
+		int count = buffer.getInt();
+		level.whirlpools = new ArrayList<LevelEditor.Vector4>(count);
+		for (int ii = 0; ii < count; ii++) {
+			level.whirlpools.add(new LevelEditor.Vector4(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat()));
+		}
+
+		count = buffer.getInt();
+		level.enemyStarts = readFloats(buffer, 2*count);
+		level.enemyPaths = new float[count][];
+		for (int ii = 0; ii < count; ii++) {
+			level.enemyPaths[ii] = readFloats(buffer, buffer.getInt());
+		}
+
+		count = buffer.getInt();
+		level.walls = new float[count][];
+		level.wallTriangles = new short[count][];
+		for (int ii = 0; ii < count; ii++) {
+			level.walls[ii] = readFloats(buffer, buffer.getInt());
+			level.wallTriangles[ii] = readShorts(buffer, buffer.getInt());
+		}
+
+		count = buffer.getInt();
+		level.shores = new float[count][];
+		level.shoreTriangles = new short[count][];
+		for (int ii = 0; ii < count; ii++) {
+			level.shores[ii] = readFloats(buffer, buffer.getInt());
+			level.shoreTriangles[ii] = readShorts(buffer, buffer.getInt());
+		}
+		return level;
+	}
+
+	/**
+	 * Returns the hash stored in the header of source data
+	 *
+	 * @param source	The contents of a JSON level file
+	 *
+	 * @return the hash stored in the header of source data
+	 */
+	public static long hash(byte[] source) {
+		CRC32 crc = new CRC32();
+		crc.update(source);
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns the contents of a file
+	 *
+	 * @param file	The file to read
+	 *
+	 * @return the contents of a file
+	 */
+	private static byte[] readFully(File file) throws IOException {
+		byte[] result = new byte[(int)file.length()];
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			in.readFully(result);
+		} finally {
+			in.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the next list of vectors in the buffer
+	 *
+	 * @param buffer	The mapped level file
+	 *
+	 * @return the next list of vectors in the buffer
+	 */
+	private static ArrayList<Vector2> readVectors(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		ArrayList<Vector2> result = new ArrayList<Vector2>(count);
+		for (int ii = 0; ii < count; ii++) {
+			result.add(new Vector2(buffer.getFloat(), buffer.getFloat()));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the next floats in the buffer, copied in bulk
+	 *
+	 * @param buffer	The mapped level file
+	 * @param count		The number of floats
+	 *
+	 * @return the next floats in the buffer
+	 */
+	private static float[] readFloats(ByteBuffer buffer, int count) {
+		float[] result = new float[count];
+		buffer.asFloatBuffer().get(result);
+		buffer.position(buffer.position()+4*count);
+		return result;
+	}
+
+	/**
+	 * Returns the next shorts in the buffer, copied in bulk
+	 *
+	 * The buffer is left at the next 4-byte boundary.
+	 *
+	 * @param buffer	The mapped level file
+	 * @param count		The number of shorts
+	 *
+	 * @return the next shorts in the buffer
+	 */
+	private static short[] readShorts(ByteBuffer buffer, int count) {
+		short[] result = new short[count];
+		buffer.asShortBuffer().get(result);
+		buffer.position(buffer.position()+2*count+(count % 2)*2);
+		return result;
+	}
+
+	/**
+	 * Writes a list of vectors, preceded by its length
+	 *
+	 * @param out		The output stream
+	 * @param vectors	The vectors to write (may be null)
+	 */
+	private static void writeVectors(DataOutputStream out, ArrayList<Vector2> vectors) throws IOException {
+		writeInt(out, vectors == null ? 0 : vectors.size());
+		if (vectors != null) {
+			for (Vector2 v : vectors) {
+				writeFloat(out, v.x);
+				writeFloat(out, v.y);
+			}
+		}
+	}
+
+	/**
+	 * Writes an array of floats
+	 *
+	 * @param out		The output stream
+	 * @param values	The floats to write
+	 * @param length	Whether to write the length first
+	 */
+	private static void writeFloats(DataOutputStream out, float[] values, boolean length) throws IOException {
+		if (length) {
+			writeInt(out, values.length);
+		}
+		for (float f : values) {
+			writeFloat(out, f);
+		}
+	}
+
+	/**
+	 * Writes each polygon followed by its triangulation
+	 *
+	 * @param out			The output stream
+	 * @param polygons		The polygons to write
+	 * @param triangulator	The triangulator to use
+	 */
+	private static void writePolygons(DataOutputStream out, float[][] polygons, EarClippingTriangulator triangulator) throws IOException {
+		writeInt(out, polygons.length);
+		for (float[] polygon : polygons) {
+			writeFloats(out, polygon, true);
+			short[] triangles = PolygonObstacle.triangulate(polygon, triangulator);
+			writeInt(out, triangles.length);
+			for (short s : triangles) {
+				out.writeShort(Short.reverseBytes(s));
+			}
+			if (triangles.length % 2 != 0) {
+				out.writeShort(0);
+			}
+		}
+	}
+
+	/** Writes a little-endian int */
+	private static void writeInt(DataOutputStream out, int value) throws IOException {
+		out.writeInt(Integer.reverseBytes(value));
+	}
+
+	/** Writes a little-endian long */
+	private static void writeLong(DataOutputStream out, long value) throws IOException {
+		out.writeLong(Long.reverseBytes(value));
+	}
+
+	/** Writes a little-endian float */
+	private static void writeFloat(DataOutputStream out, float value) throws IOException {
+		out.writeInt(Integer.reverseBytes(Float.floatToIntBits(value)));
+	}
+}
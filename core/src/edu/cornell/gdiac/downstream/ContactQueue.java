@@ -0,0 +1,183 @@
+/*
+ * ContactQueue.java
+ *
+ * Box2D reports contacts from inside world.step, through a JNI callback for every
+ * begin and end.  We used to run the collision logic right there, which made the
+ * step slower and meant the game state changed halfway through the physics.  The
+ * contact listener now only records each event in this queue.  The game handles
+ * the events once the step is over, in the order Box2D reported them.
+ *
+ * The Contact object passed to a callback is reused by LibGDX, so we copy out the
+ * obstacles that own the fixtures.  The obstacles stay valid after the step, even if
+ * the obstacle has been removed from the world.  The fixtures themselves are not
+ * kept, since LibGDX pools them once their body is destroyed.
+ */
+package edu.cornell.gdiac.downstream;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.physics.box2d.Contact;
+
+import edu.cornell.gdiac.downstream.obstacle.Obstacle;
+
+/**
+ * Ring buffer of begin and end contact events.
+ *
+ * The buffer is allocated up front and only grows (doubling) if a single step
+ * reports more events than it holds.  No memory is allocated per event.
+ */
+public class ContactQueue {
+	/** The default number of events the queue holds before it grows */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/** Whether each event is a begin (true) or an end (false) */
+	private boolean[] begins;
+	/** The obstacle owning the first fixture of each event */
+	private Obstacle[] obstacleA;
+	/** The obstacle owning the second fixture of each event */
+	private Obstacle[] obstacleB;
+	/** The index of the oldest event */
+	private int head;
+	/** The number of events in the queue */
+	private int size;
+
+	/**
+	 * Creates a new, empty queue with the default capacity
+	 */
+	public ContactQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new, empty queue
+	 *
+	 * @param capacity	The number of events to allocate up front (a power of two)
+	 */
+	public ContactQueue(int capacity) {
+		allocate(Math.max(2, MathUtils.nextPowerOfTwo(capacity)));
+	}
+
+	/**
+	 * Allocates the event arrays with the given capacity
+	 *
+	 * @param capacity	The number of events (a power of two)
+	 */
+	private void allocate(int capacity) {
+		begins = new boolean[capacity];
+		obstacleA = new Obstacle[capacity];
+		obstacleB = new Obstacle[capacity];
+	}
+
+	/**
+	 * Records a contact event
+	 *
+	 * This is called from the contact listener, so it does as little as possible.
+	 *
+	 * @param contact	The contact reported by Box2D
+	 * @param begin		Whether the contact began (true) or ended (false)
+	 */
+	public void push(Contact contact, boolean begin) {
+		if (size == begins.length) {
+			grow();
+		}
+		int index = (head+size) & (begins.length-1);
+		begins[index] = begin;
+		obstacleA[index] = (Obstacle)contact.getFixtureA().getBody().getUserData();
+		obstacleB[index] = (Obstacle)contact.getFixtureB().getBody().getUserData();
+		size++;
+	}
+
+	/**
+	 * Doubles the capacity, keeping the events in order
+	 */
+	private void grow() {
+		boolean[] oldBegins = begins;
+		Obstacle[] oldObstacleA = obstacleA;
+		Obstacle[] oldObstacleB = obstacleB;
+		int mask = oldBegins.length-1;
+		allocate(oldBegins.length*2);
+		for (int ii = 0; ii < size; ii++) {
+			int index = (head+ii) & mask;
+			begins[ii] = oldBegins[index];
+			obstacleA[ii] = oldObstacleA[index];
+			obstacleB[ii] = oldObstacleB[index];
+		}
+		head = 0;
+	}
+
+	/**
+	 * Returns true if there are no events in the queue
+	 *
+	 * @return true if there are no events in the queue
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of events in the queue
+	 *
+	 * @return the number of events in the queue
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of events the queue holds before it grows
+	 *
+	 * @return the number of events the queue holds before it grows
+	 */
+	public int capacity() {
+		return begins.length;
+	}
+
+	/**
+	 * Returns true if the oldest event is a begin contact
+	 *
+	 * @return true if the oldest event is a begin contact
+	 */
+	public boolean isBegin() {
+		return begins[head];
+	}
+
+	/**
+	 * Returns the obstacle owning the first fixture of the oldest event
+	 *
+	 * @return the obstacle owning the first fixture of the oldest event
+	 */
+	public Obstacle getObstacleA() {
+		return obstacleA[head];
+	}
+
+	/**
+	 * Returns the obstacle owning the second fixture of the oldest event
+	 *
+	 * @return the obstacle owning the second fixture of the oldest event
+	 */
+	public Obstacle getObstacleB() {
+		return obstacleB[head];
+	}
+
+	/**
+	 * Removes the oldest event from the queue
+	 *
+	 * The references are cleared, so that the queue does not keep a deleted
+	 * level alive.
+	 */
+	public void pop() {
+		obstacleA[head] = null;
+		obstacleB[head] = null;
+		head = (head+1) & (begins.length-1);
+		size--;
+	}
+
+	/**
+	 * Removes every event from the queue
+	 */
+	public void clear() {
+		while (size > 0) {
+			pop();
+		}
+		head = 0;
+	}
+}
@@ -7,12 +7,18 @@
  */
 package edu.cornell.gdiac.downstream;
 
+import java.io.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.PooledEngine;
 import com.badlogic.gdx.math.*;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
@@ -27,9 +33,13 @@ import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.physics.box2d.joints.RevoluteJointDef;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.TimeUtils;
 
 import edu.cornell.gdiac.util.*;
 import edu.cornell.gdiac.downstream.*;
+import edu.cornell.gdiac.downstream.ai.*;
+import edu.cornell.gdiac.downstream.ecs.*;
 import edu.cornell.gdiac.downstream.obstacle.*;
 import edu.cornell.gdiac.downstream.models.*;
 import edu.cornell.gdiac.downstream.models.TetherModel.TetherType;
@@ -79,6 +89,14 @@ public class DownstreamController extends WorldController implements ContactList
 	private static final float TETHER_DENSITY = ENEMY_DENSITY;
 	private static final float TETHER_FRICTION = ENEMY_FRICTION;
 	private static final float TETHER_RESTITUTION = BASIC_RESTITUTION;
+	/** Whether tethers and whirlpools are sensors */
+	private static final boolean SENSOR_TETHERS = true;
+	/** Whether walls and shores merge their triangles into larger convex fixtures */
+	private static final boolean CONVEX_LAND = true;
+	/** Whether walls only collide along their outline (any wall contact is lethal) */
+	private static final boolean BOUNDARY_WALLS = true;
+	/** The time each frame may spend finding enemy paths (in nanoseconds) */
+	private static final long PATH_BUDGET = 1000000L;
 
 	// Important game objects, lists, and controllers //
 	private ArrayList<TetherModel> tethers = new ArrayList<TetherModel>();
@@ -95,6 +113,23 @@ public class DownstreamController extends WorldController implements ContactList
 	private EnemyModel eFish;
 	private CameraController cameraController;
 	private CollisionController collisionController;
+	/** The contacts recorded during the last step */
+	private ContactQueue contacts = new ContactQueue();
+	/** Finds the enemy paths through the water of this level */
+	private Navigator navigator;
+
+	// Entities and the systems that update them //
+	/** The entities of the level; components are pooled across levels */
+	private PooledEngine engine = new PooledEngine();
+	/** The entity for each obstacle that has one */
+	private ObjectMap<Obstacle,Entity> entities = new ObjectMap<Obstacle,Entity>();
+	private TransformSystem transformSystem;
+	private AnimationSystem animationSystem;
+	private PatrolSystem patrolSystem;
+	private LightSystem lightSystem;
+	private TetherSystem tetherSystem;
+	/** Loads the next level in the background */
+	private LevelPrefetcher prefetcher = new LevelPrefetcher();
 	private TetherModel closestTether;
 	private WhirlpoolModel closestWhirlpool;
 	private int litLotusCount;
@@ -105,9 +140,33 @@ public class DownstreamController extends WorldController implements ContactList
 	private int respawnTimer = RESPAWN_TIME;
 	private TetherModel checkpoint0;
 	private int tillNextLevel = 0;
+	/** Time taken by the most recent level swap (in nanoseconds) */
+	private long swapTime;
 	private Vector2 enemyPos8;
 	private ArrayList<Vector2> enemyPath8;
 
+	// Hot reload //
+	/** How often to check the level file for changes (in seconds) */
+	private static final float RELOAD_INTERVAL = 0.5f;
+	/** The bodies built from the current level, keyed by the data they were built from */
+	private HashMap<String,Obstacle> pieces = new HashMap<String,Obstacle>();
+	/** The bodies from the previous version of the level, during a hot reload */
+	private HashMap<String,Obstacle> spares = new HashMap<String,Obstacle>();
+	/** The goal and shadow the current goal tile was built from */
+	private String goalKey;
+	/** The file the current level was loaded from (or null if it is not watched) */
+	private File levelFile;
+	/** The modification time of the level file when it was last loaded */
+	private long levelModified;
+	/** The size of the level file when it was last loaded */
+	private long levelLength;
+	/** The time since the level file was last checked (in seconds) */
+	private float reloadTime;
+	/** The changed level file, while it is parsed in the background */
+	private Future<LevelPrefetcher.PreparedLevel> pendingReload;
+	/** Time taken by the most recent hot reload (in nanoseconds) */
+	private long reloadDuration;
+
 	/**
 	 * Preloads the assets for this controller.
 	 *
@@ -176,6 +235,18 @@ public class DownstreamController extends WorldController implements ContactList
 		paused = false;
 
 		speed = 1;
+
+		// The systems are updated by hand in update, so they keep the old order
+		transformSystem = new TransformSystem();
+		animationSystem = new AnimationSystem();
+		lightSystem = new LightSystem(litlanterns);
+		patrolSystem = new PatrolSystem(lightSystem.getLights());
+		tetherSystem = new TetherSystem();
+		engine.addSystem(transformSystem);
+		engine.addSystem(animationSystem);
+		engine.addSystem(patrolSystem);
+		engine.addSystem(lightSystem);
+		engine.addSystem(tetherSystem);
 	}
 
 	public DownstreamController(int level) {
@@ -184,13 +255,19 @@ public class DownstreamController extends WorldController implements ContactList
 	}
 	/***
 	 * use when clearing the level to populate a new level
+	 *
+	 * This destroys only the bodies that belong to the level.  The Box2D world,
+	 * the canvas, the pause menu, and every loaded asset are kept.
 	 */
 	public void deleteAll(){
-		Vector2 gravity = new Vector2(world.getGravity() );
-
 		for(Obstacle obj : objects) {
 			obj.deactivatePhysics(world);
 		}
+		for(Obstacle obj : addQueue) {
+			obj.deactivatePhysics(world);
+		}
+		// Destroying a body ends its contacts, so drop those events with the level
+		contacts.clear();
 		enemies.clear();
 		lanterns.clear();
 		litlanterns.clear();
@@ -200,58 +277,114 @@ public class DownstreamController extends WorldController implements ContactList
 		wpools.clear();
 		objects.clear();
 		addQueue.clear();
-		world.dispose();
 		walls.clear();
 		wps.clear();
+		engine.removeAllEntities();
+		entities.clear();
+		pieces.clear();
+		spares.clear();
+		if (pendingReload != null) {
+			pendingReload.cancel(false);
+			pendingReload = null;
+		}
 
 		dead = false;
 		whirled = false;
 		started = false;
 		paused = false;
+		respawnTimer = RESPAWN_TIME;
 
-		pauseMenu = new PauseMenuMode(canvas);
-		world = new World(gravity,false);
-		world.setContactListener(this);
+		if (pauseMenu == null) {
+			pauseMenu = new PauseMenuMode(canvas);
+		}
 		setComplete(false);
 		setFailure(false);
-
 	}
 
 	/**
-	 * Resets the status of the game so that we can play again.
+	 * Replaces the current level with the given one, in place.
+	 *
+	 * This is the single path for restarting, advancing, and retreating.  It keeps
+	 * the world and controller alive, so the only cost is building the new bodies.
 	 *
-	 * This method disposes of the world and creates a new one.
+	 * @param level The level number to load
 	 */
-	public void reset() {
-		Vector2 gravity = new Vector2(world.getGravity() );
+	public void swapLevel(int level) {
+		long start = TimeUtils.nanoTime();
+		deleteAll();
+		this.level = level;
 
-		for(Obstacle obj : objects) {
-			obj.deactivatePhysics(world);
+		// The next level is usually already parsed and triangulated in the background
+		LevelPrefetcher.PreparedLevel prepared;
+		if (this.level != -1) {
+			prepared = prefetcher.take(this.level);
+			LevelEditor.setLevelFile(this.level);
+		} else {
+			prepared = prefetcher.prepare(LevelEditor.loadFromJson());
 		}
-		enemies.clear();
-		lanterns.clear();
-		litlanterns.clear();
-		tethers.clear();
-		shadows.clear();
-		wpools.clear();
-		objects.clear();
-		addQueue.clear();
-		world.dispose();
-		walls.clear();
-		wps.clear();
+		populateLevel(prepared, this.level != -1 ? new File("levels/"+this.level+".json") : null);
 
-		dead = false;
-		whirled = false;
+		// Start parsing the next level while this one is played
+		if (this.level != -1) {
+			prefetcher.prefetch(this.level + 1);
+		}
+		swapTime = TimeUtils.timeSinceNanos(start);
+		Gdx.app.debug("DownstreamController", "Level "+level+" swapped in "+TimeUtils.nanosToMillis(swapTime)+" ms, "
+				+TextureController.getInstance().getResidentBytes()/1024+" KB of sheets resident");
+	}
 
-		started = false;
-		paused = false;
+	/**
+	 * Replaces the current level with the one in the given file, in place.
+	 *
+	 * This is for levels outside of the levels directory, like generated ones.
+	 * The level number still picks the time of day and the tutorials.  The file
+	 * is watched for edits like any other level.
+	 *
+	 * @param level The level number to play it as
+	 * @param file	The level file
+	 */
+	public void swapLevel(int level, File file) throws IOException {
+		LevelEditor.Level parsed;
+		Reader reader = new BufferedReader(new FileReader(file));
+		try {
+			parsed = LevelParser.read(reader);
+		} finally {
+			reader.close();
+		}
 
-		pauseMenu = new PauseMenuMode(canvas);
-		world = new World(gravity,false);
-		world.setContactListener(this);
-		setComplete(false);
-		setFailure(false);
-		populateLevel();
+		long start = TimeUtils.nanoTime();
+		deleteAll();
+		this.level = level;
+		populateLevel(prefetcher.prepare(parsed), file);
+		swapTime = TimeUtils.timeSinceNanos(start);
+		Gdx.app.debug("DownstreamController", "Level "+file+" swapped in "+TimeUtils.nanosToMillis(swapTime)+" ms");
+	}
+
+	/**
+	 * Returns the time taken by the most recent level swap (in nanoseconds)
+	 *
+	 * @return the time taken by the most recent level swap
+	 */
+	public long getSwapTime() {
+		return swapTime;
+	}
+
+	/**
+	 * Sets whether the enemy AI is split across threads
+	 *
+	 * @param value	whether the enemy AI is split across threads
+	 */
+	public void setParallelEnemies(boolean value) {
+		patrolSystem.setParallel(value);
+	}
+
+	/**
+	 * Resets the status of the game so that we can play again.
+	 *
+	 * This method clears the level bodies and rebuilds the current level.
+	 */
+	public void reset() {
+		swapLevel(this.level);
 	}
 
 	private Color levelAlpha(int level){
@@ -278,6 +411,30 @@ public class DownstreamController extends WorldController implements ContactList
 		}
 	}
 
+	/**
+	 * Returns the times of day whose sheets this level will draw.
+	 *
+	 * Without a tether fade, only the animation time of day is drawn.  With a
+	 * fade, the static time of day is drawn on top of the next one.  The sheets
+	 * for any other time of day are left alone until a level needs them.
+	 *
+	 * @param staticNDS		The static time of day (from dayNightBinary)
+	 * @param animationNDS	The animation time of day (from NightDayDeterminer)
+	 *
+	 * @return the times of day whose sheets this level will draw.
+	 */
+	private int[] getTimeOfDayManifest(int staticNDS, int animationNDS){
+		if (!tetherFade){
+			return new int[] { animationNDS };
+		}
+		else if (staticNDS == DAY){
+			return new int[] { DAY, SUNSET };
+		}
+		else{
+			return new int[] { SUNSET, NIGHT };
+		}
+	}
+
 	private int dayNightBinary(int level){
 		if (level <= 8){
 			return 0;
@@ -292,15 +449,12 @@ public class DownstreamController extends WorldController implements ContactList
 
 	/**
 	 * Lays out the game geography.
+	 *
+	 * @param prepared	The level to build
+	 * @param file		The level file to watch for edits (or null)
 	 */
-	private void populateLevel() {
-
-		LevelEditor.Level level;
-		if (this.level != -1) {
-			level = LevelEditor.loadFromJson(this.level);
-		} else {
-			level = LevelEditor.loadFromJson();
-		}
+	private void populateLevel(LevelPrefetcher.PreparedLevel prepared, File file) {
+		LevelEditor.Level level = prepared.level;
 
 
 		// 0 is day 1 is sunset 2 is night
@@ -317,6 +471,9 @@ public class DownstreamController extends WorldController implements ContactList
 		setLevelAlpha(levelAlpha(this.level));
 		tillNextLevel = 0;
 		tetherFade = false;
+		for (int time : getTimeOfDayManifest(staticNDS, animationNDS)) {
+			loadTimeOfDay(time);
+		}
 		//animation is a bitch
 		if (!tetherFade){
 			if (animationNDS == 0){
@@ -417,12 +574,271 @@ public class DownstreamController extends WorldController implements ContactList
 		float rad = lilyTexture.getRegionWidth()/scale.x/2;
 		lilyTexture = lilyAnimation.getKeyFrame(stateTime);
 
-		boolean sensorTethers = true;
 		boolean sensorPools = true;
 
 
+		navigator = new Navigator(prepared.navigation);
+		buildWaterPieces(prepared);
+
+		//Create goal tile
+		createGoal(level);
+
+		// Create the fish avatar
+		dwidth  = koiTexture.getRegionWidth()/scale.x;
+		dheight = koiTexture.getRegionHeight()/scale.y;
+		//		System.out.println(dwidth + " " + dheight);
+		koi = new PlayerModel(level.player.x, level.player.y, 2.5f, 0.925f);
+		koi.setDrawScale(scale);
+		koi.setName("koi");
+		koi.setTexture(koiTexture);
+		koi.setWhirled(false);
+		koi.setArrowTexture(koiArrow);
+		addObject(koi);
+		createEntity(koi, koiTexture);
+
+		//create shadow(s)
+		createShadow(level);
+
+		buildLandPieces(prepared, staticNDS, rad);
+		goalKey = level.goal+" "+lanterns.isEmpty();
+
+
+		//tethers.add(wp);
+
+		//Setup checkpoint and collision controller
+		collisionController = new CollisionController(koi);
+		tetherSystem.setCollisions(collisionController);
+		checkpoint0 = getClosestTetherTo(koi.initPos);
+		checkpoint = checkpoint0;
+
+		//START KOI CODE
+		//koi on tether
+		boolean onTether = false;
+		if(onTether){
+			koi.initPos = checkpoint.getPosition().add(koi.NE.cpy().rotate90(1).nor().scl(TetherModel.TETHER_DEFAULT_ORBIT));
+			koi.setPosition(koi.initPos);
+			koi.setAttemptingTether(true);
+			koi.setTethered(true);
+			collisionController.initStart(checkpoint0);
+			cacheVel = koi.NE;
+			koi.setLinearVelocity(cacheVel);
+			koi.resolveDirection();
+			koi.setLinearVelocity(Vector2.Zero);
+		}
+		//koi approaching tether
+		else{
+			koi.setTethered(false);
+			koi.setAttemptingTether(true);
+			Vector2 initVel = checkpoint0.getPosition().cpy().sub(koi.initPos.cpy()).nor();
+			Vector2 initTan = checkpoint0.getPosition().add(initVel.cpy().rotate90(1).nor().scl(TetherModel.TETHER_DEFAULT_ORBIT));
+			cacheVel = initTan.cpy().sub(koi.initPos.cpy()).nor();
+			koi.setLinearVelocity(cacheVel);
+			koi.resolveDirection();
+			koi.setLinearVelocity(Vector2.Zero);
+		}
+
+		setCameraBounds(level);
+		cameraController.zoomStart(levelCamWidth, levelCamHeight, center, checkpoint0.getPosition().cpy().scl(scale));
+
+		//TUTORIAL CODE
+		HUD = new HUDitems(lanterns.size(), UILotusTexture, energyBarTexture, secondFont);
+		if (this.level == 1){
+			/*HUD.setTutorialTexture(tutorial1);
+			HUD.setHelpTexture(helpTexture);
+			HUD.setTutorialStatus(true);*/
+			TutorialItems t1 = new TutorialItems(20, 2, tutorial1.getRegionHeight(), tutorial1.getRegionWidth());
+			t1.setBodyType(BodyDef.BodyType.StaticBody);
+			t1.setName("tutorial"+ 1);
+			t1.setDensity(TETHER_DENSITY);
+			t1.setFriction(TETHER_FRICTION);
+			t1.setRestitution(TETHER_RESTITUTION);
+			t1.setSensor(SENSOR_TETHERS);
+			t1.setDrawScale(scale);
+			t1.setTexture(tutorial1);
+			objects.add(t1, ObjectStore.Layer.OVERLAY);
+		}
+		else if (this.level == 2){
+			/*HUD.setTutorialTexture(tutorial2);
+			HUD.setHelpTexture(helpTexture);
+			HUD.setTutorialStatus(true);*/
+			TutorialItems t2 = new TutorialItems(18, 15, tutorial2.getRegionHeight(), tutorial1.getRegionWidth());
+			t2.setBodyType(BodyDef.BodyType.StaticBody);
+			t2.setName("tutorial"+ 1);
+			t2.setDensity(TETHER_DENSITY);
+			t2.setFriction(TETHER_FRICTION);
+			t2.setRestitution(TETHER_RESTITUTION);
+			t2.setSensor(SENSOR_TETHERS);
+			t2.setDrawScale(scale);
+			t2.setTexture(tutorial2);
+			objects.add(t2, ObjectStore.Layer.OVERLAY);
+		}
+		else if (this.level == 6){
+			/*HUD.setTutorialTexture(tutorial3);
+			HUD.setHelpTexture(helpTexture);
+			HUD.setTutorialStatus(true);*/
+			TutorialItems t3 = new TutorialItems(-13, 18, tutorial3.getRegionHeight(), tutorial1.getRegionWidth());
+			t3.setBodyType(BodyDef.BodyType.StaticBody);
+			t3.setName("tutorial"+ 1);
+			t3.setDensity(TETHER_DENSITY);
+			t3.setFriction(TETHER_FRICTION);
+			t3.setRestitution(TETHER_RESTITUTION);
+			t3.setSensor(SENSOR_TETHERS);
+			t3.setDrawScale(scale);
+			t3.setTexture(tutorial3);
+			objects.add(t3, ObjectStore.Layer.OVERLAY);
+		}
+		else if (this.level == 4){
+			/*HUD.setTutorialTexture(tutorial4);
+			HUD.setHelpTexture(helpTexture);
+			HUD.setTutorialStatus(true);*/
+			TutorialItems t4 = new TutorialItems(10, 3, tutorial4.getRegionHeight(), tutorial1.getRegionWidth());
+			t4.setBodyType(BodyDef.BodyType.StaticBody);
+			t4.setName("tutorial"+ 1);
+			t4.setDensity(TETHER_DENSITY);
+			t4.setFriction(TETHER_FRICTION);
+			t4.setRestitution(TETHER_RESTITUTION);
+			t4.setSensor(SENSOR_TETHERS);
+			t4.setDrawScale(scale);
+			t4.setTexture(tutorial4);
+			objects.add(t4, ObjectStore.Layer.OVERLAY);
+		}
+		else if (this.level == 7){
+			/*HUD.setTutorialTexture(tutorial4);
+			HUD.setHelpTexture(helpTexture);
+			HUD.setTutorialStatus(true);*/
+			TutorialItems t6 = new TutorialItems(11, 3, tutorial4.getRegionHeight(), tutorial1.getRegionWidth());
+			t6.setBodyType(BodyDef.BodyType.StaticBody);
+			t6.setName("tutorial"+ 1);
+			t6.setDensity(TETHER_DENSITY);
+			t6.setFriction(TETHER_FRICTION);
+			t6.setRestitution(TETHER_RESTITUTION);
+			t6.setSensor(SENSOR_TETHERS);
+			t6.setDrawScale(scale);
+			t6.setTexture(tutorial6);
+			objects.add(t6, ObjectStore.Layer.OVERLAY);
+		}
+		else if(this.level == 14){
+			/*HUD.setTutorialTexture(tutorial6);
+			HUD.setHelpTexture(helpTexture);
+			HUD.setTutorialStatus(true);*/
+			TutorialItems t5 = new TutorialItems(-25, 0, tutorial5.getRegionHeight(), tutorial1.getRegionWidth());
+			t5.setBodyType(BodyDef.BodyType.StaticBody);
+			t5.setName("tutorial"+ 1);
+			t5.setDensity(TETHER_DENSITY);
+			t5.setFriction(TETHER_FRICTION);
+			t5.setRestitution(TETHER_RESTITUTION);
+			t5.setSensor(SENSOR_TETHERS);
+			t5.setDrawScale(scale);
+			t5.setTexture(tutorial5);
+			objects.add(t5, ObjectStore.Layer.OVERLAY);
+		}
+		/*else if(this.level == 7){
+			HUD.setTutorialTexture(tutorial5);
+			HUD.setHelpTexture(helpTexture);
+			HUD.setTutorialStatus(true);
+		}*/
+		addHUD(HUD);
+
+		// Watch the level file for edits
+		levelFile = file;
+		if (levelFile != null) {
+			levelModified = levelFile.lastModified();
+			levelLength = levelFile.length();
+		}
+		reloadTime = 0;
+	}
+
+	/**
+	 * Sets the camera bounds for the start of level zoom.
+	 *
+	 * @param level	The level being played
+	 */
+	private void setCameraBounds(LevelEditor.Level level) {
+		levelCamWidth = Math.abs(level.map.get(0).x - level.map.get(1).x);
+		levelCamHeight = Math.abs(level.map.get(0).y - level.map.get(1).y);
+		center = new Vector2((level.map.get(0).x + level.map.get(1).x)/2,
+				(level.map.get(0).y + level.map.get(1).y)/2);
+	}
+
+	/**
+	 * Returns a unique key for a level piece.
+	 *
+	 * The key is the data the piece was built from, so a piece that did not
+	 * change in a reload has the same key.  Identical pieces are numbered.
+	 *
+	 * @param description	The kind of piece and its data
+	 *
+	 * @return a unique key for a level piece
+	 */
+	private String pieceKey(String description) {
+		String key = description;
+		for (int n = 1; pieces.containsKey(key); n++) {
+			key = description+"#"+n;
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the body for a piece from the previous version of the level, if any.
+	 *
+	 * The body is claimed, so it will not be removed at the end of the reload.
+	 *
+	 * @param key	The piece key
+	 *
+	 * @return the body for a piece from the previous version of the level, or null
+	 */
+	private Obstacle reusePiece(String key) {
+		Obstacle obj = spares.remove(key);
+		if (obj != null) {
+			pieces.put(key, obj);
+		}
+		return obj;
+	}
+
+	/**
+	 * Removes a piece that is no longer in the level.
+	 *
+	 * @param obj	The piece to remove
+	 */
+	private void removePiece(Obstacle obj) {
+		removeObject(obj);
+		removeEntity(obj);
+		tethers.remove(obj);
+		lanterns.remove(obj);
+		litlanterns.remove(obj);
+		rocks.remove(obj);
+		enemies.remove(obj);
+		wps.remove(obj);
+	}
+
+	/**
+	 * Drops an enemy that has faded out from the level.
+	 *
+	 * The enemy is already marked removed, so postUpdate destroys its body.  Its
+	 * components go back to the engine pools.
+	 *
+	 * @param enemy	The enemy to drop
+	 */
+	private void despawnEnemy(EnemyModel enemy) {
+		removeEntity(enemy);
+		enemies.remove(enemy);
+		pieces.values().remove(enemy);
+		enemy.getPilot().reset();
+	}
+
+	/**
+	 * Adds the whirlpools and enemies, reusing spare pieces where possible.
+	 *
+	 * @param prepared	The level to build
+	 */
+	private void buildWaterPieces(LevelPrefetcher.PreparedLevel prepared) {
+		LevelEditor.Level level = prepared.level;
 		if (level.whirlpools != null) {
 			for (LevelEditor.Vector4 whirlpool: level.whirlpools) {
+				String key = pieceKey("whirlpool("+whirlpool.x+","+whirlpool.y+","+whirlpool.z+","+whirlpool.w+")");
+				if (reusePiece(key) != null) {
+					continue;
+				}
 
 				Vector2 ang = new Vector2(whirlpool.z-whirlpool.x, whirlpool.w-whirlpool.y);
 				WModel2 wp = new WModel2(whirlpool.x, whirlpool.y, ang);
@@ -431,27 +847,37 @@ public class DownstreamController extends WorldController implements ContactList
 				wp.setDensity(TETHER_DENSITY);
 				wp.setFriction(TETHER_FRICTION);
 				wp.setRestitution(TETHER_RESTITUTION);
-				wp.setSensor(sensorTethers);
+				wp.setSensor(SENSOR_TETHERS);
 				wp.setDrawScale(scale);
 				wp.setTexture(whirlpoolTexture);
 				wp.setArrowTexture(whirlArrow);
-				addObject(wp);
+				addObject(wp, ObjectStore.Layer.UNDERLAY);
+				createEntity(wp, whirlpoolTexture);
 				wps.add(wp);
+				pieces.put(key, wp);
 			}
 		}
 
 
 
-		for (Map.Entry<String,ArrayList<Vector2>> entry : level.enemiesLevel.entrySet()) {
-			Vector2 enemyPos = vectorOfString(entry.getKey());
-			ArrayList<Vector2> enemyPath = entry.getValue();
+		for (int ii = 0; ii < prepared.enemyStarts.size(); ii++) {
+			Vector2 enemyPos = prepared.enemyStarts.get(ii);
+			ArrayList<Vector2> enemyPath = prepared.enemyPaths.get(ii);
+			if (this.level == 12){
+				enemyPos8 = enemyPos;
+				enemyPath8 =enemyPath;
+			}
+			String key = pieceKey("enemy"+enemyPos+enemyPath);
+			if (reusePiece(key) != null) {
+				continue;
+			}
 			//			for (Vector2 vector : enemyPath) {vector.x /= scale.x; vector.y /= scale.y;}
 			//			System.out.println(enemyPath);
 			TextureRegion etexture = enemyTexture;
 			//dwidth  = etexture.getRegionWidth()/scale.x;
-			dwidth = 2.85f;
+			float dwidth = 2.85f;
 			//dheight = etexture.getRegionHeight()/scale.y;
-			dheight = 1.675f;
+			float dheight = 1.675f;
 			eFish = new EnemyModel(enemyPos.x, enemyPos.y, dwidth, dheight, enemyPath);
 			eFish.setDensity(ENEMY_DENSITY);
 			eFish.setFriction(ENEMY_FRICTION);
@@ -462,22 +888,29 @@ public class DownstreamController extends WorldController implements ContactList
 			eFish.setAngle((float) (Math.PI/2));
 			eFish.setBodyType(BodyDef.BodyType.StaticBody);
 			eFish.setGoal(0, 0);
+			eFish.setPilot(new EnemyPilot(eFish, navigator));
 			addObject(eFish);
+			Entity entity = createEntity(eFish, etexture);
+			PatrolComponent patrol = engine.createComponent(PatrolComponent.class);
+			patrol.enemy = eFish;
+			entity.add(patrol);
+			animate(entity, enemyAnimation);
 			enemies.add(eFish);
-			
-			if (this.level == 12){
-				enemyPos8 = enemyPos;
-				enemyPath8 =enemyPath;
-			}
+			pieces.put(key, eFish);
 		}
+	}
 
-		//Create goal tile
+	/**
+	 * Adds the goal tile.
+	 *
+	 * @param level	The level to build
+	 */
+	private void createGoal(LevelEditor.Level level) {
 		Vector2 goalPos = level.goal.get(0);
 		Vector2 shadowDest = level.goal.get(1);
 
-		cache = shadowDest.cpy().sub(goalPos).nor().scl(2);
-		dwidth  = goalTexture.getRegionWidth()/scale.x*1.25f;
-		dheight = goalTexture.getRegionHeight()/scale.y*1.25f;
+		float dwidth  = goalTexture.getRegionWidth()/scale.x*1.25f;
+		float dheight = goalTexture.getRegionHeight()/scale.y*1.25f;
 		goalTexture.setRegionHeight(goalTexture.getRegionHeight());
 		goalTexture.setRegionWidth(goalTexture.getRegionWidth());
 		goalTile = new BoxObstacle(goalPos.x, goalPos.y, dwidth/2*1.25f, dheight/2*1.25f);
@@ -489,24 +922,21 @@ public class DownstreamController extends WorldController implements ContactList
 		goalTile.setRestitution(BASIC_RESTITUTION);
 		goalTile.setSensor(true);
 		goalTile.setAngle((float) Math.atan2(shadowDest.y-goalPos.y,shadowDest.x-goalPos.x));
-		addObject(goalTile);
-
-		// Create the fish avatar
-		dwidth  = koiTexture.getRegionWidth()/scale.x;
-		dheight = koiTexture.getRegionHeight()/scale.y;
-		//		System.out.println(dwidth + " " + dheight);
-		koi = new PlayerModel(level.player.x, level.player.y, 2.5f, 0.925f);
-		koi.setDrawScale(scale);
-		koi.setName("koi");
-		koi.setTexture(koiTexture);
-		koi.setWhirled(false);
-		koi.setArrowTexture(koiArrow);
-		addObject(koi);
+		addObject(goalTile, ObjectStore.Layer.UNDERLAY);
+		animate(createEntity(goalTile, goalTexture), goalAnimation);
+	}
 
-		//create shadow(s)
+	/**
+	 * Adds the shadow that guards the goal (only if there are lanterns to light).
+	 *
+	 * @param level	The level to build
+	 */
+	private void createShadow(LevelEditor.Level level) {
+		Vector2 goalPos = level.goal.get(0);
+		Vector2 shadowDest = level.goal.get(1);
 		if(level.lotuses.size() > 0 || level.lanterns != null && level.lanterns.size() > 0){
-			dwidth = shadowTexture.getRegionWidth()/scale.x*1.3f;
-			dheight = shadowTexture.getRegionHeight()/scale.y*1.3f;
+			float dwidth = shadowTexture.getRegionWidth()/scale.x*1.3f;
+			float dheight = shadowTexture.getRegionHeight()/scale.y*1.3f;
 			ShadowModel shadow = new ShadowModel(goalPos.x, goalPos.y, dwidth, dheight, shadowDest);
 			shadow.setName("shadow");
 			shadow.setDrawScale(scale.cpy());
@@ -520,15 +950,28 @@ public class DownstreamController extends WorldController implements ContactList
 			shadow.setAngle((float) Math.atan2(shadowDest.y-goalPos.y,shadowDest.x-goalPos.x));
 			shadows.add(shadow);
 			addObject(shadow);
+			createEntity(shadow, shadowTexture);
 		}
+	}
 
-
-		if (level.shores != null) {
-			for (ArrayList<Float> shore : level.shores) {
+	/**
+	 * Adds the shores, walls, rocks and tethers, reusing spare pieces where possible.
+	 *
+	 * @param prepared	The level to build
+	 * @param staticNDS	The static time of day (from dayNightBinary)
+	 * @param rad		The tether radius
+	 */
+	private void buildLandPieces(LevelPrefetcher.PreparedLevel prepared, int staticNDS, float rad) {
+		LevelEditor.Level level = prepared.level;
+		if (prepared.shores != null) {
+			for (int ii = 0; ii < prepared.shores.length; ii++) {
+				String key = pieceKey("shore"+Arrays.toString(prepared.shores[ii]));
+				if (reusePiece(key) != null) {
+					continue;
+				}
 				PolygonObstacle obj;
-				float[] shoreFloat = new float[shore.size()];
-				for (int i = 0; i < shore.size(); i++) shoreFloat[i] = shore.get(i);
-				obj = new PolygonObstacle(shoreFloat, 0, 0);
+				obj = new PolygonObstacle(prepared.shores[ii], prepared.shoreTriangles[ii], 0, 0);
+				obj.setConvexDecomposition(CONVEX_LAND);
 				obj.setBodyType(BodyDef.BodyType.StaticBody);
 				obj.setDensity(BASIC_DENSITY);
 				obj.setFriction(BASIC_FRICTION);
@@ -538,18 +981,25 @@ public class DownstreamController extends WorldController implements ContactList
 				//obj.setTexture(earthTile);
 				obj.setName("shore");
 				obj.setSensor(true);
-				ArrayList<Float> scaledShore = new ArrayList<Float>();
-				for (Float f : shore) scaledShore.add(f*scale.x);
-//				walls.add(scaledShore);
-				addObject(obj);
+				addObject(obj, ObjectStore.Layer.GEOMETRY);
+				pieces.put(key, obj);
 			}
 		}
 
-		for (ArrayList<Float> wall : level.walls) {
+		for (int ii = 0; ii < prepared.walls.length; ii++) {
+			float[] wall = prepared.walls[ii];
+			float[] scaledWall = new float[wall.length];
+			for (int jj = 0; jj < wall.length; jj++) scaledWall[jj] = wall[jj]*scale.x;
+			walls.add(scaledWall);
+
+			String key = pieceKey("wall"+Arrays.toString(wall));
+			if (reusePiece(key) != null) {
+				continue;
+			}
 			PolygonObstacle obj;
-			float[] wallFloat = new float[wall.size()];
-			for (int i = 0; i < wall.size(); i++) wallFloat[i] = wall.get(i);
-			obj = new PolygonObstacle(wallFloat, 0, 0);
+			obj = new PolygonObstacle(prepared.walls[ii], prepared.wallTriangles[ii], 0, 0);
+			obj.setConvexDecomposition(CONVEX_LAND);
+			obj.setBoundary(BOUNDARY_WALLS);
 			obj.setBodyType(BodyDef.BodyType.StaticBody);
 			obj.setDensity(BASIC_DENSITY);
 			obj.setFriction(BASIC_FRICTION);
@@ -572,16 +1022,18 @@ public class DownstreamController extends WorldController implements ContactList
 
 			//obj.setTexture(earthTile);
 			obj.setName("wall1");
-			ArrayList<Float> scaledWall = new ArrayList<Float>();
-			for (Float f : wall) scaledWall.add(f*scale.x);
-			walls.add(scaledWall);
 			//			obj.drawnWall = scaledWall;
-			addObject(obj);
+			addObject(obj, ObjectStore.Layer.GEOMETRY);
+			pieces.put(key, obj);
 		}
 
 
 		if (level.rocks != null) {
 			for (Vector2 rock : level.rocks) {
+				String key = pieceKey("rock"+rock);
+				if (reusePiece(key) != null) {
+					continue;
+				}
 				WheelObstacle obj;
 				//				System.out.println(rockDay);
 				//				System.out.println("ROCK" + rockDay.getRegionWidth()/2/scale.x);
@@ -604,59 +1056,59 @@ public class DownstreamController extends WorldController implements ContactList
 
 				obj.setName("rock");
 				rocks.add(obj);
-				addObject(obj);
+				addObject(obj, ObjectStore.Layer.INTERACTIVE);
+				pieces.put(key, obj);
 			}
 		}	
 
+		// Lanterns and lotuses are the same thing
+		ArrayList<Vector2> lights = new ArrayList<Vector2>();
 		if (level.lanterns != null) {
-			for (Vector2 lotus : level.lanterns) {
-				TetherModel lantern = new TetherModel(lotus.x, lotus.y, rad, true);
-				lantern.setBodyType(BodyDef.BodyType.StaticBody);
-				lantern.setName("lotus"+ 1);
-				lantern.setDensity(TETHER_DENSITY);
-				lantern.setFriction(TETHER_FRICTION);
-				lantern.setRestitution(TETHER_RESTITUTION);
-				lantern.setSensor(sensorTethers);
-				lantern.setDrawScale(scale);
-				lantern.setTexture(lanternTexture);
-				lantern.setlightingTexture(lightingTexture);
-				lantern.setRotation(0);
-				lantern.setC2(levelAlpha);
-				addObject(lantern);
-				tethers.add(lantern);
-				lanterns.add(lantern);
-			}
+			lights.addAll(level.lanterns);
 		}
-
 		if (level.lotuses != null) {
-			for (Vector2 lotus : level.lotuses) {
-				TetherModel lantern = new TetherModel(lotus.x, lotus.y, rad, true);
-				lantern.setBodyType(BodyDef.BodyType.StaticBody);
-				lantern.setName("lotus"+ 1);
-				lantern.setDensity(TETHER_DENSITY);
-				lantern.setFriction(TETHER_FRICTION);
-				lantern.setRestitution(TETHER_RESTITUTION);
-				lantern.setSensor(sensorTethers);
-				lantern.setDrawScale(scale);
-				lantern.setTexture(lanternTexture);
-				lantern.setlightingTexture(lightingTexture);
-				lantern.setRotation(0);
-				lantern.setC2(levelAlpha);
-				addObject(lantern);
-				tethers.add(lantern);
-				lanterns.add(lantern);
+			lights.addAll(level.lotuses);
+		}
+		for (Vector2 lotus : lights) {
+			String key = pieceKey("lantern"+lotus);
+			if (reusePiece(key) != null) {
+				continue;
 			}
+			TetherModel lantern = new TetherModel(lotus.x, lotus.y, rad, true);
+			lantern.setBodyType(BodyDef.BodyType.StaticBody);
+			lantern.setName("lotus"+ 1);
+			lantern.setDensity(TETHER_DENSITY);
+			lantern.setFriction(TETHER_FRICTION);
+			lantern.setRestitution(TETHER_RESTITUTION);
+			lantern.setSensor(SENSOR_TETHERS);
+			lantern.setDrawScale(scale);
+			lantern.setTexture(lanternTexture);
+			lantern.setlightingTexture(lightingTexture);
+			lantern.setRotation(0);
+			lantern.setC2(levelAlpha);
+			addObject(lantern, ObjectStore.Layer.INTERACTIVE);
+			Entity entity = createTether(lantern, lanternTexture);
+			LightComponent light = engine.createComponent(LightComponent.class);
+			light.lantern = lantern;
+			entity.add(light);
+			tethers.add(lantern);
+			lanterns.add(lantern);
+			pieces.put(key, lantern);
 		}
 
 		//		System.out.println(levelAlpha(this.level).a);
 		for (Vector2 lilypad : level.lilypads) {
+			String key = pieceKey("lily"+lilypad);
+			if (reusePiece(key) != null) {
+				continue;
+			}
 			TetherModel lily = new TetherModel(lilypad.x, lilypad.y, rad);
 			lily.setBodyType(BodyDef.BodyType.StaticBody);
 			lily.setName("lily"+ 1);
 			lily.setDensity(TETHER_DENSITY);
 			lily.setFriction(TETHER_FRICTION);
 			lily.setRestitution(TETHER_RESTITUTION);
-			lily.setSensor(sensorTethers);
+			lily.setSensor(SENSOR_TETHERS);
 			lily.setDrawScale(scale);
 			lily.setTexture(lilyTexture);
 //			if(staticNDS == 0){
@@ -672,151 +1124,129 @@ public class DownstreamController extends WorldController implements ContactList
 //				lily.setTexture(lilyTextureNight);
 //			}
 			lily.setC2(levelAlpha);
-			addObject(lily);
+			addObject(lily, ObjectStore.Layer.INTERACTIVE);
+			animate(createTether(lily, lilyTexture), lilyAnimation);
 			tethers.add(lily);
+			pieces.put(key, lily);
 		}
+	}
 
-
-		//tethers.add(wp);
-
-		//Setup checkpoint and collision controller
-		collisionController = new CollisionController(koi);
-		checkpoint0 = getClosestTetherTo(koi.initPos);
-		checkpoint = checkpoint0;
-
-		//START KOI CODE
-		//koi on tether
-		boolean onTether = false;
-		if(onTether){
-			koi.initPos = checkpoint.getPosition().add(koi.NE.cpy().rotate90(1).nor().scl(TetherModel.TETHER_DEFAULT_ORBIT));
-			koi.setPosition(koi.initPos);
-			koi.setAttemptingTether(true);
-			koi.setTethered(true);
-			collisionController.initStart(checkpoint0);
-			cacheVel = koi.NE;
-			koi.setLinearVelocity(cacheVel);
-			koi.resolveDirection();
-			koi.setLinearVelocity(Vector2.Zero);
+	/**
+	 * Checks the level file for edits, and applies them once they are parsed.
+	 *
+	 * The file is polled, since we build for Java 6, which has no WatchService.
+	 * Checking the modification time twice a second costs a few microseconds.
+	 * The new file is parsed and triangulated on the prefetcher thread, so the
+	 * only work on the render thread is rebuilding the pieces that changed.
+	 *
+	 * @param dt	Number of seconds since last animation frame
+	 */
+	private void checkForReload(float dt) {
+		if (levelFile == null) {
+			return;
 		}
-		//koi approaching tether
-		else{
-			koi.setTethered(false);
-			koi.setAttemptingTether(true);
-			Vector2 initVel = checkpoint0.getPosition().cpy().sub(koi.initPos.cpy()).nor();
-			Vector2 initTan = checkpoint0.getPosition().add(initVel.cpy().rotate90(1).nor().scl(TetherModel.TETHER_DEFAULT_ORBIT));
-			cacheVel = initTan.cpy().sub(koi.initPos.cpy()).nor();
-			koi.setLinearVelocity(cacheVel);
-			koi.resolveDirection();
-			koi.setLinearVelocity(Vector2.Zero);
+		if (pendingReload != null) {
+			if (pendingReload.isDone()) {
+				Future<LevelPrefetcher.PreparedLevel> result = pendingReload;
+				pendingReload = null;
+				LevelPrefetcher.PreparedLevel prepared;
+				try {
+					prepared = result.get();
+				} catch (ExecutionException e) {
+					// Usually the file was caught halfway through a save
+					Gdx.app.error("DownstreamController", "Could not reload "+levelFile, e.getCause());
+					return;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				hotReload(prepared);
+			}
+			return;
 		}
-
-		levelCamWidth = Math.abs(level.map.get(0).x - level.map.get(1).x);
-		levelCamHeight = Math.abs(level.map.get(0).y - level.map.get(1).y);
-		center = new Vector2((level.map.get(0).x + level.map.get(1).x)/2,
-				(level.map.get(0).y + level.map.get(1).y)/2);
-		cameraController.zoomStart(levelCamWidth, levelCamHeight, center, checkpoint0.getPosition().cpy().scl(scale));
-
-		//TUTORIAL CODE
-		HUD = new HUDitems(lanterns.size(), UILotusTexture, energyBarTexture, secondFont);
-		if (this.level == 1){
-			/*HUD.setTutorialTexture(tutorial1);
-			HUD.setHelpTexture(helpTexture);
-			HUD.setTutorialStatus(true);*/
-			TutorialItems t1 = new TutorialItems(20, 2, tutorial1.getRegionHeight(), tutorial1.getRegionWidth());
-			t1.setBodyType(BodyDef.BodyType.StaticBody);
-			t1.setName("tutorial"+ 1);
-			t1.setDensity(TETHER_DENSITY);
-			t1.setFriction(TETHER_FRICTION);
-			t1.setRestitution(TETHER_RESTITUTION);
-			t1.setSensor(sensorTethers);
-			t1.setDrawScale(scale);
-			t1.setTexture(tutorial1);
-			objects.add(t1);
+		reloadTime += dt;
+		if (reloadTime < RELOAD_INTERVAL) {
+			return;
 		}
-		else if (this.level == 2){
-			/*HUD.setTutorialTexture(tutorial2);
-			HUD.setHelpTexture(helpTexture);
-			HUD.setTutorialStatus(true);*/
-			TutorialItems t2 = new TutorialItems(18, 15, tutorial2.getRegionHeight(), tutorial1.getRegionWidth());
-			t2.setBodyType(BodyDef.BodyType.StaticBody);
-			t2.setName("tutorial"+ 1);
-			t2.setDensity(TETHER_DENSITY);
-			t2.setFriction(TETHER_FRICTION);
-			t2.setRestitution(TETHER_RESTITUTION);
-			t2.setSensor(sensorTethers);
-			t2.setDrawScale(scale);
-			t2.setTexture(tutorial2);
-			objects.add(t2);
+		reloadTime = 0;
+		long modified = levelFile.lastModified();
+		long length = levelFile.length();
+		if (modified != levelModified || length != levelLength) {
+			levelModified = modified;
+			levelLength = length;
+			pendingReload = prefetcher.reload(this.level, levelFile);
 		}
-		else if (this.level == 6){
-			/*HUD.setTutorialTexture(tutorial3);
-			HUD.setHelpTexture(helpTexture);
-			HUD.setTutorialStatus(true);*/
-			TutorialItems t3 = new TutorialItems(-13, 18, tutorial3.getRegionHeight(), tutorial1.getRegionWidth());
-			t3.setBodyType(BodyDef.BodyType.StaticBody);
-			t3.setName("tutorial"+ 1);
-			t3.setDensity(TETHER_DENSITY);
-			t3.setFriction(TETHER_FRICTION);
-			t3.setRestitution(TETHER_RESTITUTION);
-			t3.setSensor(sensorTethers);
-			t3.setDrawScale(scale);
-			t3.setTexture(tutorial3);
-			objects.add(t3);
+	}
+
+	/**
+	 * Replaces the current level with a new version of it, in place.
+	 *
+	 * Pieces that are unchanged keep their bodies (and state, like lit lanterns).
+	 * Only new or edited pieces are built, and only deleted ones are destroyed.
+	 * The koi is left alone.  New pieces are drawn on top of the old ones until
+	 * the next full load.
+	 *
+	 * @param prepared	The new version of the level
+	 */
+	private void hotReload(LevelPrefetcher.PreparedLevel prepared) {
+		LevelEditor.Level level = prepared.level;
+		if (level.goal.size() < 2 || level.map.size() < 2) {
+			System.out.println("Level "+this.level+" has no goal or map area; not reloading");
+			return;
 		}
-		else if (this.level == 4){
-			/*HUD.setTutorialTexture(tutorial4);
-			HUD.setHelpTexture(helpTexture);
-			HUD.setTutorialStatus(true);*/
-			TutorialItems t4 = new TutorialItems(10, 3, tutorial4.getRegionHeight(), tutorial1.getRegionWidth());
-			t4.setBodyType(BodyDef.BodyType.StaticBody);
-			t4.setName("tutorial"+ 1);
-			t4.setDensity(TETHER_DENSITY);
-			t4.setFriction(TETHER_FRICTION);
-			t4.setRestitution(TETHER_RESTITUTION);
-			t4.setSensor(sensorTethers);
-			t4.setDrawScale(scale);
-			t4.setTexture(tutorial4);
-			objects.add(t4);
+		long start = TimeUtils.nanoTime();
+		int staticNDS = dayNightBinary(this.level);
+		float rad = lilyTexture.getRegionWidth()/scale.x/2;
+
+		spares = pieces;
+		pieces = new HashMap<String,Obstacle>();
+		int previous = spares.size();
+		walls.clear();
+		navigator = new Navigator(prepared.navigation);
+		buildWaterPieces(prepared);
+		buildLandPieces(prepared, staticNDS, rad);
+		for (EnemyModel enemy : enemies) {
+			enemy.getPilot().setNavigator(navigator);
 		}
-		else if (this.level == 7){
-			/*HUD.setTutorialTexture(tutorial4);
-			HUD.setHelpTexture(helpTexture);
-			HUD.setTutorialStatus(true);*/
-			TutorialItems t6 = new TutorialItems(11, 3, tutorial4.getRegionHeight(), tutorial1.getRegionWidth());
-			t6.setBodyType(BodyDef.BodyType.StaticBody);
-			t6.setName("tutorial"+ 1);
-			t6.setDensity(TETHER_DENSITY);
-			t6.setFriction(TETHER_FRICTION);
-			t6.setRestitution(TETHER_RESTITUTION);
-			t6.setSensor(sensorTethers);
-			t6.setDrawScale(scale);
-			t6.setTexture(tutorial6);
-			objects.add(t6);
+		int kept = previous-spares.size();
+		int removed = spares.size();
+		for (Obstacle obj : spares.values()) {
+			removePiece(obj);
 		}
-		else if(this.level == 14){
-			/*HUD.setTutorialTexture(tutorial6);
-			HUD.setHelpTexture(helpTexture);
-			HUD.setTutorialStatus(true);*/
-			TutorialItems t5 = new TutorialItems(-25, 0, tutorial5.getRegionHeight(), tutorial1.getRegionWidth());
-			t5.setBodyType(BodyDef.BodyType.StaticBody);
-			t5.setName("tutorial"+ 1);
-			t5.setDensity(TETHER_DENSITY);
-			t5.setFriction(TETHER_FRICTION);
-			t5.setRestitution(TETHER_RESTITUTION);
-			t5.setSensor(sensorTethers);
-			t5.setDrawScale(scale);
-			t5.setTexture(tutorial5);
-			objects.add(t5);
+		spares.clear();
+
+		String key = level.goal+" "+lanterns.isEmpty();
+		if (!key.equals(goalKey)) {
+			goalKey = key;
+			removeObject(goalTile);
+			removeEntity(goalTile);
+			for (ShadowModel shadow : shadows) {
+				removeObject(shadow);
+				removeEntity(shadow);
+			}
+			shadows.clear();
+			createGoal(level);
+			createShadow(level);
 		}
-		/*else if(this.level == 7){
-			HUD.setTutorialTexture(tutorial5);
-			HUD.setHelpTexture(helpTexture);
-			HUD.setTutorialStatus(true);
-		}*/
-		addHUD(HUD);
 
+		if (!tethers.contains(checkpoint0)) {
+			checkpoint0 = getClosestTetherTo(koi.initPos);
+		}
+		setCameraBounds(level);
+		HUD.TotalLotus = lanterns.size();
 
+		reloadDuration = TimeUtils.timeSinceNanos(start);
+		Gdx.app.debug("DownstreamController", "Level "+this.level+" reloaded in "+reloadDuration/1000+" us: "
+				+(pieces.size()-kept)+" pieces built, "+kept+" kept, "+removed+" removed");
+	}
 
+	/**
+	 * Returns the time taken by the most recent hot reload (in nanoseconds)
+	 *
+	 * @return the time taken by the most recent hot reload
+	 */
+	public long getReloadDuration() {
+		return reloadDuration;
 	}
 
 
@@ -854,6 +1284,7 @@ public class DownstreamController extends WorldController implements ContactList
 
 	private void level8Fish(EnemyModel e){
 		e.setPosition(enemyPos8);
+		e.getPilot().reset();
 		e.patrol(enemyPath8);
 
 	}
@@ -887,6 +1318,7 @@ public class DownstreamController extends WorldController implements ContactList
 
 	public void update(float dt) {
 		koi.getLinearVelocity();
+		checkForReload(dt);
 		if(debug){
 			debugPrint();
 		}
@@ -906,21 +1338,15 @@ public class DownstreamController extends WorldController implements ContactList
 			setComplete(true);
 			tillNextLevel++;
 			if (tillNextLevel > 210){
-				deleteAll();
-				this.level = this.level + 1;
-				populateLevel();
+				swapLevel(this.level + 1);
 				listener.exitScreen(this, WorldController.EXIT_WIN_DONE);
 			}
 		}
 		if(input.didAdvance()){
-			deleteAll();
-			this.level = this.level + 1;
-			populateLevel();
+			swapLevel(this.level + 1);
 		}
 		else if(input.didRetreat() && this.level > 1){
-			deleteAll();
-			this.level = this.level - 1;
-			populateLevel();
+			swapLevel(this.level - 1);
 		}
 
 		if (koi.isDead()) {
@@ -932,7 +1358,7 @@ public class DownstreamController extends WorldController implements ContactList
 			for (TetherModel t : tethers) {
 				t.setTethered(false);
 			}
-			if (this.level == 12){
+			if (this.level == 12 && !enemies.isEmpty()){
 					level8Fish(enemies.get(0));
 			}
 			respawn();
@@ -954,38 +1380,38 @@ public class DownstreamController extends WorldController implements ContactList
 
 
 			// CHECKPOINT CODE
+			timer.start(PhaseTimer.Phase.LANTERNS);
 			checkpoint = checkpoint0;
-			for (TetherModel t : lanterns) {
-				if (t.lit) {
-					if (!litlanterns.contains(t)) {
-						lightingSound.setVolume(.5f);
-						lightingSound.play();
-						litlanterns.push(t);
-					}
-				} else {
-					litlanterns.remove(t);
-				}
+			lightSystem.update(dt);
+			for (int ii = 0; ii < lightSystem.getNewlyLit(); ii++) {
+				lightingSound.setVolume(.5f);
+				lightingSound.play();
 			}
 			if (litlanterns.size() > 0) {
 				checkpoint = litlanterns.peek();
 			}
+			timer.stop(PhaseTimer.Phase.LANTERNS);
 
 			// CLEAR SHADOW CODE
 			clearShadows(lanterns.size() == litlanterns.size());
 			moveShadows();
 
 			// ENEMY PATROL CODE
-			for (EnemyModel enemy : enemies) {
-				enemy.patrol();
-				enemy.moveTowardsGoal();
-				enemy.fleeFind();
-				enemy.fleeFind(lanterns);
-				if (enemy.dead) {
-					enemy.deactivatePhysics(world);
-				}
+			timer.start(PhaseTimer.Phase.PATHS);
+			navigator.run(PATH_BUDGET);
+			timer.stop(PhaseTimer.Phase.PATHS);
+
+			timer.start(PhaseTimer.Phase.ENEMIES);
+			patrolSystem.update(dt);
+			for (EnemyModel enemy : patrolSystem.getDespawned()) {
+				despawnEnemy(enemy);
 			}
+			timer.stop(PhaseTimer.Phase.ENEMIES);
 
+			timer.start(PhaseTimer.Phase.CLOSEST_TETHER);
+			transformSystem.update(dt);
 			closestTether = getClosestTetherTo(koi.getPosition());
+			timer.stop(PhaseTimer.Phase.CLOSEST_TETHER);
 			// INPUT CODE
 			if (input.didTether() && !isWhirled() && !koi.bursting) {
 				if ((koi.isTethered() || koi.isAttemptingTether())) {
@@ -1021,15 +1447,19 @@ public class DownstreamController extends WorldController implements ContactList
 
 
 			//TETHER IN PATH
+			timer.start(PhaseTimer.Phase.TETHER_IN_PATH);
 			for (TetherModel tether : tethers) {
 				tether.inpath = false;
 				if (koi.willIntersectTether(tether.getPosition(), TetherModel.TETHER_DEFAULT_RANGE * 1.3f)) {
 					tether.inpath = true;
 				}
 			}
+			timer.stop(PhaseTimer.Phase.TETHER_IN_PATH);
 
 			// TETHER FORCE CODE
+			timer.start(PhaseTimer.Phase.CLOSEST_TETHER);
 			Vector2 closeTeth = getClosestTether().getPosition();
+			timer.stop(PhaseTimer.Phase.CLOSEST_TETHER);
 			Vector2 initTeth = koi.getInitialTangentPoint(closeTeth);
 
 			if (closeTeth.dst(koi.getPosition()) > TetherModel.TETHER_DEFAULT_RANGE * 1.3) {
@@ -1056,6 +1486,7 @@ public class DownstreamController extends WorldController implements ContactList
 
 
 			//WHIRLPOOL 2
+			timer.start(PhaseTimer.Phase.WHIRLPOOLS);
 			if (wps.size() >= 1){
 				for (WModel2 w : wps){
 					if (w.shouldTether(koi)){
@@ -1071,6 +1502,7 @@ public class DownstreamController extends WorldController implements ContactList
 					}
 				}
 			}
+			timer.stop(PhaseTimer.Phase.WHIRLPOOLS);
 			if(!isWhirled() && whirlSound.isPlaying()){
 				whirlSound.stop();
 			}
@@ -1095,21 +1527,17 @@ public class DownstreamController extends WorldController implements ContactList
 
 			// ANIMATION CODE
 			stateTime += Gdx.graphics.getDeltaTime(); // #15
-			lilycurrentFrame = lilyAnimation.getKeyFrame(stateTime, true);
 			closedFlowercurrentFrame = closedFlowerAnimation.getKeyFrame(stateTime, true);
 			openFlowercurrentFrame = openFlowerAnimation.getKeyFrame(stateTime, true);
 			koiScurrentFrame = koiSAnimation.getKeyFrame(stateTime, true);
 			koiCcurrentFrame = koiCAnimation.getKeyFrame(stateTime, true);
 			KoiCcurrentFrameFlipped = koiCAnimationFlipped.getKeyFrame(stateTime, true);
-			goalCurrentFrame = goalAnimation.getKeyFrame(stateTime, true);
-			enemyCurrentFrame = enemyAnimation.getKeyFrame(stateTime, true);
 			openFlowercurrentFrame = openFlowerAnimation.getKeyFrame(stateTime, true);
 			closedFlowercurrentFrame = closedFlowerAnimation.getKeyFrame(stateTime, true);
 
-
-			for(int i = 0; i < enemies.size(); i++){
-				enemies.get(i).setTexture(enemyCurrentFrame);
-			}
+			// Enemies, lilypads and the goal
+			animationSystem.setTime(stateTime);
+			animationSystem.update(dt);
 			/*
 			lilycurrentFrame2 = lilyAnimation2.getKeyFrame(stateTime, true);
 			closedFlowercurrentFrame2 = closedFlowerAnimation2.getKeyFrame(stateTime, true);
@@ -1143,17 +1571,11 @@ public class DownstreamController extends WorldController implements ContactList
 			// koi.setTexture(koiCcurrentFrame);
 
 			// FSM to handle Lotus
-			goalTile.setTexture(goalCurrentFrame);
-
+			timer.start(PhaseTimer.Phase.TETHER_STATES);
+			tetherSystem.setClosest(closestTether);
+			tetherSystem.update(dt);
 			for (int i = 0; i < tethers.size(); i++) {
-				if (collisionController.inRangeOf(tethers.get(i)) && tethers.get(i) == closestTether) {
-					tethers.get(i).inrange = true;
-				} else {
-					tethers.get(i).inrange = false;
-				}
-
 				if (tethers.get(i).getTetherType() == TetherType.Lilypad) {
-					tethers.get(i).setTexture(lilycurrentFrame);
 					tethers.get(i).setOverlay(lilycurrentFrame2);
 				}
 				if (tethers.get(i).getTetherType() == TetherType.Lantern) {
@@ -1216,6 +1638,7 @@ public class DownstreamController extends WorldController implements ContactList
 					tethers.get(i).setOverlay(openFlowercurrentFrame2);
 				}
 			}
+			timer.stop(PhaseTimer.Phase.TETHER_STATES);
 		}
 		HUD.updateHUD(litlanterns.size(), koi.getEnergy());
 		cacheVel = koi.getLinearVelocity();
@@ -1255,16 +1678,70 @@ public class DownstreamController extends WorldController implements ContactList
 	}
 
 	private TetherModel getClosestTetherTo(Vector2 v) {
-		TetherModel closestTether = tethers.get(0);
-		float closestDistance = tethers.get(0).getPosition().sub(v).len();
-		for (TetherModel tether : tethers) {
-			float newDistance = tether.getPosition().sub(v).len();
-			if (newDistance < closestDistance) {
-				closestDistance = newDistance;
-				closestTether = tether;
-			}
+		return tetherSystem.findClosest(v);
+	}
+
+	/**
+	 * Returns a new entity for an obstacle, with a body, transform and sprite.
+	 *
+	 * @param obj		The obstacle of the entity
+	 * @param texture	The texture the obstacle is drawn with
+	 *
+	 * @return a new entity for the obstacle
+	 */
+	private Entity createEntity(SimpleObstacle obj, TextureRegion texture) {
+		Entity entity = engine.createEntity();
+		BodyComponent body = engine.createComponent(BodyComponent.class);
+		body.obstacle = obj;
+		entity.add(body);
+		entity.add(engine.createComponent(TransformComponent.class));
+		SpriteComponent sprite = engine.createComponent(SpriteComponent.class);
+		sprite.region = texture;
+		entity.add(sprite);
+		TransformSystem.sync(entity);
+		engine.addEntity(entity);
+		entities.put(obj, entity);
+		return entity;
+	}
+
+	/**
+	 * Returns a new entity for a tether.
+	 *
+	 * @param tether	The tether of the entity
+	 * @param texture	The texture the tether is drawn with
+	 *
+	 * @return a new entity for the tether
+	 */
+	private Entity createTether(TetherModel tether, TextureRegion texture) {
+		Entity entity = createEntity(tether, texture);
+		TetherComponent component = engine.createComponent(TetherComponent.class);
+		component.tether = tether;
+		entity.add(component);
+		return entity;
+	}
+
+	/**
+	 * Plays an animation on an entity, on the level clock.
+	 *
+	 * @param entity	The entity to animate
+	 * @param animation	The animation to play
+	 */
+	private void animate(Entity entity, Animation animation) {
+		AnimationComponent component = engine.createComponent(AnimationComponent.class);
+		component.animation = animation;
+		entity.add(component);
+	}
+
+	/**
+	 * Removes the entity of an obstacle, returning its components to the pools.
+	 *
+	 * @param obj	The obstacle whose entity to remove
+	 */
+	private void removeEntity(Obstacle obj) {
+		Entity entity = entities.remove(obj);
+		if (entity != null) {
+			engine.removeEntity(entity);
 		}
-		return closestTether;
 	}
 
 	private boolean isWhirled(){
@@ -1313,7 +1790,7 @@ public class DownstreamController extends WorldController implements ContactList
 		}
 		else {
 			super.draw(delta);
-			//for (ArrayList<Float> wall : walls) canvas.drawPath(wall);
+			//for (float[] wall : walls) canvas.drawPath(wall);
 			canvas.beginHUD();
 			HUD.draw(canvas);
 			canvas.end();
@@ -1348,7 +1825,10 @@ public class DownstreamController extends WorldController implements ContactList
 			}
 			if (restartLevel() && listener != null) {
 				clickSound.play();
-				listener.exitScreen(this, this.level);
+				resumeState = 0;
+				restartState = 0;
+				backState = 0;
+				swapLevel(this.level);
 			}
 			if (resumePlay() && listener != null) {
 				clickSound.play();
@@ -1372,6 +1852,8 @@ public class DownstreamController extends WorldController implements ContactList
 		addQueue.clear();
 		world.dispose();
 		pauseMenu.dispose();
+		prefetcher.dispose();
+		patrolSystem.dispose();
 		objects = null;
 		addQueue = null;
 		bounds = null;
@@ -1386,58 +1868,52 @@ public class DownstreamController extends WorldController implements ContactList
 	/**
 	 * Callback method for the start of a collision
 	 *
-	 * This method is called when we first get a collision between two objects.  We use 
-	 * this method to test if it is the "right" kind of collision.  In particular, we
-	 * use it to test if we made it to the win door.
+	 * This method is called from inside world.step.  We only record the contact;
+	 * it is handled by processContacts() once the step is over.
 	 *
 	 * @param contact The two bodies that collided
 	 */
 	public void beginContact(Contact contact) {
-		koi.setDead(collisionController.begin(contact));
+		contacts.push(contact, true);
 	}
 
 	/**
-	 * Callback method for the start of a collision
+	 * Callback method for the end of a collision
 	 *
-	 * This method is called when two objects cease to touch.  We do not use it.
+	 * This method is called when two objects cease to touch.  Like beginContact,
+	 * it only records the contact.
+	 *
+	 * @param contact The two bodies that separated
 	 */ 
 	public void endContact(Contact contact) {
-		collisionController.end(contact);
+		contacts.push(contact, false);
 	}
 
-	private Vector2 cache = new Vector2();
-
 	/** Unused ContactListener method */
 	public void postSolve(Contact contact, ContactImpulse impulse) {}
 
+	/** Unused ContactListener method */
+	public void preSolve(Contact contact, Manifold oldManifold) {}
+
 	/**
-	 * Handles any modifications necessary before collision resolution
-	 *
-	 * This method is called just before Box2D resolves a collision.  We use this method
-	 * to implement sound on contact, using the algorithms outlined similar to those in
-	 * Ian Parberry's "Introduction to Game Physics with Box2D".  
-	 * 
-	 * However, we cannot use the proper algorithms, because LibGDX does not implement 
-	 * b2GetPointStates from Box2D.  The danger with our approximation is that we may
-	 * get a collision over multiple frames (instead of detecting the first frame), and
-	 * so play a sound repeatedly.  Fortunately, the cooldown hack in SoundController
-	 * prevents this from happening.
+	 * Handles the contacts recorded during the last step, in the order they happened
 	 *
-	 * @param  contact  	The two bodies that collided
-	 * @param  oldManfold  	The collision manifold before contact
+	 * The koi dies if any contact that began in the step was lethal.  It stays dead
+	 * until it respawns; a harmless contact later in the step does not revive it.
 	 */
-
-	public void preSolve(Contact contact, Manifold oldManifold) {
-		float speed = 0;
-
-		// Use Ian Parberry's method to compute a speed threshold
-		Body body1 = contact.getFixtureA().getBody();
-		Body body2 = contact.getFixtureB().getBody();
-		WorldManifold worldManifold = contact.getWorldManifold();
-		Vector2 wp = worldManifold.getPoints()[0];
-		cache.set(body1.getLinearVelocityFromWorldPoint(wp));
-		cache.sub(body2.getLinearVelocityFromWorldPoint(wp));
-		speed = cache.dot(worldManifold.getNormal());
+	protected void processContacts() {
+		timer.start(PhaseTimer.Phase.CONTACTS);
+		while (!contacts.isEmpty()) {
+			if (contacts.isBegin()) {
+				if (collisionController.begin(contacts.getObstacleA(), contacts.getObstacleB())) {
+					koi.setDead(true);
+				}
+			} else {
+				collisionController.end(contacts.getObstacleA(), contacts.getObstacleB());
+			}
+			contacts.pop();
+		}
+		timer.stop(PhaseTimer.Phase.CONTACTS);
 	}
 
 	//PAUSE MENU METHODS
@@ -20,6 +20,7 @@ import com.badlogic.gdx.graphics.g2d.freetype.*;
 import com.badlogic.gdx.assets.loaders.*;
 import com.badlogic.gdx.assets.loaders.resolvers.*;
 import com.badlogic.gdx.audio.Music;
+import com.badlogic.gdx.utils.TimeUtils;
 
 import edu.cornell.gdiac.util.*;
 
@@ -107,6 +108,8 @@ public class GDXRoot extends Game implements ScreenListener {
 		
 		manager.clear();
 		manager.dispose();
+		FrameCache.clear();
+		TextureController.getInstance().clear();
 		
 		super.dispose();
 	}
@@ -230,16 +233,21 @@ public class GDXRoot extends Game implements ScreenListener {
 			backgroundMusic.play();
 		}
 		else if (screen == playGame){
-			playGame.unloadContent(manager);
-			playGame.dispose();
+			// Load the new controller before unloading the old one.  The shared
+			// assets never reach a reference count of zero, so nothing is decoded twice.
+			long start = TimeUtils.nanoTime();
+			DownstreamController previous = playGame;
 			playGame = new DownstreamController(exitCode);
 			playGame.preLoadContent(manager);
 			playGame.loadContent(manager);
+			previous.unloadContent(manager);
+			previous.dispose();
 			playGame.setScreenListener(this);
 			playGame.setCanvas(canvas);
 			playGame.reset();
 			setScreen(playGame);
 			Gdx.input.setInputProcessor(playGame);
+			Gdx.app.debug("GDXRoot", "Level transition took "+TimeUtils.nanosToMillis(TimeUtils.timeSinceNanos(start))+" ms");
 		}
 		else if (exitCode == WorldController.EXIT_QUIT){
 			Gdx.app.exit();
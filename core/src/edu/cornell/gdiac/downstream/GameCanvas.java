@@ -26,6 +26,8 @@ import com.badlogic.gdx.graphics.g2d.*;
 import com.badlogic.gdx.graphics.glutils.*;
 import com.badlogic.gdx.physics.box2d.*;
 
+import edu.cornell.gdiac.util.TextureController;
+
 /**
  * Primary view class for the game, abstracting the basic graphics calls.
  * 
@@ -66,6 +68,9 @@ public class GameCanvas {
 	/** Drawing context to handle textures AND POLYGONS as sprites */
 	private PolygonSpriteBatch spriteBatch;
 	
+	/** Shader for packed ETC1 textures (color above, alpha below) */
+	private ShaderProgram packedShader;
+	
 	/** Rendering context for the debug outlines */
 	private ShapeRenderer debugRender;
 	
@@ -101,6 +106,37 @@ public class GameCanvas {
 	private Vector2 vertex;
 	/** Cache object to handle raw textures */
 	private TextureRegion holder;
+	
+	/** Vertex shader for packed ETC1 textures (same as the SpriteBatch default) */
+	private static final String PACKED_VERTEX_SHADER =
+		"attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n" +
+		"attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n" +
+		"attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n" +
+		"uniform mat4 u_projTrans;\n" +
+		"varying vec4 v_color;\n" +
+		"varying vec2 v_texCoords;\n" +
+		"void main() {\n" +
+		"   v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n" +
+		"   v_color.a = v_color.a * (255.0/254.0);\n" +
+		"   v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n" +
+		"   gl_Position = u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n" +
+		"}\n";
+	/** Fragment shader for packed ETC1 textures (alpha is in the red channel, half a texture down) */
+	private static final String PACKED_FRAGMENT_SHADER =
+		"#ifdef GL_ES\n" +
+		"#define LOWP lowp\n" +
+		"precision mediump float;\n" +
+		"#else\n" +
+		"#define LOWP \n" +
+		"#endif\n" +
+		"varying LOWP vec4 v_color;\n" +
+		"varying vec2 v_texCoords;\n" +
+		"uniform sampler2D u_texture;\n" +
+		"void main() {\n" +
+		"   vec4 color = texture2D(u_texture, v_texCoords);\n" +
+		"   color.a = texture2D(u_texture, v_texCoords + vec2(0.0, 0.5)).r;\n" +
+		"   gl_FragColor = v_color * color;\n" +
+		"}";
 
 	/**
 	 * Creates a new GameCanvas determined by the application configuration.
@@ -136,6 +172,15 @@ public class GameCanvas {
 		menuCamera.update();
 		menuCamera.setToOrtho(false);
 		
+		// Packed ETC1 sheets need their own shader. Fall back to PNGs without it.
+		packedShader = new ShaderProgram(PACKED_VERTEX_SHADER, PACKED_FRAGMENT_SHADER);
+		if (!packedShader.isCompiled()) {
+			Gdx.app.error("GameCanvas", packedShader.getLog());
+			packedShader.dispose();
+			packedShader = null;
+			TextureController.getInstance().setPreferCompressed(false);
+		}
+		
 		// Initialize the cache objects
 		holder = new TextureRegion();
 		local  = new Affine2();
@@ -153,6 +198,10 @@ public class GameCanvas {
 		}
 		spriteBatch.dispose();
     	spriteBatch = null;
+    	if (packedShader != null) {
+    		packedShader.dispose();
+    		packedShader = null;
+    	}
     	local  = null;
     	global = null;
     	vertex = null;
@@ -440,8 +489,29 @@ public class GameCanvas {
 	 */
     public void end() {
     	spriteBatch.end();
+    	spriteBatch.setShader(null);
     	active = DrawPass.INACTIVE;
     }
+    
+    /**
+     * Switches the sprite batch to the shader needed by the given texture.
+     *
+     * Packed ETC1 textures keep their alpha in the bottom half, so they need the
+     * packed shader.  Everything else uses the default shader.  Switching shaders
+     * flushes the batch, so sheets should be drawn together where possible.
+     *
+     * @param texture The texture about to be drawn
+     */
+    private void useShaderFor(Texture texture) {
+    	if (packedShader == null) {
+    		return;
+    	}
+    	boolean isPacked = TextureController.getInstance().isPacked(texture);
+    	boolean usingPacked = spriteBatch.getShader() == packedShader;
+    	if (isPacked != usingPacked) {
+    		spriteBatch.setShader(isPacked ? packedShader : null);
+    	}
+    }
 
 	/**
 	 * Draws the tinted texture at the given position.
@@ -465,6 +535,7 @@ public class GameCanvas {
 		}
 		
 		// Unlike Lab 1, we can shortcut without a master drawing method
+    	useShaderFor(image);
     	spriteBatch.setColor(Color.WHITE);
 		spriteBatch.draw(image, x,  y);
 	}
@@ -493,6 +564,7 @@ public class GameCanvas {
 		}
 		
 		// Unlike Lab 1, we can shortcut without a master drawing method
+    	useShaderFor(image);
     	spriteBatch.setColor(tint);
 		spriteBatch.draw(image, x,  y, width, height);
 	}
@@ -618,6 +690,7 @@ public class GameCanvas {
 		}
 		
 		// Unlike Lab 1, we can shortcut without a master drawing method
+    	useShaderFor(region.getTexture());
     	spriteBatch.setColor(Color.WHITE);
 		spriteBatch.draw(region, x,  y);
 	}
@@ -646,6 +719,7 @@ public class GameCanvas {
 		}
 		
 		// Unlike Lab 1, we can shortcut without a master drawing method
+    	useShaderFor(region.getTexture());
     	spriteBatch.setColor(tint);
 		spriteBatch.draw(region, x,  y, width, height);
 	}
@@ -676,6 +750,7 @@ public class GameCanvas {
 		}
 		
 		// Unlike Lab 1, we can shortcut without a master drawing method
+    	useShaderFor(region.getTexture());
     	spriteBatch.setColor(tint);
 		spriteBatch.draw(region, x-ox, y-oy, width, height);
 	}
@@ -717,6 +792,7 @@ public class GameCanvas {
 		// There is a workaround, but it will break if the bug is fixed.
 		// For now, it is better to set the affine transform directly.
 		computeTransform(ox,oy,x,y,angle,sx,sy);
+		useShaderFor(region.getTexture());
 		spriteBatch.setColor(tint);
 		spriteBatch.draw(region, region.getRegionWidth(), region.getRegionHeight(), local);
 	}
@@ -748,6 +824,7 @@ public class GameCanvas {
 
 		local.set(affine);
 		local.translate(-ox,-oy);				
+		useShaderFor(region.getTexture());
 		spriteBatch.setColor(tint);
 		spriteBatch.draw(region, region.getRegionWidth(), region.getRegionHeight(), local);
 	}
@@ -780,6 +857,7 @@ public class GameCanvas {
 		}
 		
 		// Unlike Lab 1, we can shortcut without a master drawing method
+    	useShaderFor(region.getRegion().getTexture());
     	spriteBatch.setColor(Color.WHITE);
 		spriteBatch.draw(region, x,  y);
 	}
@@ -814,6 +892,7 @@ public class GameCanvas {
 		}
 		
 		// Unlike Lab 1, we can shortcut without a master drawing method
+    	useShaderFor(region.getRegion().getTexture());
     	spriteBatch.setColor(tint);
 		spriteBatch.draw(region, x,  y, width, height);
 	}
@@ -850,6 +929,7 @@ public class GameCanvas {
 		}
 		
 		// Unlike Lab 1, we can shortcut without a master drawing method
+    	useShaderFor(region.getRegion().getTexture());
     	spriteBatch.setColor(tint);
 		spriteBatch.draw(region, x-ox, y-oy, width, height);
 	}
@@ -888,6 +968,7 @@ public class GameCanvas {
 		}
 		
 		TextureRegion bounds = region.getRegion();
+		useShaderFor(bounds.getTexture());
 		spriteBatch.setColor(tint);
 		spriteBatch.draw(region, x, y, ox, oy, 
 						 bounds.getRegionWidth(), bounds.getRegionHeight(), 
@@ -926,6 +1007,7 @@ public class GameCanvas {
 		local.translate(-ox,-oy);
 		computeVertices(local,region.getVertices());
 
+		useShaderFor(region.getRegion().getTexture());
 		spriteBatch.setColor(tint);
 		spriteBatch.draw(region, 0, 0);
 		
@@ -959,6 +1041,7 @@ public class GameCanvas {
 			Gdx.app.error("GameCanvas", "Cannot draw without active begin()", new IllegalStateException());
 			return;
 		}
+		useShaderFor(font.getRegion().getTexture());
 		GlyphLayout layout = new GlyphLayout(font,text);
 		font.draw(spriteBatch, layout, x, y);
     }
@@ -974,6 +1057,7 @@ public class GameCanvas {
 			return;
 		}
     	
+    	useShaderFor(lilypad.getTexture());
     	spriteBatch.setColor(Color.WHITE);
     	float h = 70;
     	float w = 70;
@@ -983,6 +1067,7 @@ public class GameCanvas {
 		float x = (getWidth()  - layout.width) / 1.1f + left;
 		float y = (getHeight() + layout.height) / 1.12f;
 		font.setColor(Color.WHITE);
+		useShaderFor(font.getRegion().getTexture());
 		font.draw(spriteBatch, layout, x, y+offset + 5);
     }
     
@@ -1001,6 +1086,7 @@ public class GameCanvas {
 			return;
 		}
 		
+		useShaderFor(font.getRegion().getTexture());
 		GlyphLayout layout = new GlyphLayout(font,text);
 		float x = camera.position.x  - layout.width / 2.0f;
 		float y = camera.position.y + layout.height / 2.0f;
@@ -1177,6 +1263,42 @@ public class GameCanvas {
 		debugRender.line(x0, y0, x1, y1);
 //		System.out.println("" + x0 + " " + y0 + " " + x1 + " " + y1);
     }
+
+    /**
+     * Draws the outline of the given chain in the specified color
+     *
+     * A chain loop repeats its first vertex at the end, so it is already closed.
+     *
+     * @param shape The Box2d shape
+     * @param color The outline color
+     * @param x  The x-coordinate of the shape position
+     * @param y  The y-coordinate of the shape position
+     * @param angle  The shape angle of rotation
+     * @param sx The amount to scale the x-axis
+     * @param sx The amount to scale the y-axis
+     */
+    public void drawPhysics(ChainShape shape, Color color, float x, float y, float angle, float sx, float sy) {
+		if (active != DrawPass.DEBUG) {
+			Gdx.app.error("GameCanvas", "Cannot draw without active beginDebug()", new IllegalStateException());
+			return;
+		}
+		
+		local.setToScaling(sx,sy);
+		local.translate(x,y);
+		local.rotateRad(angle);
+		
+    	float x0, y0, x1, y1;
+    	debugRender.setColor(color);
+    	for(int ii = 0; ii < shape.getVertexCount()-1; ii++) {
+    		shape.getVertex(ii  ,vertex);
+    		local.applyTo(vertex);
+    		x0 = vertex.x; y0 = vertex.y;
+    		shape.getVertex(ii+1,vertex);
+    		local.applyTo(vertex);
+    		x1 = vertex.x; y1 = vertex.y;
+    		debugRender.line(x0, y0, x1, y1);
+    	}
+    }
     
     /** 
      * Draws the outline of the given shape in the specified color
@@ -1326,17 +1448,19 @@ public class GameCanvas {
 		rectangle.end();
 	}
 	
-	public void drawPath(ArrayList<Float> path) {
-		ArrayList<Vector2> vectorPath = new ArrayList<Vector2>();
-		for (int i = 0; i < path.size(); i+=2) {
-			vectorPath.add(new Vector2(path.get(i),path.get(i+1)));
-		}
-		for (int i = 0; i < vectorPath.size()-1;i++) {
-			drawLeadingLine(vectorPath.get(i), vectorPath.get(i+1));
-			//drawOutline(vectorPath.get(i), vectorPath.get(i+1));
+	public void drawPath(float[] path) {
+		Vector2 start = new Vector2();
+		Vector2 end = new Vector2();
+		for (int i = 0; i < path.length-2; i+=2) {
+			start.set(path[i],path[i+1]);
+			end.set(path[i+2],path[i+3]);
+			drawLeadingLine(start, end);
+			//drawOutline(start, end);
 		}
-		drawLeadingLine(vectorPath.get(0), vectorPath.get(vectorPath.size()-1));
-			//drawOutline(vectorPath.get(0), vectorPath.get(vectorPath.size()-1));
+		start.set(path[0],path[1]);
+		end.set(path[path.length-2],path[path.length-1]);
+		drawLeadingLine(start, end);
+			//drawOutline(start, end);
 		
 	}
 }
\ No newline at end of file
@@ -1,14 +1,12 @@
 package edu.cornell.gdiac.downstream;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintStream;
-import java.io.Writer;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -26,9 +24,6 @@ import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.box2d.BodyDef;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.stream.JsonReader;
 
 import edu.cornell.gdiac.downstream.InputController.SelectionType;
 import edu.cornell.gdiac.downstream.WorldController.AssetState;
@@ -169,7 +164,7 @@ public class LevelEditor extends WorldController {
 	private static final float TETHER_FRICTION = ENEMY_FRICTION;
 	private static final float TETHER_RESTITUTION = BASIC_RESTITUTION;
 	
-	public class Vector4{
+	public static class Vector4{
 		float x;
 		float y;
 		float z;
@@ -213,6 +208,17 @@ public class LevelEditor extends WorldController {
 	private static String filename = null;
 	private boolean buildingLevel = false;
 
+	/** How often to autosave while there are unsaved edits (in seconds) */
+	private static final float AUTOSAVE_INTERVAL = 30.0f;
+	/** Background writer for saves, autosaves and the edit journal */
+	private LevelSaver saver;
+	/** The number of edits since the last save or autosave */
+	private int unsavedEdits;
+	/** The time since the last save or autosave (in seconds) */
+	private float autosaveTime;
+	/** How far a drawn wall or shore may move when simplified (in physics units) */
+	private static float simplifyTolerance = PathSimplifier.DEFAULT_TOLERANCE;
+
 	private CameraController cameraController;
 
 	public LevelEditor() {
@@ -237,11 +243,19 @@ public class LevelEditor extends WorldController {
 		currentClick = new Vector2(0,0);
 		mapArea = new ArrayList<Vector2>();
 		rocks = new ArrayList<Vector2>();
+		unsavedEdits = 0;
+		autosaveTime = 0;
+
+		// Only recover unsaved work when the editor first opens; a reset reverts
+		boolean recover = (saver == null);
+		if (!recover) {
+			saver.discard();
+		}
 
 		boolean loadFile = true;
 		buildingLevel = loadFile;
 		if (loadFile) {
-			loadPartialLevel();
+			loadPartialLevel(recover);
 		}
 		buildingLevel = false;
 
@@ -260,26 +274,21 @@ public class LevelEditor extends WorldController {
 
 		InputController input = InputController.getInstance();
 
-		didEnter = input.didEnter() || didEnter;
-
+		autosaveTime += dt;
+		if (saver != null && unsavedEdits > 0 && autosaveTime >= AUTOSAVE_INTERVAL && !isEditing()) {
+			saver.autosave(snapshot());
+			unsavedEdits = 0;
+			autosaveTime = 0;
+		}
 
-		if (input.didEnter() && settingEnemyPath) addEnemy(null,true);
-		if (input.didEnter() && settingWallPath) addWall(null,true);
-		if (input.didEnter() && settingShorePath) addShore(null,true);
+		if (input.didEnter()) {
+			record("enter "+input.getSelection());
+			handleEnter(input.getSelection());
+		}
 
 		if (input.isZoomIn()) 		cameraController.zoomInBoundless();
 		else if (input.isZoomOut()) cameraController.zoomOutBoundless();
 		
-		if (input.didEnter() && settingEnemyPath){
-			addEnemy(null,true);
-		}
-		if (input.didEnter() && settingWallPath){
-			addWall(null,true);
-		}
-		if (input.didEnter() && input.getSelection() == SelectionType.Whirlpool){
-			addWhirlpool(null,true);
-		}
-		
 		if (input.isZoomIn()){
 			cameraController.zoomInBoundless();
 		}
@@ -289,64 +298,157 @@ public class LevelEditor extends WorldController {
 
 		cameraController.handleArrowKeys(input.getUp(), input.getDown(), input.getLeft(), input.getRight());
 
-		handleClick: if (input.getClick() != null) {
-			if (input.getSelection() == null) break handleClick;	
+		if (input.getClick() != null && input.getSelection() != null) {
 			updateClicks();
-			switch (input.getSelection()) {
-			case Lilypad: 
-				addLilypad(currentClick);
-				return;
-			case Lantern:
-				addLantern(currentClick);
-				return;
-			case Lotus:
-				addLotus(currentClick);
-				return;
-			case Enemy:
-				addEnemy(currentClick,didEnter);
-				return;
-			case Player:
-				addPlayer(currentClick);
-				return;
-			case Wall:
-				addWall(currentClick,didEnter);
-				return;
-			case Shore:
-//				System.out.println(didEnter);
-				addShore(currentClick,didEnter);
-				return;
-			case MapArea:
-				addMapArea(currentClick);
-				return;
-			case Goal:
-				addGoal(currentClick);
-				return;
-			case Rock:
-				addRock(currentClick);
-				return;
-			case Whirlpool:
-				addWhirlpool(currentClick, didEnter);
-				return;
-			case Save:
-				this.saveToJson();
-				return;
+			if (input.getSelection() == SelectionType.Save) {
+				saveToJson();
+			} else {
+				record("click "+input.getSelection()+" "+currentClick.x+" "+currentClick.y+" "+newClick);
+				handleClick(input.getSelection());
 			}
+			return;
 		}
 		//		System.out.println("please");
 		// we can create walls by holding and dragging
 		if (input.leftClickHeldDown() && 
 				input.getSelection() != null && 
-				input.getSelection() == SelectionType.Wall) {
+				(input.getSelection() == SelectionType.Wall || input.getSelection() == SelectionType.Shore)) {
 			updateClicks();
+			// Nothing happens unless the mouse moved or enter was pressed
+			if (newClick || didEnter) {
+				record("drag "+input.getSelection()+" "+currentClick.x+" "+currentClick.y+" "+newClick);
+			}
+			handleDrag(input.getSelection());
+		}
+	}
+
+	/**
+	 * Finishes the path or whirlpool currently being placed.
+	 *
+	 * If nothing is being placed, the next click will finish instead.
+	 *
+	 * @param selection The current editor tool
+	 */
+	private void handleEnter(SelectionType selection) {
+		didEnter = true;
+		if (settingEnemyPath) addEnemy(null,true);
+		if (settingWallPath) addWall(null,true);
+		if (settingShorePath) addShore(null,true);
+		if (selection == SelectionType.Whirlpool) addWhirlpool(null,true);
+	}
+
+	/**
+	 * Applies a click at currentClick with the given tool.
+	 *
+	 * @param selection The current editor tool
+	 */
+	private void handleClick(SelectionType selection) {
+		switch (selection) {
+		case Lilypad: 
+			addLilypad(currentClick);
+			return;
+		case Lantern:
+			addLantern(currentClick);
+			return;
+		case Lotus:
+			addLotus(currentClick);
+			return;
+		case Enemy:
+			addEnemy(currentClick,didEnter);
+			return;
+		case Player:
+			addPlayer(currentClick);
+			return;
+		case Wall:
 			addWall(currentClick,didEnter);
-		} else if (input.leftClickHeldDown() &&
-				input.getSelection() != null &&
-				input.getSelection() == SelectionType.Shore) {
-			updateClicks();
+			return;
+		case Shore:
+//				System.out.println(didEnter);
+			addShore(currentClick,didEnter);
+			return;
+		case MapArea:
+			addMapArea(currentClick);
+			return;
+		case Goal:
+			addGoal(currentClick);
+			return;
+		case Rock:
+			addRock(currentClick);
+			return;
+		case Whirlpool:
+			addWhirlpool(currentClick, didEnter);
+			return;
+		default:
+			return;
+		}
+	}
+
+	/**
+	 * Applies a mouse drag to currentClick with the given tool.
+	 *
+	 * @param selection The current editor tool
+	 */
+	private void handleDrag(SelectionType selection) {
+		if (selection == SelectionType.Wall) {
+			addWall(currentClick,didEnter);
+		} else if (selection == SelectionType.Shore) {
 			addShore(currentClick,didEnter);
 		}
 	}
 
+	/**
+	 * Returns true if a path, whirlpool or enter press is only partly applied.
+	 *
+	 * An autosave cannot capture these, so autosaves wait until they are done.
+	 *
+	 * @return true if a path, whirlpool or enter press is only partly applied.
+	 */
+	private boolean isEditing() {
+		return settingEnemyPath || settingWallPath || settingShorePath || didEnter || !currentWhirlpool.isEmpty();
+	}
+
+	/**
+	 * Appends an edit to the journal.
+	 *
+	 * @param entry The edit, as a single line
+	 */
+	private void record(String entry) {
+		if (saver == null) return;
+		saver.record(entry);
+		unsavedEdits++;
+	}
+
+	/**
+	 * Reapplies the edits recorded in a journal.
+	 *
+	 * Replay stops at the first entry that cannot be read.
+	 *
+	 * @param entries The journal entries, oldest first
+	 */
+	private void replayJournal(ArrayList<String> entries) {
+		for (String entry : entries) {
+			try {
+				String[] parts = entry.split(" ");
+				SelectionType selection = (parts[1].equals("null") ? null : SelectionType.valueOf(parts[1]));
+				if (parts[0].equals("enter")) {
+					handleEnter(selection);
+					continue;
+				}
+				currentClick.set(Float.parseFloat(parts[2]), Float.parseFloat(parts[3]));
+				newClick = Boolean.parseBoolean(parts[4]);
+				if (parts[0].equals("click")) {
+					handleClick(selection);
+				} else {
+					handleDrag(selection);
+				}
+			} catch (Exception e) {
+				Gdx.app.error("LevelEditor", "Bad journal entry \""+entry+"\" in "+saver.getJournalFile(), e);
+				return;
+			}
+			unsavedEdits++;
+		}
+	}
+
 	private void addLilypad(Vector2 click) {
 		lilypads.add(click.cpy());
 		float rad = lilyTexture.getRegionWidth()/scale.x/2;
@@ -497,6 +599,7 @@ public class LevelEditor extends WorldController {
 			float[] wallFloat = new float[wall.size()];
 			for (int i = 0; i < wall.size(); i++) wallFloat[i] = wall.get(i);
 			if (wallFloat.length == 0) return;
+			if (!buildingLevel) wallFloat = simplifyPath(wallPath, wallFloat);
 			obj = new PolygonObstacle(wallFloat, 0, 0);
 			obj.setBodyType(BodyDef.BodyType.StaticBody);
 			obj.setDensity(BASIC_DENSITY);
@@ -606,6 +709,7 @@ public class LevelEditor extends WorldController {
 			float[] shoreFloat = new float[shore.size()];
 			for (int i = 0; i < shore.size(); i++) shoreFloat[i] = shore.get(i);
 			if (shoreFloat.length == 0) return;
+			if (!buildingLevel) shoreFloat = simplifyPath(shorePath, shoreFloat);
 			System.out.println(Arrays.toString(shoreFloat));
 			obj = new PolygonObstacle(shoreFloat, 0, 0);
 			obj.setBodyType(BodyDef.BodyType.StaticBody);
@@ -630,6 +734,48 @@ public class LevelEditor extends WorldController {
 		shorePath.add(click.cpy().scl(scale));
 	}
 
+	/**
+	 * Returns the finished path with its redundant vertices removed.
+	 *
+	 * Dragging adds a vertex every frame, so drawn walls and shores have far
+	 * more vertices (and so triangles and fixtures) than their shape needs.
+	 * The path, which is what gets saved, is updated to match.
+	 *
+	 * @param path		The path (in screen coordinates)
+	 * @param points	The path as x,y pairs (in physics coordinates)
+	 *
+	 * @return the simplified path as x,y pairs (in physics coordinates)
+	 */
+	private float[] simplifyPath(ArrayList<Vector2> path, float[] points) {
+		if (points.length < 6 || simplifyTolerance <= 0) return points;
+		float[] result = PathSimplifier.simplify(points, simplifyTolerance);
+		path.clear();
+		for (int i = 0; i < result.length; i += 2) {
+			path.add(new Vector2(result[i]*scale.x, result[i+1]*scale.y));
+		}
+		return result;
+	}
+
+	/**
+	 * Sets how far a drawn wall or shore may move when simplified.
+	 *
+	 * A tolerance of 0 turns simplification off.
+	 *
+	 * @param tolerance	The tolerance (in physics units)
+	 */
+	public static void setSimplifyTolerance(float tolerance) {
+		simplifyTolerance = tolerance;
+	}
+
+	/**
+	 * Returns how far a drawn wall or shore may move when simplified.
+	 *
+	 * @return how far a drawn wall or shore may move when simplified.
+	 */
+	public static float getSimplifyTolerance() {
+		return simplifyTolerance;
+	}
+
 	private void drawPaths() {
 		if (settingEnemyPath) drawPath(enemyPath);
 		if (settingWallPath) drawPath(wallPath);
@@ -680,7 +826,25 @@ public class LevelEditor extends WorldController {
 		return false;
 	}
 
+	/**
+	 * Saves the level in the background.
+	 */
 	private void saveToJson() {
+		if (saver == null) {
+			Gdx.app.error("LevelEditor", "Not saved: no level file is open");
+			return;
+		}
+		saver.save(snapshot());
+		unsavedEdits = 0;
+		autosaveTime = 0;
+	}
+
+	/**
+	 * Returns a copy of the level being edited, safe to write on another thread.
+	 *
+	 * @return a copy of the level being edited
+	 */
+	private Level snapshot() {
 		int n = 1;
 		Vector2 p = player;
 		ArrayList<Vector2> g = goal;
@@ -693,27 +857,14 @@ public class LevelEditor extends WorldController {
 		ArrayList<Vector4> wp = whirlpools;
 		ArrayList<Vector2> m = mapArea;
 		ArrayList<Vector2> r = rocks;
-		Level level = new Level(n,p,g,e,li,lo,la,w,s,wp,r,m);
-		try {
-			Gson gson = new GsonBuilder().setPrettyPrinting().create();
-			System.setOut(new PrintStream(new FileOutputStream(filename)));
-			System.out.println(gson.toJson(level));
-		} catch (Exception e1) {
-			// haha please no
-			e1.printStackTrace();
-		}
+		return new Level(n,p,g,e,li,lo,la,w,s,wp,r,m,scale);
 	}
 
 	protected static Level loadFromJson() {
 		//	    return defaultLevel();
-		Gson gson = new Gson();
 		try {
 			if (filename == null) filename = getFileName();
-			JsonReader reader = new JsonReader(new FileReader(filename));
-			//	      JsonReader reader = new JsonReader(new InputStreamReader(LevelEditor.class.getResourceAsStream("/json/"+filename)));
-			Level level = gson.fromJson(reader, Level.class);
-			//	      System.out.println(level);
-			return level;
+			return loadFromJson(new File(filename));
 		} catch (Exception e){
 			System.out.println(e);
 			//pls no
@@ -721,15 +872,63 @@ public class LevelEditor extends WorldController {
 		}
 	}
 
+	/**
+	 * Returns the level read from the given file
+	 *
+	 * @param file	The level file
+	 *
+	 * @return the level read from the given file
+	 */
+	private static Level loadFromJson(File file) throws IOException {
+		Reader reader = new BufferedReader(new FileReader(file));
+		try {
+			return LevelParser.read(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
 	public static Level loadFromJson(int lvl) {
+		setLevelFile(lvl);
+		return readLevel(lvl);
+	}
+
+	/**
+	 * Makes the given level the one the editor opens and saves
+	 *
+	 * This must be called on the main thread.
+	 *
+	 * @param lvl	The level number
+	 */
+	public static void setLevelFile(int lvl) {
+		filename = "levels/"+lvl + ".json";
+	}
+
+	/**
+	 * Returns the given level, or the default level if it cannot be read
+	 *
+	 * Unlike loadFromJson, this does not change the file the editor opens, so it
+	 * is safe to call from the level prefetcher.
+	 *
+	 * @param lvl	The level number
+	 *
+	 * @return the given level, or the default level if it cannot be read
+	 */
+	public static Level readLevel(int lvl) {
 		//	    return defaultLevel();
-		Gson gson = new Gson();
+		String file = "levels/"+lvl + ".json";
 		try {
-			filename = "levels/"+lvl + ".json";
-			JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(filename)));
-			Level level = gson.fromJson(reader, Level.class);
-//			System.out.println(level.rocks);
-			return level;
+			// Use the compiled level if it is up to date
+			Level compiled = CompiledLevel.load(new File("levels/"+lvl+CompiledLevel.EXTENSION), new File(file));
+			if (compiled != null) {
+				return compiled;
+			}
+			Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+			try {
+				return LevelParser.read(reader);
+			} finally {
+				reader.close();
+			}
 		} catch (Exception e) {
 			System.out.println(e);
 			return defaultLevel();
@@ -749,8 +948,7 @@ public class LevelEditor extends WorldController {
 	    ArrayList<Vector4> wpools = new ArrayList<Vector4>();
 	    ArrayList<Vector2> map = new ArrayList<Vector2>();
 	    map.add(new Vector2(-719.5991f,1317.8994f));map.add(new Vector2(2249.889f,-604.0794f));
-	    ArrayList<ArrayList<Float>> walls = new ArrayList<ArrayList<Float>>();
-	    walls.add(new ArrayList<Float>(Arrays.asList(new Float[] {
+	    float[][] walls = new float[][] { {
 	         -18.874977f,
 	            33.954987f,
 	            58.15998f,
@@ -770,12 +968,11 @@ public class LevelEditor extends WorldController {
 	            51.804974f,
 	            28.064991f,
 	            -19.02998f,
-	            27.754993f})));
-	    LevelEditor le = new LevelEditor();
+	            27.754993f} };
 	    ArrayList<ArrayList<Vector2>> w = new ArrayList<ArrayList<Vector2>>();
 	    ArrayList<ArrayList<Vector2>> s = new ArrayList<ArrayList<Vector2>>();
 	    ArrayList<Vector2> r = new ArrayList<Vector2>();
-	    Level defaultLevel =  le.new Level(number, player, goal, enemiesLevel, lilypads, lotuses, new ArrayList<Vector2>(), w, s, wpools, r, map);
+	    Level defaultLevel =  new Level(number, player, goal, enemiesLevel, lilypads, lotuses, new ArrayList<Vector2>(), w, s, wpools, r, map, new Vector2(1,1));
 	    defaultLevel.walls = walls;
 	    return defaultLevel;
 	  }
@@ -785,23 +982,50 @@ public class LevelEditor extends WorldController {
 		drawPaths();
 	}
 
-	private void loadPartialLevel() {
+	@Override
+	public void dispose() {
+		if (saver != null) {
+			saver.dispose();
+			saver = null;
+		}
+		super.dispose();
+	}
+
+	/**
+	 * Loads the level file into the editor.
+	 *
+	 * If recover is true, this also starts the background saver.  Any autosave
+	 * and journal left by an earlier session are loaded in place of the level
+	 * file, so no edits are lost if the editor died before saving.
+	 *
+	 * @param recover Whether to recover unsaved work
+	 */
+	private void loadPartialLevel(boolean recover) {
 	    buildingLevel = true;
 	    Level level = loadFromJson();
 	    System.out.println(level);
+	    ArrayList<String> journal = new ArrayList<String>();
+	    // Start the saver even if the file is missing, so Save can create it
+	    if (recover && filename != null) {
+	    	saver = new LevelSaver(new File(filename));
+	    	if (saver.getAutosaveFile().exists()) {
+	    		try {
+	    			level = loadFromJson(saver.getAutosaveFile());
+	    			System.out.println("Recovered autosave "+saver.getAutosaveFile());
+	    		} catch (IOException e) {
+	    			Gdx.app.error("LevelEditor", "Could not recover autosave "+saver.getAutosaveFile(), e);
+	    		}
+	    	}
+	    	journal = LevelSaver.readJournal(new File(filename));
+	    }
 	    if (level == null) return;
 	    ArrayList<ArrayList<Vector2>> tempWalls = new ArrayList<ArrayList<Vector2>>();
-	    if (level.walls != null) {
-	    	for (int i = 0; i < level.walls.size(); i++) {
-	  	      ArrayList<Vector2> wall = new ArrayList<Vector2>();
-	  	      if (level.walls.get(i) != null) {
-	  	    	for (int j = 0; j < level.walls.get(i).size(); j+=2) {
-		  	        wall.add(new Vector2(level.walls.get(i).get(j),
-		  	                   level.walls.get(i).get(j+1)));
-		  	      }
-		  	      tempWalls.add(wall);
-	  	      }
-	  	    }
+	    for (float[] points : level.walls) {
+	    	ArrayList<Vector2> wall = new ArrayList<Vector2>();
+	    	for (int j = 0; j < points.length; j+=2) {
+	    		wall.add(new Vector2(points[j], points[j+1]));
+	    	}
+	    	tempWalls.add(wall);
 	    }
 	    if (level.player != null) {
 	      addPlayer(level.player);
@@ -848,14 +1072,20 @@ public class LevelEditor extends WorldController {
 	      addWall(null,true);
 	    }
 	    
-	    for (String enemy : level.enemiesLevel.keySet()) {
-	      addEnemy(vectorOfString(enemy), false);
-	      for (Vector2 waypoint : level.enemiesLevel.get(enemy)) {
-	        addEnemy(waypoint,false);
+	    for (int i = 0; i < level.getEnemyCount(); i++) {
+	      addEnemy(new Vector2(level.enemyStarts[2*i], level.enemyStarts[2*i+1]), false);
+	      float[] path = level.enemyPaths[i];
+	      for (int j = 0; j < path.length; j+=2) {
+	        addEnemy(new Vector2(path[j], path[j+1]),false);
 	      }
 	      addEnemy(null,true);
 	    }
 	    buildingLevel = false;
+
+	    if (!journal.isEmpty()) {
+	    	replayJournal(journal);
+	    	System.out.println("Replayed "+journal.size()+" edits from "+saver.getJournalFile());
+	    }
 	  }
 
 	private static String getFileName() throws IOException {
@@ -874,20 +1104,40 @@ public class LevelEditor extends WorldController {
 
 
 
-	class Level {
+	/**
+	 * The contents of a level file.
+	 *
+	 * Walls, shores and enemy paths are stored as flat arrays of x,y pairs.
+	 * Levels are read and written by LevelParser, which keeps the same JSON
+	 * layout that the old Gson model used.
+	 */
+	static class Level {
 		int number;
 		Vector2 player;
 		ArrayList<Vector2> goal = new ArrayList<Vector2>();
-		HashMap<String,ArrayList<Vector2>> enemiesLevel = new HashMap<String,ArrayList<Vector2>>();;
+		/** The starting position of each enemy, as x,y pairs */
+		float[] enemyStarts = new float[0];
+		/** The patrol path of each enemy, as x,y pairs */
+		float[][] enemyPaths = new float[0][];
 		ArrayList<Vector2> lilypads = new ArrayList<Vector2>();
 		ArrayList<Vector2> lotuses = new ArrayList<Vector2>();
 		ArrayList<Vector2> lanterns = new ArrayList<Vector2>();
-		ArrayList<ArrayList<Float>> walls = new ArrayList<ArrayList<Float>>();
-		ArrayList<ArrayList<Float>> shores = new ArrayList<ArrayList<Float>>();
+		float[][] walls = new float[0][];
+		float[][] shores = new float[0][];
+		/** The triangulation of each wall (only set for compiled levels) */
+		short[][] wallTriangles;
+		/** The triangulation of each shore (only set for compiled levels) */
+		short[][] shoreTriangles;
 		ArrayList<Vector4> whirlpools = new ArrayList<Vector4>();
 		ArrayList<Vector2> map = new ArrayList<Vector2>();
 		ArrayList<Vector2> rocks = new ArrayList<Vector2>();
 
+		/**
+		 * Creates an empty level, to be filled in by the parser.
+		 */
+		Level() {
+		}
+
 		private Level(int n, 
 				Vector2 p, 
 				ArrayList<Vector2> g, 
@@ -899,47 +1149,81 @@ public class LevelEditor extends WorldController {
 				ArrayList<ArrayList<Vector2>> s, 
 				ArrayList<Vector4> wp,
 				ArrayList<Vector2> r,
-				ArrayList<Vector2> m) {
+				ArrayList<Vector2> m,
+				Vector2 scale) {
 
 
+			// Copy everything, since the editor keeps changing its lists
 			number = n;
-			player = p;
-			goal = g;
-			enemiesLevel = new HashMap<String,ArrayList<Vector2>>();
+			player = (p == null ? null : p.cpy());
+			goal = copyOf(g);
+			enemyStarts = new float[2*e.size()];
+			enemyPaths = new float[e.size()][];
+			int index = 0;
 			for (String enemy : e.keySet()) {
-				ArrayList<Vector2> enemyPath = new ArrayList<Vector2>();
-				for (Vector2 v : e.get(enemy)) enemyPath.add(v.cpy().scl(1/scale.x,1/scale.y));
-				enemiesLevel.put(enemy, enemyPath);
-
+				Vector2 start = vectorOfString(enemy);
+				enemyStarts[2*index] = start.x;
+				enemyStarts[2*index+1] = start.y;
+				enemyPaths[index] = toArray(e.get(enemy), scale);
+				index++;
 			}
-			lilypads = li;
-			lotuses = lo;
-			lanterns = la;
-			whirlpools = wp;
-
-			walls = new ArrayList<ArrayList<Float>>();
-			for (ArrayList<Vector2> vectorList : w) {
-				ArrayList<Float> floatList = new ArrayList<Float>();
-				for (Vector2 vector : vectorList) {
-					floatList.add(vector.x/scale.x);
-					floatList.add(vector.y/scale.y);
-				}
-				walls.add(floatList);
+			lilypads = copyOf(li);
+			lotuses = copyOf(lo);
+			lanterns = copyOf(la);
+			whirlpools = new ArrayList<Vector4>(wp);
+
+			walls = new float[w.size()][];
+			for (int ii = 0; ii < walls.length; ii++) {
+				walls[ii] = toArray(w.get(ii), scale);
 			}
-			shores = new ArrayList<ArrayList<Float>>();
-			for (ArrayList<Vector2> vectorList : s) {
-				ArrayList<Float> floatList = new ArrayList<Float>();
-				for (Vector2 vector : vectorList) {
-					floatList.add(vector.x/scale.x);
-					floatList.add(vector.y/scale.y);
-				}
-				shores.add(floatList);
+			shores = new float[s.size()][];
+			for (int ii = 0; ii < shores.length; ii++) {
+				shores[ii] = toArray(s.get(ii), scale);
+			}
+			rocks = copyOf(r);
+			map = copyOf(m);
+		}
+
+		/**
+		 * Returns a deep copy of the given points
+		 *
+		 * @param points	The points to copy
+		 *
+		 * @return a deep copy of the given points
+		 */
+		private static ArrayList<Vector2> copyOf(ArrayList<Vector2> points) {
+			ArrayList<Vector2> result = new ArrayList<Vector2>(points.size());
+			for (Vector2 v : points) {
+				result.add(v.cpy());
 			}
-			rocks = r;
-			map = m;
+			return result;
 		}
 
+		/**
+		 * Returns the number of enemies in this level
+		 *
+		 * @return the number of enemies in this level
+		 */
+		int getEnemyCount() {
+			return enemyPaths.length;
+		}
 
+		/**
+		 * Returns the given points as x,y pairs, divided by the draw scale
+		 *
+		 * @param points	The points (in screen coordinates)
+		 * @param scale		The draw scale
+		 *
+		 * @return the given points as x,y pairs, divided by the draw scale
+		 */
+		private static float[] toArray(ArrayList<Vector2> points, Vector2 scale) {
+			float[] result = new float[2*points.size()];
+			for (int ii = 0; ii < points.size(); ii++) {
+				result[2*ii] = points.get(ii).x/scale.x;
+				result[2*ii+1] = points.get(ii).y/scale.y;
+			}
+			return result;
+		}
 	}
 
 
@@ -0,0 +1,361 @@
+/*
+ * LevelParser.java
+ *
+ * Level files used to be read with Gson.fromJson, which builds the level by
+ * reflection and boxes every coordinate in a Float.  The enemies were also keyed
+ * by strings that had to be parsed back into positions.  This class reads the
+ * same files one token at a time, straight into primitive arrays.
+ */
+package edu.cornell.gdiac.downstream;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.FloatArray;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Static class for reading and writing level files.
+ *
+ * The JSON layout is unchanged from the Gson model, so old files still load and
+ * new files can still be read by older builds.  Unknown fields are skipped, and
+ * missing fields are left empty.  Anything after the level object is ignored
+ * (older saves have log output appended to them).
+ */
+public class LevelParser {
+
+	/**
+	 * Returns the level read from the given stream.
+	 *
+	 * The reader is not closed.
+	 *
+	 * @param in	The level file
+	 *
+	 * @return the level read from the given stream.
+	 */
+	public static LevelEditor.Level read(Reader in) throws IOException {
+		JsonReader reader = new JsonReader(in);
+		reader.setLenient(true);
+
+		LevelEditor.Level level = new LevelEditor.Level();
+		FloatArray buffer = new FloatArray();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+			} else if (name.equals("number")) {
+				level.number = reader.nextInt();
+			} else if (name.equals("player")) {
+				level.player = readVector(reader);
+			} else if (name.equals("goal")) {
+				level.goal = readVectors(reader);
+			} else if (name.equals("enemiesLevel")) {
+				readEnemies(reader, level, buffer);
+			} else if (name.equals("lilypads")) {
+				level.lilypads = readVectors(reader);
+			} else if (name.equals("lotuses")) {
+				level.lotuses = readVectors(reader);
+			} else if (name.equals("lanterns")) {
+				level.lanterns = readVectors(reader);
+			} else if (name.equals("walls")) {
+				level.walls = readPolygons(reader, buffer);
+			} else if (name.equals("shores")) {
+				level.shores = readPolygons(reader, buffer);
+			} else if (name.equals("whirlpools")) {
+				level.whirlpools = readWhirlpools(reader);
+			} else if (name.equals("map")) {
+				level.map = readVectors(reader);
+			} else if (name.equals("rocks")) {
+				level.rocks = readVectors(reader);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return level;
+	}
+
+	/**
+	 * Writes the level to the given stream.
+	 *
+	 * The output matches what Gson used to produce with pretty printing.  The
+	 * writer is flushed but not closed.
+	 *
+	 * @param level	The level to write
+	 * @param out	The level file
+	 */
+	public static void write(LevelEditor.Level level, Writer out) throws IOException {
+		JsonWriter writer = new JsonWriter(out);
+		writer.setIndent("  ");
+
+		writer.beginObject();
+		writer.name("number").value(level.number);
+		if (level.player != null) {
+			writer.name("player");
+			writeVector(writer, level.player.x, level.player.y);
+		}
+		writeVectors(writer, "goal", level.goal);
+
+		writer.name("enemiesLevel").beginObject();
+		for (int ii = 0; ii < level.getEnemyCount(); ii++) {
+			float x = level.enemyStarts[2*ii];
+			float y = level.enemyStarts[2*ii+1];
+			writer.name("("+x+","+y+")").beginArray();
+			float[] path = level.enemyPaths[ii];
+			for (int jj = 0; jj < path.length; jj += 2) {
+				writeVector(writer, path[jj], path[jj+1]);
+			}
+			writer.endArray();
+		}
+		writer.endObject();
+
+		writeVectors(writer, "lilypads", level.lilypads);
+		writeVectors(writer, "lotuses", level.lotuses);
+		writeVectors(writer, "lanterns", level.lanterns);
+		writePolygons(writer, "walls", level.walls);
+		writePolygons(writer, "shores", level.shores);
+
+		if (level.whirlpools != null) {
+			writer.name("whirlpools").beginArray();
+			for (LevelEditor.Vector4 pool : level.whirlpools) {
+				writer.beginObject();
+				writer.name("x").jsonValue(Float.toString(pool.x));
+				writer.name("y").jsonValue(Float.toString(pool.y));
+				writer.name("z").jsonValue(Float.toString(pool.z));
+				writer.name("w").jsonValue(Float.toString(pool.w));
+				writer.endObject();
+			}
+			writer.endArray();
+		}
+
+		writeVectors(writer, "map", level.map);
+		writeVectors(writer, "rocks", level.rocks);
+		writer.endObject();
+		writer.flush();
+		out.write('\n');
+		out.flush();
+	}
+
+	/**
+	 * Returns the next value as a vector
+	 *
+	 * @param reader	The JSON token stream
+	 *
+	 * @return the next value as a vector
+	 */
+	private static Vector2 readVector(JsonReader reader) throws IOException {
+		Vector2 result = new Vector2();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("x")) {
+				result.x = (float)reader.nextDouble();
+			} else if (name.equals("y")) {
+				result.y = (float)reader.nextDouble();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return result;
+	}
+
+	/**
+	 * Returns the next value as a list of vectors
+	 *
+	 * @param reader	The JSON token stream
+	 *
+	 * @return the next value as a list of vectors
+	 */
+	private static ArrayList<Vector2> readVectors(JsonReader reader) throws IOException {
+		ArrayList<Vector2> result = new ArrayList<Vector2>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			result.add(readVector(reader));
+		}
+		reader.endArray();
+		return result;
+	}
+
+	/**
+	 * Appends the next vector value to the buffer as an x,y pair
+	 *
+	 * @param reader	The JSON token stream
+	 * @param buffer	The buffer to append to
+	 */
+	private static void readPoint(JsonReader reader, FloatArray buffer) throws IOException {
+		float x = 0;
+		float y = 0;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("x")) {
+				x = (float)reader.nextDouble();
+			} else if (name.equals("y")) {
+				y = (float)reader.nextDouble();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		buffer.add(x);
+		buffer.add(y);
+	}
+
+	/**
+	 * Returns the next value as a list of flat polygons
+	 *
+	 * @param reader	The JSON token stream
+	 * @param buffer	Scratch space for the coordinates
+	 *
+	 * @return the next value as a list of flat polygons
+	 */
+	private static float[][] readPolygons(JsonReader reader, FloatArray buffer) throws IOException {
+		ArrayList<float[]> result = new ArrayList<float[]>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				continue;
+			}
+			buffer.clear();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				buffer.add((float)reader.nextDouble());
+			}
+			reader.endArray();
+			result.add(buffer.toArray());
+		}
+		reader.endArray();
+		return result.toArray(new float[result.size()][]);
+	}
+
+	/**
+	 * Reads the enemy map into the level.
+	 *
+	 * Each key is the starting position of an enemy, written as "(x,y)".  The
+	 * value is the patrol path.
+	 *
+	 * @param reader	The JSON token stream
+	 * @param level		The level to fill in
+	 * @param buffer	Scratch space for the coordinates
+	 */
+	private static void readEnemies(JsonReader reader, LevelEditor.Level level, FloatArray buffer) throws IOException {
+		FloatArray starts = new FloatArray();
+		ArrayList<float[]> paths = new ArrayList<float[]>();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String key = reader.nextName();
+			int open  = key.indexOf('(');
+			int comma = key.indexOf(',');
+			int close = key.indexOf(')');
+			starts.add(Float.parseFloat(key.substring(open+1,comma)));
+			starts.add(Float.parseFloat(key.substring(comma+1,close)));
+
+			buffer.clear();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				readPoint(reader, buffer);
+			}
+			reader.endArray();
+			paths.add(buffer.toArray());
+		}
+		reader.endObject();
+		level.enemyStarts = starts.toArray();
+		level.enemyPaths = paths.toArray(new float[paths.size()][]);
+	}
+
+	/**
+	 * Returns the next value as a list of whirlpools
+	 *
+	 * @param reader	The JSON token stream
+	 *
+	 * @return the next value as a list of whirlpools
+	 */
+	private static ArrayList<LevelEditor.Vector4> readWhirlpools(JsonReader reader) throws IOException {
+		ArrayList<LevelEditor.Vector4> result = new ArrayList<LevelEditor.Vector4>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			LevelEditor.Vector4 pool = new LevelEditor.Vector4(0, 0, 0, 0);
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (name.equals("x")) {
+					pool.x = (float)reader.nextDouble();
+				} else if (name.equals("y")) {
+					pool.y = (float)reader.nextDouble();
+				} else if (name.equals("z")) {
+					pool.z = (float)reader.nextDouble();
+				} else if (name.equals("w")) {
+					pool.w = (float)reader.nextDouble();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			result.add(pool);
+		}
+		reader.endArray();
+		return result;
+	}
+
+	/**
+	 * Writes a single vector value
+	 *
+	 * @param writer	The JSON token stream
+	 * @param x			The x-coordinate
+	 * @param y			The y-coordinate
+	 */
+	private static void writeVector(JsonWriter writer, float x, float y) throws IOException {
+		writer.beginObject();
+		writer.name("x").jsonValue(Float.toString(x));
+		writer.name("y").jsonValue(Float.toString(y));
+		writer.endObject();
+	}
+
+	/**
+	 * Writes a named list of vectors (if it is not null)
+	 *
+	 * @param writer	The JSON token stream
+	 * @param name		The field name
+	 * @param vectors	The vectors to write
+	 */
+	private static void writeVectors(JsonWriter writer, String name, ArrayList<Vector2> vectors) throws IOException {
+		if (vectors == null) {
+			return;
+		}
+		writer.name(name).beginArray();
+		for (Vector2 v : vectors) {
+			writeVector(writer, v.x, v.y);
+		}
+		writer.endArray();
+	}
+
+	/**
+	 * Writes a named list of flat polygons (if it is not null)
+	 *
+	 * @param writer	The JSON token stream
+	 * @param name		The field name
+	 * @param polygons	The polygons to write
+	 */
+	private static void writePolygons(JsonWriter writer, String name, float[][] polygons) throws IOException {
+		if (polygons == null) {
+			return;
+		}
+		writer.name(name).beginArray();
+		for (float[] polygon : polygons) {
+			writer.beginArray();
+			for (float f : polygon) {
+				writer.jsonValue(Float.toString(f));
+			}
+			writer.endArray();
+		}
+		writer.endArray();
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * LevelPrefetcher.java
+ *
+ * Loading a level used to happen all at once on the render thread: read the file,
+ * parse the JSON, triangulate every wall, and then build the bodies.  Only the
+ * last step actually needs the render thread.  This class does the rest on a
+ * background thread while the previous level is still being played.
+ */
+package edu.cornell.gdiac.downstream;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+import com.badlogic.gdx.math.*;
+
+import edu.cornell.gdiac.downstream.ai.NavGrid;
+import edu.cornell.gdiac.downstream.obstacle.PolygonObstacle;
+
+/**
+ * Background loader for the next level.
+ *
+ * Everything in a PreparedLevel is plain data, so it is safe to build on any
+ * thread.  Box2D bodies, fixtures and textures are still created by the
+ * controller on the render thread.
+ */
+public class LevelPrefetcher {
+
+	/**
+	 * The thread-agnostic part of a loaded level.
+	 *
+	 * Walls and shores are triangulated, and the enemy paths are expanded into
+	 * the waypoint lists that EnemyModel expects.
+	 */
+	public static class PreparedLevel {
+		/** The level number (or -1 for a level chosen from a file) */
+		public int number;
+		/** The level as it was parsed from the file */
+		public LevelEditor.Level level;
+		/** The wall polygons */
+		public float[][] walls;
+		/** The triangulation of each wall */
+		public short[][] wallTriangles;
+		/** The shore polygons */
+		public float[][] shores;
+		/** The triangulation of each shore */
+		public short[][] shoreTriangles;
+		/** The starting position of each enemy */
+		public ArrayList<Vector2> enemyStarts = new ArrayList<Vector2>();
+		/** The patrol path of each enemy */
+		public ArrayList<ArrayList<Vector2>> enemyPaths = new ArrayList<ArrayList<Vector2>>();
+		/** The navigation grid over the water, for the enemies */
+		public NavGrid navigation;
+	}
+
+	/** The worker thread */
+	private ExecutorService executor;
+	/** Triangulator for the worker thread (they are not thread safe) */
+	private EarClippingTriangulator workerTriangulator;
+	/** Triangulator for synchronous loads on the calling thread */
+	private EarClippingTriangulator localTriangulator;
+
+	/** The level currently being prefetched (or -1 if none) */
+	private int pendingNumber;
+	/** The result of the current prefetch */
+	private Future<PreparedLevel> pending;
+
+	/**
+	 * Creates a new prefetcher with a single daemon worker thread.
+	 */
+	public LevelPrefetcher() {
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "LevelPrefetcher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		workerTriangulator = new EarClippingTriangulator();
+		localTriangulator = new EarClippingTriangulator();
+		pendingNumber = -1;
+		pending = null;
+	}
+
+	/**
+	 * Starts loading the given level in the background.
+	 *
+	 * Any earlier prefetch that has not been claimed is abandoned.
+	 *
+	 * @param number The level number
+	 */
+	public void prefetch(final int number) {
+		if (number == pendingNumber && pending != null) {
+			return;
+		}
+		if (pending != null) {
+			pending.cancel(false);
+		}
+		pendingNumber = number;
+		pending = executor.submit(new Callable<PreparedLevel>() {
+			public PreparedLevel call() {
+				return prepare(number, LevelEditor.readLevel(number), workerTriangulator);
+			}
+		});
+	}
+
+	/**
+	 * Returns the given level, ready for body creation.
+	 *
+	 * If the level was prefetched, this only waits for the worker to finish
+	 * (which it usually already has).  Otherwise, the level is loaded on the
+	 * calling thread.
+	 *
+	 * @param number The level number
+	 *
+	 * @return the given level, ready for body creation.
+	 */
+	public PreparedLevel take(int number) {
+		if (number == pendingNumber && pending != null) {
+			Future<PreparedLevel> result = pending;
+			pending = null;
+			pendingNumber = -1;
+			try {
+				return result.get();
+			} catch (Exception e) {
+				System.out.println(e);
+			}
+		}
+		return prepare(number, LevelEditor.readLevel(number), localTriangulator);
+	}
+
+	/**
+	 * Returns the given level, ready for body creation.
+	 *
+	 * This is for levels that do not have a number, like those chosen from a
+	 * file.  The work is done on the calling thread.
+	 *
+	 * @param level The parsed level
+	 *
+	 * @return the given level, ready for body creation.
+	 */
+	public PreparedLevel prepare(LevelEditor.Level level) {
+		return prepare(-1, level, localTriangulator);
+	}
+
+	/**
+	 * Starts reading a level file in the background, for a hot reload.
+	 *
+	 * This does not disturb a prefetch in progress.  Unlike a prefetch, a file
+	 * that does not parse is an error rather than the default level, since the
+	 * file is often caught halfway through being saved.
+	 *
+	 * @param number	The level number
+	 * @param file		The level file
+	 *
+	 * @return the prepared level, when it is ready
+	 */
+	public Future<PreparedLevel> reload(final int number, final File file) {
+		return executor.submit(new Callable<PreparedLevel>() {
+			public PreparedLevel call() throws IOException {
+				Reader reader = new BufferedReader(new FileReader(file));
+				try {
+					return prepare(number, LevelParser.read(reader), workerTriangulator);
+				} finally {
+					reader.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stops the worker thread.
+	 */
+	public void dispose() {
+		executor.shutdownNow();
+		pending = null;
+		pendingNumber = -1;
+	}
+
+	/**
+	 * Converts a parsed level into its prepared form.
+	 *
+	 * @param number       The level number
+	 * @param level        The parsed level
+	 * @param triangulator The triangulator for the current thread
+	 *
+	 * @return the prepared level
+	 */
+	private static PreparedLevel prepare(int number, LevelEditor.Level level, EarClippingTriangulator triangulator) {
+		PreparedLevel result = new PreparedLevel();
+		result.number = number;
+		result.level = level;
+
+		// Compiled levels already carry their triangulation
+		result.walls = level.walls;
+		result.wallTriangles = level.wallTriangles;
+		if (result.wallTriangles == null) {
+			result.wallTriangles = new short[result.walls.length][];
+			for (int ii = 0; ii < result.walls.length; ii++) {
+				result.wallTriangles[ii] = PolygonObstacle.triangulate(result.walls[ii], triangulator);
+			}
+		}
+
+		result.shores = level.shores;
+		result.shoreTriangles = level.shoreTriangles;
+		if (result.shoreTriangles == null) {
+			result.shoreTriangles = new short[result.shores.length][];
+			for (int ii = 0; ii < result.shores.length; ii++) {
+				result.shoreTriangles[ii] = PolygonObstacle.triangulate(result.shores[ii], triangulator);
+			}
+		}
+
+		for (int ii = 0; ii < level.getEnemyCount(); ii++) {
+			result.enemyStarts.add(new Vector2(level.enemyStarts[2*ii], level.enemyStarts[2*ii+1]));
+			float[] points = level.enemyPaths[ii];
+			ArrayList<Vector2> path = new ArrayList<Vector2>(points.length/2);
+			for (int jj = 0; jj < points.length; jj += 2) {
+				path.add(new Vector2(points[jj], points[jj+1]));
+			}
+			result.enemyPaths.add(path);
+		}
+		result.navigation = NavGrid.bake(result.walls, result.shores);
+		return result;
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * LevelSaver.java
+ *
+ * The level editor used to write the level file on the render thread, directly
+ * over the old file.  That stalled the editor on large levels, and a crash in the
+ * middle of a save left a truncated level behind.  This class does all of the
+ * editor's disk I/O on a background thread.  Levels are written to a temporary
+ * file and then renamed into place, so the level file is always complete.
+ *
+ * Between saves, every edit is appended to a journal next to the level file.  Every
+ * so often the editor writes an autosave, which lets the journal start over.  If
+ * the editor dies, the next session loads the autosave (or the level file if
+ * there is none) and replays the journal on top of it.
+ */
+package edu.cornell.gdiac.downstream;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+import com.badlogic.gdx.Gdx;
+
+/**
+ * Background writer for the level editor.
+ *
+ * All of the files are only ever touched by the worker thread, and tasks run in
+ * the order they were submitted.  So a journal entry recorded after an autosave
+ * is never lost when that autosave truncates the journal.
+ *
+ * The levels passed to this class must not be shared with the editor, since
+ * they are written on another thread.  Level snapshots from the editor copy
+ * their contents for this reason.
+ */
+public class LevelSaver {
+	/** The extension for a level that is being written */
+	public static final String TEMP_EXTENSION = ".tmp";
+	/** The extension for the autosave of a level */
+	public static final String AUTOSAVE_EXTENSION = ".autosave";
+	/** The extension for the edit journal of a level */
+	public static final String JOURNAL_EXTENSION = ".journal";
+	/** How long to wait for pending writes when shutting down (in seconds) */
+	private static final int SHUTDOWN_TIMEOUT = 5;
+
+	/** The worker thread */
+	private ExecutorService executor;
+	/** The level file */
+	private File file;
+	/** The autosave for the level file */
+	private File autosaveFile;
+	/** The journal for the level file */
+	private File journalFile;
+	/** The open journal (only used by the worker thread) */
+	private Writer journal;
+
+	/**
+	 * Creates a new saver for the given level file, with a single daemon worker.
+	 *
+	 * @param file The level file
+	 */
+	public LevelSaver(File file) {
+		this.file = file;
+		autosaveFile = new File(file.getPath()+AUTOSAVE_EXTENSION);
+		journalFile = new File(file.getPath()+JOURNAL_EXTENSION);
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "LevelSaver");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Returns the autosave for the level file
+	 *
+	 * @return the autosave for the level file
+	 */
+	public File getAutosaveFile() {
+		return autosaveFile;
+	}
+
+	/**
+	 * Returns the journal for the level file
+	 *
+	 * @return the journal for the level file
+	 */
+	public File getJournalFile() {
+		return journalFile;
+	}
+
+	/**
+	 * Saves the level to the level file in the background.
+	 *
+	 * Once the level file is written, the autosave and journal are removed.
+	 *
+	 * @param level A snapshot of the level
+	 */
+	public void save(final LevelEditor.Level level) {
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					write(level, file);
+					closeJournal();
+					journalFile.delete();
+					autosaveFile.delete();
+				} catch (IOException e) {
+					Gdx.app.error("LevelSaver", "Could not save "+file, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Saves the level to the autosave in the background.
+	 *
+	 * Once the autosave is written, the journal starts over.
+	 *
+	 * @param level A snapshot of the level
+	 */
+	public void autosave(final LevelEditor.Level level) {
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					write(level, autosaveFile);
+					closeJournal();
+					journalFile.delete();
+				} catch (IOException e) {
+					Gdx.app.error("LevelSaver", "Could not autosave "+autosaveFile, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Appends an edit to the journal in the background.
+	 *
+	 * The entry should be a single line of text.
+	 *
+	 * @param entry The edit to record
+	 */
+	public void record(final String entry) {
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					if (journal == null) {
+						journal = new BufferedWriter(new FileWriter(journalFile, true));
+					}
+					journal.write(entry);
+					journal.write('\n');
+					journal.flush();
+				} catch (IOException e) {
+					Gdx.app.error("LevelSaver", "Could not record \""+entry+"\" in "+journalFile, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Removes the autosave and journal in the background.
+	 *
+	 * This throws away every edit since the last save.
+	 */
+	public void discard() {
+		executor.execute(new Runnable() {
+			public void run() {
+				closeJournal();
+				journalFile.delete();
+				autosaveFile.delete();
+			}
+		});
+	}
+
+	/**
+	 * Finishes any pending writes and stops the worker thread.
+	 */
+	public void dispose() {
+		executor.execute(new Runnable() {
+			public void run() {
+				closeJournal();
+			}
+		});
+		executor.shutdown();
+		try {
+			executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Gdx.app.error("LevelSaver", "Interrupted while finishing writes to "+file, e);
+		}
+	}
+
+	/**
+	 * Returns the entries in the journal for the given level file.
+	 *
+	 * The list is empty if there is no journal.  A partial last line (from a
+	 * crash in the middle of a write) is dropped.
+	 *
+	 * @param file The level file
+	 *
+	 * @return the entries in the journal for the given level file.
+	 */
+	public static ArrayList<String> readJournal(File file) {
+		ArrayList<String> result = new ArrayList<String>();
+		File journal = new File(file.getPath()+JOURNAL_EXTENSION);
+		if (!journal.exists()) {
+			return result;
+		}
+		try {
+			Reader reader = new BufferedReader(new FileReader(journal));
+			try {
+				StringBuilder line = new StringBuilder();
+				int c;
+				while ((c = reader.read()) != -1) {
+					if (c == '\n') {
+						result.add(line.toString());
+						line.setLength(0);
+					} else {
+						line.append((char)c);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			Gdx.app.error("LevelSaver", "Could not read "+journal, e);
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the level to a file, replacing it atomically.
+	 *
+	 * The level is written to a temporary file in the same directory, and synced
+	 * to disk, before it is renamed over the destination.  Without the sync, the
+	 * rename could reach the disk before the contents, and a power loss would leave
+	 * an empty level.  Renaming is atomic on POSIX systems.  Windows will not rename
+	 * over an existing file, so there the old file is removed first; a crash at that
+	 * moment leaves the complete temporary file.
+	 *
+	 * @param level	The level to write
+	 * @param dest	The file to replace
+	 */
+	public static void write(LevelEditor.Level level, File dest) throws IOException {
+		File temp = new File(dest.getPath()+TEMP_EXTENSION);
+		FileOutputStream stream = new FileOutputStream(temp);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(stream));
+		try {
+			LevelParser.write(level, writer);
+			writer.flush();
+			stream.getFD().sync();
+		} finally {
+			writer.close();
+		}
+		if (!temp.renameTo(dest)) {
+			dest.delete();
+			if (!temp.renameTo(dest)) {
+				throw new IOException("Could not rename "+temp+" to "+dest);
+			}
+		}
+	}
+
+	/**
+	 * Closes the journal, if it is open (worker thread only)
+	 */
+	private void closeJournal() {
+		if (journal == null) {
+			return;
+		}
+		try {
+			journal.close();
+		} catch (IOException e) {
+			Gdx.app.error("LevelSaver", "Could not close "+journalFile, e);
+		}
+		journal = null;
+	}
+}
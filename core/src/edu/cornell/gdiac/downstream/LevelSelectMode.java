@@ -20,6 +20,7 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 
 import edu.cornell.gdiac.util.ScreenListener;
+import edu.cornell.gdiac.util.TextureController;
 
 public class LevelSelectMode implements Screen, InputProcessor, ControllerListener {
 	
@@ -188,27 +189,28 @@ public class LevelSelectMode implements Screen, InputProcessor, ControllerListen
 		//button16.set(new Vector2((float)canvas.getWidth()/16,(float)canvas.getHeight()/12*5));
 		
 
-		// Load images immediately
-		background = new Texture(BACKGROUND);
-		backButton = new Texture(BACK_BUTTON);
-		backButtonHover = new Texture(BACK_BUTTON_HOVER);
-		level1button = new Texture(LEVEL1_BUTTON);
-		level2button = new Texture(LEVEL2_BUTTON);
-		level3button = new Texture(LEVEL3_BUTTON);
-		level4button = new Texture(LEVEL4_BUTTON);
-		level5button = new Texture(LEVEL5_BUTTON);
-		level6button = new Texture(LEVEL6_BUTTON);
-		level7button = new Texture(LEVEL7_BUTTON);
-		level8button = new Texture(LEVEL8_BUTTON);
-		level9button = new Texture(LEVEL9_BUTTON);
-		level10button = new Texture(LEVEL10_BUTTON);
-		level11button = new Texture(LEVEL11_BUTTON);
-		level12button = new Texture(LEVEL12_BUTTON);
-		level13button = new Texture(LEVEL13_BUTTON);
-		level14button = new Texture(LEVEL14_BUTTON);
-		level15button = new Texture(LEVEL15_BUTTON);
+		// Load images immediately (shared, so a second menu does not reload them)
+		TextureController textures = TextureController.getInstance();
+		background = textures.acquire(BACKGROUND);
+		backButton = textures.acquire(BACK_BUTTON);
+		backButtonHover = textures.acquire(BACK_BUTTON_HOVER);
+		level1button = textures.acquire(LEVEL1_BUTTON);
+		level2button = textures.acquire(LEVEL2_BUTTON);
+		level3button = textures.acquire(LEVEL3_BUTTON);
+		level4button = textures.acquire(LEVEL4_BUTTON);
+		level5button = textures.acquire(LEVEL5_BUTTON);
+		level6button = textures.acquire(LEVEL6_BUTTON);
+		level7button = textures.acquire(LEVEL7_BUTTON);
+		level8button = textures.acquire(LEVEL8_BUTTON);
+		level9button = textures.acquire(LEVEL9_BUTTON);
+		level10button = textures.acquire(LEVEL10_BUTTON);
+		level11button = textures.acquire(LEVEL11_BUTTON);
+		level12button = textures.acquire(LEVEL12_BUTTON);
+		level13button = textures.acquire(LEVEL13_BUTTON);
+		level14button = textures.acquire(LEVEL14_BUTTON);
+		level15button = textures.acquire(LEVEL15_BUTTON);
 		//level16button = new Texture(LEVEL16_BUTTON);
-		levelButtonHover = new Texture(LEVEL_BUTTON_HOVER);
+		levelButtonHover = textures.acquire(LEVEL_BUTTON_HOVER);
 		
 		clickSound = Gdx.audio.newMusic(Gdx.files.internal(MENU_CLICK_SOUND));
 		clickSound.setLooping(false);
@@ -257,26 +259,27 @@ public class LevelSelectMode implements Screen, InputProcessor, ControllerListen
 	 * Called when this screen should release all resources.
 	 */
 	public void dispose() {
-		level1button.dispose();
-		level2button.dispose();
-		level3button.dispose();
-		level4button.dispose();
-		level5button.dispose();
-		level6button.dispose();
-		level7button.dispose();
-		level8button.dispose();
-		level9button.dispose();
-		level10button.dispose();
-		level11button.dispose();
-		level12button.dispose();
-		level13button.dispose();
-		level14button.dispose();
-		level15button.dispose();
+		TextureController textures = TextureController.getInstance();
+		textures.release(LEVEL1_BUTTON);
+		textures.release(LEVEL2_BUTTON);
+		textures.release(LEVEL3_BUTTON);
+		textures.release(LEVEL4_BUTTON);
+		textures.release(LEVEL5_BUTTON);
+		textures.release(LEVEL6_BUTTON);
+		textures.release(LEVEL7_BUTTON);
+		textures.release(LEVEL8_BUTTON);
+		textures.release(LEVEL9_BUTTON);
+		textures.release(LEVEL10_BUTTON);
+		textures.release(LEVEL11_BUTTON);
+		textures.release(LEVEL12_BUTTON);
+		textures.release(LEVEL13_BUTTON);
+		textures.release(LEVEL14_BUTTON);
+		textures.release(LEVEL15_BUTTON);
 		//level16button.dispose();
-		backButton.dispose();
-		backButtonHover.dispose();
-		levelButtonHover.dispose();
-		background.dispose();
+		textures.release(BACK_BUTTON);
+		textures.release(BACK_BUTTON_HOVER);
+		textures.release(LEVEL_BUTTON_HOVER);
+		textures.release(BACKGROUND);
 		clickSound.dispose();
 	}
 
@@ -0,0 +1,317 @@
+/*
+ * LevelValidator.java
+ *
+ * A broken level used to show up in one of two ways: a crash deep in Box2D when
+ * a wall polygon folded over itself, or a silent fallback to defaultLevel() when
+ * the file did not parse.  This class loads each level the way the game does and
+ * reports what is wrong with it, along with how long each stage of the load took.
+ */
+package edu.cornell.gdiac.downstream;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.*;
+
+import com.badlogic.gdx.math.*;
+import com.badlogic.gdx.physics.box2d.*;
+
+import edu.cornell.gdiac.downstream.obstacle.PolygonObstacle;
+
+/**
+ * Static class for checking level files and timing their loads.
+ *
+ * Each level is parsed, then every wall and shore is triangulated exactly as
+ * PolygonObstacle does it, and the triangles are merged into convex pieces.
+ * Optionally, the static bodies are also built in a throwaway Box2D world.
+ * Levels can be checked concurrently, since nothing here touches the game or
+ * the graphics context.
+ */
+public class LevelValidator {
+	/** How far outside the map the player may start (half a screen, in physics units) */
+	private static final float PLAYER_MARGIN = 16.0f;
+
+	/**
+	 * The result of checking a single level file.
+	 */
+	public static class Report {
+		/** The level file */
+		public File file;
+		/** The problems found, in the order they were found */
+		public ArrayList<String> errors = new ArrayList<String>();
+		/** The number of wall and shore polygons */
+		public int polygons;
+		/** The total number of triangles in those polygons */
+		public int triangles;
+		/** The total number of convex pieces (fixtures) after merging the triangles */
+		public int pieces;
+		/** The time to read and parse the file (in nanoseconds) */
+		public long parseTime;
+		/** The time to triangulate every polygon (in nanoseconds) */
+		public long triangulateTime;
+		/** The time to build the static bodies (in nanoseconds, or -1 if skipped) */
+		public long buildTime = -1;
+
+		/**
+		 * Returns true if no problems were found
+		 *
+		 * @return true if no problems were found
+		 */
+		public boolean isValid() {
+			return errors.isEmpty();
+		}
+	}
+
+	/**
+	 * Checks every JSON level in a directory, in parallel.
+	 *
+	 * The reports are returned in file name order.
+	 *
+	 * @param dir			The level directory
+	 * @param scale			The draw scale (the map bounds are in screen coordinates)
+	 * @param buildBodies	Whether to time building the Box2D bodies
+	 * @param threads		The number of worker threads
+	 *
+	 * @return a report for each level file
+	 */
+	public static ArrayList<Report> validateAll(File dir, final Vector2 scale, final boolean buildBodies, int threads) {
+		File[] files = dir.listFiles(new FilenameFilter() {
+			public boolean accept(File parent, String name) {
+				return name.endsWith(".json");
+			}
+		});
+		ArrayList<Report> result = new ArrayList<Report>();
+		if (files == null) {
+			return result;
+		}
+		Arrays.sort(files);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		ArrayList<Future<Report>> pending = new ArrayList<Future<Report>>();
+		for (final File file : files) {
+			pending.add(executor.submit(new Callable<Report>() {
+				public Report call() {
+					return validate(file, scale, buildBodies);
+				}
+			}));
+		}
+		for (int ii = 0; ii < files.length; ii++) {
+			try {
+				result.add(pending.get(ii).get());
+			} catch (Exception e) {
+				Report report = new Report();
+				report.file = files[ii];
+				report.errors.add("Validation failed: "+e);
+				result.add(report);
+			}
+		}
+		executor.shutdown();
+		return result;
+	}
+
+	/**
+	 * Returns the report for a single level file.
+	 *
+	 * @param file			The level file
+	 * @param scale			The draw scale (the map bounds are in screen coordinates)
+	 * @param buildBodies	Whether to time building the Box2D bodies
+	 *
+	 * @return the report for a single level file.
+	 */
+	public static Report validate(File file, Vector2 scale, boolean buildBodies) {
+		Report report = new Report();
+		report.file = file;
+
+		// Parse
+		LevelEditor.Level level;
+		long start = System.nanoTime();
+		try {
+			Reader reader = new BufferedReader(new FileReader(file));
+			try {
+				level = LevelParser.read(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (Exception e) {
+			report.errors.add("Does not parse: "+e.getMessage());
+			return report;
+		}
+		report.parseTime = System.nanoTime()-start;
+
+		// Triangulate
+		EarClippingTriangulator triangulator = new EarClippingTriangulator();
+		float[][] polygons = new float[level.walls.length+level.shores.length][];
+		System.arraycopy(level.walls, 0, polygons, 0, level.walls.length);
+		System.arraycopy(level.shores, 0, polygons, level.walls.length, level.shores.length);
+		short[][] triangles = new short[polygons.length][];
+		start = System.nanoTime();
+		for (int ii = 0; ii < polygons.length; ii++) {
+			if (polygons[ii].length >= 6 && polygons[ii].length % 2 == 0) {
+				triangles[ii] = PolygonObstacle.triangulate(polygons[ii], triangulator);
+			}
+		}
+		report.triangulateTime = System.nanoTime()-start;
+		report.polygons = polygons.length;
+
+		for (int ii = 0; ii < polygons.length; ii++) {
+			String name = (ii < level.walls.length ? "Wall "+ii : "Shore "+(ii-level.walls.length));
+			if (triangles[ii] == null) {
+				report.errors.add(name+" has "+polygons[ii].length+" coordinates (needs an even number, at least 6)");
+				continue;
+			}
+			report.triangles += triangles[ii].length/3;
+			report.pieces += PolygonObstacle.decompose(polygons[ii], triangles[ii], PolygonObstacle.MAX_PIECE_VERTICES).length;
+			if (triangles[ii].length == 0) {
+				report.errors.add(name+" has no area");
+			}
+			int edge = findSelfIntersection(polygons[ii]);
+			if (edge != -1) {
+				report.errors.add(name+" intersects itself at vertex "+edge+" ("+polygons[ii][2*edge]+","+polygons[ii][2*edge+1]+")");
+			}
+		}
+
+		checkBounds(level, scale, report);
+
+		// Build
+		if (buildBodies && report.isValid()) {
+			start = System.nanoTime();
+			World world = new World(new Vector2(0,0), false);
+			for (int ii = 0; ii < polygons.length; ii++) {
+				PolygonObstacle obj = new PolygonObstacle(polygons[ii], triangles[ii], 0, 0);
+				obj.setConvexDecomposition(true);
+				obj.setBodyType(BodyDef.BodyType.StaticBody);
+				obj.activatePhysics(world);
+			}
+			world.dispose();
+			report.buildTime = System.nanoTime()-start;
+		}
+		return report;
+	}
+
+	/**
+	 * Checks that the player, goal and tethers are inside the map bounds.
+	 *
+	 * The map corners are in screen coordinates, while everything else is in
+	 * physics coordinates, so the corners are divided by the draw scale.  The koi
+	 * starts off screen and swims in, so it only has to be near the map.  Only
+	 * the first goal point is checked, as the second is where the koi swims off.
+	 *
+	 * @param level		The parsed level
+	 * @param scale		The draw scale
+	 * @param report	The report to add errors to
+	 */
+	private static void checkBounds(LevelEditor.Level level, Vector2 scale, Report report) {
+		if (level.map == null || level.map.size() < 2) {
+			report.errors.add("Map bounds are missing");
+			return;
+		}
+		Vector2 a = level.map.get(0);
+		Vector2 b = level.map.get(1);
+		Rectangle bounds = new Rectangle(Math.min(a.x,b.x)/scale.x, Math.min(a.y,b.y)/scale.y,
+										 Math.abs(a.x-b.x)/scale.x, Math.abs(a.y-b.y)/scale.y);
+
+		if (level.player == null) {
+			report.errors.add("Player start is missing");
+		} else {
+			Rectangle outer = new Rectangle(bounds.x-PLAYER_MARGIN, bounds.y-PLAYER_MARGIN,
+											bounds.width+2*PLAYER_MARGIN, bounds.height+2*PLAYER_MARGIN);
+			if (!outer.contains(level.player)) {
+				report.errors.add("Player start "+level.player+" is too far outside the map");
+			}
+		}
+		if (level.goal == null || level.goal.size() < 2) {
+			report.errors.add("Goal is missing");
+		} else if (!bounds.contains(level.goal.get(0))) {
+			report.errors.add("Goal "+level.goal.get(0)+" is outside the map");
+		}
+		checkInside(level.lilypads, "Lilypad", bounds, report);
+		checkInside(level.lotuses, "Lotus", bounds, report);
+		checkInside(level.lanterns, "Lantern", bounds, report);
+	}
+
+	/**
+	 * Checks that each of the given points is inside the bounds.
+	 *
+	 * @param points	The points to check (may be null)
+	 * @param name		The name of the points in error messages
+	 * @param bounds	The map bounds in physics coordinates
+	 * @param report	The report to add errors to
+	 */
+	private static void checkInside(ArrayList<Vector2> points, String name, Rectangle bounds, Report report) {
+		if (points == null) {
+			return;
+		}
+		for (int ii = 0; ii < points.size(); ii++) {
+			if (!bounds.contains(points.get(ii))) {
+				report.errors.add(name+" "+ii+" "+points.get(ii)+" is outside the map");
+			}
+		}
+	}
+
+	/**
+	 * Returns the first vertex whose outgoing edge crosses another edge, or -1.
+	 *
+	 * The polygon is closed, so the last vertex connects back to the first.
+	 * Edges that share a vertex are not compared.  This is quadratic, but our
+	 * polygons only have a few hundred vertices.
+	 *
+	 * @param points	The polygon as x,y pairs
+	 *
+	 * @return the first vertex whose outgoing edge crosses another edge, or -1.
+	 */
+	public static int findSelfIntersection(float[] points) {
+		int n = points.length/2;
+		for (int ii = 0; ii < n; ii++) {
+			int i2 = (ii+1) % n;
+			for (int jj = ii+2; jj < n; jj++) {
+				int j2 = (jj+1) % n;
+				if (j2 == ii) {
+					continue;
+				}
+				if (segmentsIntersect(points[2*ii], points[2*ii+1], points[2*i2], points[2*i2+1],
+									  points[2*jj], points[2*jj+1], points[2*j2], points[2*j2+1])) {
+					return ii;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns true if segment (a,b) touches segment (c,d)
+	 *
+	 * @return true if segment (a,b) touches segment (c,d)
+	 */
+	private static boolean segmentsIntersect(float ax, float ay, float bx, float by,
+											 float cx, float cy, float dx, float dy) {
+		float d1 = cross(cx, cy, dx, dy, ax, ay);
+		float d2 = cross(cx, cy, dx, dy, bx, by);
+		float d3 = cross(ax, ay, bx, by, cx, cy);
+		float d4 = cross(ax, ay, bx, by, dx, dy);
+		if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))) {
+			return true;
+		}
+		return (d1 == 0 && onSegment(cx, cy, dx, dy, ax, ay)) ||
+			   (d2 == 0 && onSegment(cx, cy, dx, dy, bx, by)) ||
+			   (d3 == 0 && onSegment(ax, ay, bx, by, cx, cy)) ||
+			   (d4 == 0 && onSegment(ax, ay, bx, by, dx, dy));
+	}
+
+	/**
+	 * Returns the cross product of (b-a) and (p-a)
+	 *
+	 * @return the cross product of (b-a) and (p-a)
+	 */
+	private static float cross(float ax, float ay, float bx, float by, float px, float py) {
+		return (bx-ax)*(py-ay)-(by-ay)*(px-ax);
+	}
+
+	/**
+	 * Returns true if p (known to be colinear with a,b) lies on segment (a,b)
+	 *
+	 * @return true if p lies on segment (a,b)
+	 */
+	private static boolean onSegment(float ax, float ay, float bx, float by, float px, float py) {
+		return Math.min(ax,bx) <= px && px <= Math.max(ax,bx) && Math.min(ay,by) <= py && py <= Math.max(ay,by);
+	}
+}
@@ -20,6 +20,7 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 
 import edu.cornell.gdiac.util.ScreenListener;
+import edu.cornell.gdiac.util.TextureController;
 
 public class MainMenuMode implements Screen, InputProcessor, ControllerListener {
 	
@@ -32,6 +33,7 @@ public class MainMenuMode implements Screen, InputProcessor, ControllerListener
 	private static final String SELECT_HOVER_FILE = "Final_Assets/Menus/level_button_gold.png";
 	//private static final String LOAD_FILE = "Final_Assets/Menus/now_loading.jpg";
 	private static final String EDIT_FILE = "Final_Assets/Menus/levelbuild.png";
+	private static final String KOI_CURVE_FILE = "koi/curve_koi.png";
 	
 	protected Animation koiCAnimation; // #3
 	protected Texture koiCSheet; // #4
@@ -109,13 +111,14 @@ public class MainMenuMode implements Screen, InputProcessor, ControllerListener
 		
 
 	
-		// Load images immediately.
-		play = new Texture(PLAY_FILE);
-		playHover = new Texture(PLAY_HOVER_FILE);
-		if(editor){edit = new Texture(EDIT_FILE);}
-		select = new Texture(SELECT_FILE);
-		selectHover = new Texture(SELECT_HOVER_FILE);
-		background = new Texture(BACKGROUND_FILE);
+		// Load images immediately (shared, so a second menu does not reload them).
+		TextureController textures = TextureController.getInstance();
+		play = textures.acquire(PLAY_FILE);
+		playHover = textures.acquire(PLAY_HOVER_FILE);
+		if(editor){edit = textures.acquire(EDIT_FILE);}
+		select = textures.acquire(SELECT_FILE);
+		selectHover = textures.acquire(SELECT_HOVER_FILE);
+		background = textures.acquire(BACKGROUND_FILE);
 		//load = new Texture(LOAD_FILE);
 		koiPos.set(new Vector2((float)canvas.getWidth()/7*2,(float)canvas.getHeight()/5+45));
 		bgPos.set(new Vector2((float)canvas.getWidth()/2,(float)canvas.getHeight()/2));
@@ -127,7 +130,7 @@ public class MainMenuMode implements Screen, InputProcessor, ControllerListener
 		//loadPos.set(new Vector2((float)canvas.getWidth()/2,(float)canvas.getHeight()/2));
 		
 		//animation
-		koiCSheet = new Texture(Gdx.files.internal("koi/curve_koi.png"));
+		koiCSheet = textures.acquire(KOI_CURVE_FILE);
 		int cols = 31;
 		int rows = 1;
 		TextureRegion[][] tmpkoiC = TextureRegion.split(koiCSheet, koiCSheet.getWidth()/cols, koiCSheet.getHeight()/rows); 
@@ -162,13 +165,15 @@ public class MainMenuMode implements Screen, InputProcessor, ControllerListener
 	 */
 	public void dispose() {
 		
-		if(editor){edit.dispose();}
-		select.dispose();
-		selectHover.dispose();
-		play.dispose();
+		TextureController textures = TextureController.getInstance();
+		if(editor){textures.release(EDIT_FILE);}
+		textures.release(SELECT_FILE);
+		textures.release(SELECT_HOVER_FILE);
+		textures.release(PLAY_FILE);
 		//load.dispose();
-		playHover.dispose();
-		background.dispose();
+		textures.release(PLAY_HOVER_FILE);
+		textures.release(BACKGROUND_FILE);
+		textures.release(KOI_CURVE_FILE);
 		clickSound.dispose();
 	}
 
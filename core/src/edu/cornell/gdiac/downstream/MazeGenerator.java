@@ -1,72 +1,481 @@
+/*
+ * MazeGenerator.java
+ *
+ * The shipped levels are all small, so they say very little about how the
+ * physics, AI and rendering scale.  This class builds river levels of any size
+ * from a seed.  A random maze is carved on a grid, and every passage of the
+ * maze is river.  Every other tile is land.
+ *
+ * The same seed and settings always give the same level, so generated levels
+ * can be used as repeatable workloads for benchmarks.
+ */
 package edu.cornell.gdiac.downstream;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
-import com.badlogic.gdx.math.Vector2;
 
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
 
+/**
+ * Seeded generator for river levels.
+ *
+ * The maze is carved on a grid of width by height nodes.  Each node is a water
+ * tile, with a tile of land or water between it and each neighbor, so the full
+ * map is (2*width+1) by (2*height+1) tiles.  The river enters at one edge of the
+ * map and leaves at another, branching into every part of the maze on the way.
+ *
+ * Tethers are placed every few tiles along the river.  Enemies, whirlpools and
+ * rocks are placed on the other river tiles with the given chances.
+ */
 public class MazeGenerator {
-	
+	/** The width of a tile (in physics units) */
+	public static final float TILE_SIZE = 10.0f;
+	/** The maze width and height for a level about the size of level 15 */
+	public static final int BASE_SIZE = 7;
+	/** The draw scale, since the map bounds are in screen coordinates (see DesktopLauncher) */
+	private static final float DRAW_SCALE = 40.0f;
+	/** The length of a wall edge between vertices (in physics units) */
+	private static final float WALL_SEGMENT = 2.5f;
+	/** The farthest a wall vertex strays from the tile edge (in physics units) */
+	private static final float WALL_JITTER = 0.75f;
+	/** How far a rock sits from the middle of the river (in physics units) */
+	private static final float ROCK_OFFSET = 3.5f;
+
+	/** The number of maze nodes across */
 	int width;
+	/** The number of maze nodes down */
 	int height;
+	/** The tile grid, indexed by row and then column */
 	MazeTile[][] maze;
+	/** The node where the river starts */
 	Vector2 start;
+	/** The node where the river ends */
 	Vector2 end;
+	/** The random number generator (the only source of randomness) */
 	Random rng;
-	
+	/** The tile each river tile flows from (-1 for land and the source) */
+	private int[] upstream;
+
+	/** The number of river tiles between tethers */
+	private int tetherSpacing = 2;
+	/** Every this many tethers is a lotus instead of a lilypad */
+	private int lotusSpacing = 4;
+	/** The chance that a free river tile has an enemy */
+	private float enemyChance = 0.15f;
+	/** The chance that a free river tile has a whirlpool */
+	private float whirlpoolChance = 0.05f;
+	/** The chance that a free river tile has a rock */
+	private float rockChance = 0.1f;
+
+	/**
+	 * Creates a generator for a maze of the given size, with a random seed.
+	 *
+	 * @param width		The number of maze nodes across
+	 * @param height	The number of maze nodes down
+	 */
 	public MazeGenerator(int width, int height) {
-		this.width = width;
-		this.height = height;
-		maze = new MazeTile[height][width];
-		for (int i = 0; i < height; i++) {
-			for (int j = 0; j < width; j++) {
+		this(width, height, System.nanoTime());
+	}
+
+	/**
+	 * Creates a generator for a maze of the given size.
+	 *
+	 * @param width		The number of maze nodes across (at least 2)
+	 * @param height	The number of maze nodes down (at least 2)
+	 * @param seed		The random seed
+	 */
+	public MazeGenerator(int width, int height, long seed) {
+		this.width = Math.max(width, 2);
+		this.height = Math.max(height, 2);
+		maze = new MazeTile[2*this.height+1][2*this.width+1];
+		rng = new Random(seed);
+	}
+
+	/**
+	 * Returns a generator for a level with factor times the area of level 15.
+	 *
+	 * @param factor	The size of the level relative to level 15
+	 * @param seed		The random seed
+	 *
+	 * @return a generator for a level with factor times the area of level 15.
+	 */
+	public static MazeGenerator ofScale(float factor, long seed) {
+		int size = Math.round(BASE_SIZE*(float)Math.sqrt(factor));
+		return new MazeGenerator(size, size, seed);
+	}
+
+	/**
+	 * Sets the number of river tiles between tethers
+	 *
+	 * Two tiles is about the spacing of the tethers in the shipped levels.
+	 *
+	 * @param value the number of river tiles between tethers
+	 */
+	public void setTetherSpacing(int value) {
+		tetherSpacing = Math.max(value, 1);
+	}
+
+	/**
+	 * Sets how many tethers there are for each lotus
+	 *
+	 * @param value every this many tethers is a lotus instead of a lilypad
+	 */
+	public void setLotusSpacing(int value) {
+		lotusSpacing = Math.max(value, 1);
+	}
+
+	/**
+	 * Sets the chance that a free river tile has an enemy, whirlpool or rock
+	 *
+	 * The chances are tried in that order, so they should add up to at most one.
+	 *
+	 * @param enemy		The chance of an enemy
+	 * @param whirlpool	The chance of a whirlpool
+	 * @param rock		The chance of a rock
+	 */
+	public void setDensity(float enemy, float whirlpool, float rock) {
+		enemyChance = enemy;
+		whirlpoolChance = whirlpool;
+		rockChance = rock;
+	}
+
+	/**
+	 * Returns a new river level.
+	 *
+	 * Each call carves a new maze, continuing the random sequence.  So a fresh
+	 * generator with the same seed gives the same sequence of levels.
+	 *
+	 * @return a new river level.
+	 */
+	public LevelEditor.Level generate() {
+		for (int i = 0; i < maze.length; i++) {
+			for (int j = 0; j < maze[i].length; j++) {
 				maze[i][j] = MazeTile.UNSEEN;
 			}
 		}
-		rng = new Random();
 		start = getRandomEdge();
 		end = getRandomEdge();
-		while (manhattanDistance(start, end) < 5) end = getRandomEdge();
-		
-		
+		int spread = Math.min(5, width+height-2);
+		while (manhattanDistance(start, end) < spread) end = getRandomEdge();
+
+		IntArray river = carve();
+		for (int i = 0; i < maze.length; i++) {
+			for (int j = 0; j < maze[i].length; j++) {
+				if (maze[i][j] != MazeTile.PATH) {
+					maze[i][j] = MazeTile.WALL;
+				}
+			}
+		}
+
+		LevelEditor.Level level = new LevelEditor.Level();
+		level.walls = buildWalls();
+		populate(level, river);
+
+		float w = maze[0].length*TILE_SIZE*DRAW_SCALE;
+		float h = maze.length*TILE_SIZE*DRAW_SCALE;
+		level.map.add(new Vector2(0, h));
+		level.map.add(new Vector2(w, 0));
+		return level;
+	}
+
+	/**
+	 * Returns the river tiles, after carving the maze.
+	 *
+	 * The maze is a randomized depth first search from the start node, and
+	 * every passage it carves is river.  So the river is a tree of channels,
+	 * flowing out from the edge tile next to the start node.  The last tile is
+	 * the edge tile next to the end node, where the river leaves the map.
+	 *
+	 * Every tile comes after the tile it flows from, which is stored in upstream.
+	 *
+	 * @return the river tiles, as row*columns+column
+	 */
+	private IntArray carve() {
+		int nodes = width*height;
+		boolean[] seen = new boolean[nodes];
+		int first = (int)start.y*width+(int)start.x;
+		int last  = (int)end.y*width+(int)end.x;
+
+		upstream = new int[maze.length*maze[0].length];
+		Arrays.fill(upstream, -1);
+		IntArray river = new IntArray();
+		int source = exitTile(start);
+		addTile(river, source, -1);
+		addTile(river, nodeTile(first), source);
+
+		IntArray stack = new IntArray();
+		stack.add(first);
+		seen[first] = true;
+		int[] choices = new int[4];
+		while (stack.size > 0) {
+			int node = stack.peek();
+			int x = node % width;
+			int y = node / width;
+			int count = 0;
+			if (x > 0 && !seen[node-1]) choices[count++] = node-1;
+			if (x < width-1 && !seen[node+1]) choices[count++] = node+1;
+			if (y > 0 && !seen[node-width]) choices[count++] = node-width;
+			if (y < height-1 && !seen[node+width]) choices[count++] = node+width;
+			if (count == 0) {
+				stack.pop();
+				continue;
+			}
+			int next = choices[rng.nextInt(count)];
+			seen[next] = true;
+			stack.add(next);
+
+			// The passage tile is halfway between the two node tiles
+			int passage = (nodeTile(node)+nodeTile(next))/2;
+			addTile(river, passage, nodeTile(node));
+			addTile(river, nodeTile(next), passage);
+		}
+
+		addTile(river, exitTile(end), nodeTile(last));
+		return river;
+	}
+
+	/**
+	 * Marks a tile as river and adds it to the end of the river
+	 *
+	 * @param river	The river tiles so far
+	 * @param tile	The tile to add
+	 * @param from	The tile it flows from (or -1 for the source)
+	 */
+	private void addTile(IntArray river, int tile, int from) {
+		maze[tile / maze[0].length][tile % maze[0].length] = MazeTile.PATH;
+		upstream[tile] = from;
+		river.add(tile);
+	}
+
+	/**
+	 * Returns the tile for a maze node
+	 *
+	 * @return the tile for a maze node
+	 */
+	private int nodeTile(int node) {
+		return (2*(node / width)+1)*maze[0].length+2*(node % width)+1;
+	}
+
+	/**
+	 * Returns the map edge tile next to a node on the edge of the maze
+	 *
+	 * @param node	A node on the edge of the maze, as (column, row)
+	 *
+	 * @return the map edge tile next to a node on the edge of the maze
+	 */
+	private int exitTile(Vector2 node) {
+		int row = 2*(int)node.y+1;
+		int col = 2*(int)node.x+1;
+		if (node.x == 0) {
+			col = 0;
+		} else if (node.x == width-1) {
+			col = maze[0].length-1;
+		} else if (node.y == 0) {
+			row = 0;
+		} else {
+			row = maze.length-1;
+		}
+		return row*maze[0].length+col;
 	}
 
+	/**
+	 * Returns the wall polygons for the land tiles.
+	 *
+	 * Each run of land tiles in a row becomes one wall.  Its edges are split into
+	 * short segments, and the vertices are moved a little off the tile edges so
+	 * that the banks are not perfectly straight.  The vertices only move across
+	 * their edge, and by less than half a tile, so the walls never fold over.
+	 *
+	 * @return the wall polygons for the land tiles.
+	 */
+	private float[][] buildWalls() {
+		ArrayList<float[]> walls = new ArrayList<float[]>();
+		for (int row = 0; row < maze.length; row++) {
+			int col = 0;
+			while (col < maze[row].length) {
+				if (maze[row][col] != MazeTile.WALL) {
+					col++;
+					continue;
+				}
+				int first = col;
+				while (col < maze[row].length && maze[row][col] == MazeTile.WALL) {
+					col++;
+				}
+				float x0 = first*TILE_SIZE;
+				float x1 = col*TILE_SIZE;
+				float y0 = row*TILE_SIZE;
+				float y1 = (row+1)*TILE_SIZE;
+
+				// Counterclockwise, starting at the bottom left corner
+				FloatArray points = new FloatArray();
+				addEdge(points, x0, y0, x1, y0);
+				addEdge(points, x1, y0, x1, y1);
+				addEdge(points, x1, y1, x0, y1);
+				addEdge(points, x0, y1, x0, y0);
+				walls.add(points.toArray());
+			}
+		}
+		return walls.toArray(new float[walls.size()][]);
+	}
+
+	/**
+	 * Adds the vertices of a wall edge, except for its last corner
+	 *
+	 * @param points	The wall vertices so far
+	 * @param ax		The x-coordinate of the first corner
+	 * @param ay		The y-coordinate of the first corner
+	 * @param bx		The x-coordinate of the last corner
+	 * @param by		The y-coordinate of the last corner
+	 */
+	private void addEdge(FloatArray points, float ax, float ay, float bx, float by) {
+		float length = Math.abs(bx-ax)+Math.abs(by-ay);
+		int segments = Math.max(1, Math.round(length/WALL_SEGMENT));
+		// The unit normal across the edge
+		float nx = (by-ay)/length;
+		float ny = (ax-bx)/length;
+		points.add(ax);
+		points.add(ay);
+		for (int ii = 1; ii < segments; ii++) {
+			float t = (float)ii/segments;
+			float jitter = (2*rng.nextFloat()-1)*WALL_JITTER;
+			points.add(ax+t*(bx-ax)+jitter*nx);
+			points.add(ay+t*(by-ay)+jitter*ny);
+		}
+	}
+
+	/**
+	 * Places the player, goal, tethers, enemies, whirlpools and rocks on the river.
+	 *
+	 * The koi starts on the edge tile where the river enters.  The goal is the
+	 * edge tile where it leaves, and the koi swims off one tile past it.  Every
+	 * tile whose distance downstream from the source is a multiple of the tether
+	 * spacing gets a tether, so no tile is farther than that from one.
+	 *
+	 * @param level	The level to fill in
+	 * @param river	The river tiles, each after the tile it flows from
+	 */
+	private void populate(LevelEditor.Level level, IntArray river) {
+		int source = river.first();
+		int mouth = river.peek();
+		level.player = center(source);
+		Vector2 goal = center(mouth);
+		level.goal.add(goal);
+		level.goal.add(goal.cpy().scl(2).sub(center(upstream[mouth])));
+
+		int[] depth = new int[upstream.length];
+		FloatArray starts = new FloatArray();
+		ArrayList<float[]> paths = new ArrayList<float[]>();
+		int tethers = 0;
+		for (int ii = 1; ii < river.size-1; ii++) {
+			int tile = river.get(ii);
+			depth[tile] = depth[upstream[tile]]+1;
+			Vector2 pos = center(tile);
+			if (depth[tile] % tetherSpacing == 0) {
+				tethers++;
+				if (tethers % lotusSpacing == 0) {
+					level.lotuses.add(pos);
+				} else {
+					level.lilypads.add(pos);
+				}
+				continue;
+			}
+			// Keep the tiles next to the entrance clear
+			if (depth[tile] < 3) {
+				continue;
+			}
+
+			float roll = rng.nextFloat();
+			Vector2 back = center(upstream[tile]);
+			if (roll < enemyChance) {
+				// Patrol two tiles upstream and back, staying in the river
+				Vector2 back2 = center(upstream[upstream[tile]]);
+				starts.add(pos.x);
+				starts.add(pos.y);
+				paths.add(new float[] { pos.x, pos.y, pos.x, pos.y, back.x, back.y, back2.x, back2.y, back.x, back.y });
+			} else if (roll < enemyChance+whirlpoolChance) {
+				// Pointing downstream
+				level.whirlpools.add(new LevelEditor.Vector4(pos.x, pos.y, 2*pos.x-back.x, 2*pos.y-back.y));
+			} else if (roll < enemyChance+whirlpoolChance+rockChance) {
+				// Off to one side of the current, so the river stays open
+				Vector2 side = pos.cpy().sub(back).nor().rotate90(rng.nextBoolean() ? 1 : -1);
+				level.rocks.add(side.scl(ROCK_OFFSET).add(pos));
+			}
+		}
+		level.enemyStarts = starts.toArray();
+		level.enemyPaths = paths.toArray(new float[paths.size()][]);
+	}
+
+	/**
+	 * Returns the center of a tile in physics coordinates
+	 *
+	 * @param tile	The tile, as row*columns+column
+	 *
+	 * @return the center of a tile in physics coordinates
+	 */
+	private Vector2 center(int tile) {
+		int columns = maze[0].length;
+		return new Vector2((tile % columns+0.5f)*TILE_SIZE, (tile / columns+0.5f)*TILE_SIZE);
+	}
+
+	/**
+	 * Returns a random node on the edge of the maze, as (column, row)
+	 *
+	 * @return a random node on the edge of the maze
+	 */
 	private Vector2 getRandomEdge() {
 		int wall = rng.nextInt(4);
 		Vector2 edge = new Vector2();
 		switch (wall){
-		//north wall 
+		//north wall
 		case 0:
-			edge = new Vector2(height-1,rng.nextInt(width));
+			edge = new Vector2(rng.nextInt(width),height-1);
 			break;
 		//east wall
 		case 1:
-			edge = new Vector2(rng.nextInt(height),width-1);
+			edge = new Vector2(width-1,rng.nextInt(height));
 			break;
 		//south wall
 		case 2:
-			edge = new Vector2(0,rng.nextInt(width));
+			edge = new Vector2(rng.nextInt(width),0);
 			break;
 		//west wall
 		case 3:
-			edge = new Vector2(rng.nextInt(height),0);
+			edge = new Vector2(0,rng.nextInt(height));
 			break;
 		}
 		return edge;
 	}
-	
+
 	private static int manhattanDistance(Vector2 start, Vector2 end) {
 		return (int) (Math.abs(start.x - end.x) + Math.abs(start.y - end.y));
 	}
 
 	private enum MazeTile {UNSEEN, WALL, PATH};
-	
-	public static void main(String[] args) {
-		
-		for (int i = 0; i < 10; i++) {
-			MazeGenerator maze = new MazeGenerator(9,6);
-			System.out.println(maze.start + " " + maze.end);
+
+	/**
+	 * Writes a generated level to a file.
+	 *
+	 * Usage: MazeGenerator file [scale] [seed]
+	 *
+	 * @param args The output file, the size relative to level 15, and the seed
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: MazeGenerator file [scale] [seed]");
+			return;
 		}
-		
+		float factor = (args.length > 1 ? Float.parseFloat(args[1]) : 1);
+		long seed = (args.length > 2 ? Long.parseLong(args[2]) : 0);
+		LevelEditor.Level level = ofScale(factor, seed).generate();
+		LevelSaver.write(level, new File(args[0]));
+		System.out.println(args[0]+": "+level.walls.length+" walls, "+level.lilypads.size()+" lilypads, "
+						   +level.lotuses.size()+" lotuses, "+level.enemyPaths.length+" enemies, "
+						   +level.whirlpools.size()+" whirlpools, "+level.rocks.size()+" rocks");
 	}
-	
+
 }
@@ -0,0 +1,222 @@
+/*
+ * PathSimplifier.java
+ *
+ * Walls and shores drawn by dragging in the level editor get a vertex every frame
+ * the mouse moves.  Most of those vertices are nearly collinear, but each one
+ * still costs a triangle (and so a Box2D fixture) when the wall is built.  This
+ * class removes the vertices that do not change the outline by more than a given
+ * tolerance, using the Douglas-Peucker algorithm.
+ */
+package edu.cornell.gdiac.downstream;
+
+import java.io.*;
+
+import com.badlogic.gdx.math.EarClippingTriangulator;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+import edu.cornell.gdiac.downstream.obstacle.PolygonObstacle;
+
+/**
+ * Static class for simplifying closed polygons.
+ *
+ * Simplification never makes a polygon intersect itself.  If it would, the
+ * tolerance is halved until it does not (or the polygon is left alone).
+ */
+public class PathSimplifier {
+	/** The default tolerance for walls and shores (in physics units) */
+	public static final float DEFAULT_TOLERANCE = 0.1f;
+	/** How many times to halve the tolerance before giving up */
+	private static final int MAX_RETRIES = 4;
+
+	/**
+	 * The result of optimizing a level file.
+	 *
+	 * Without convex decomposition, PolygonObstacle makes one fixture per triangle.
+	 */
+	public static class Report {
+		/** The level file */
+		public File file;
+		/** The number of wall and shore vertices before and after */
+		public int verticesBefore, verticesAfter;
+		/** The number of wall and shore triangles (fixtures) before and after */
+		public int trianglesBefore, trianglesAfter;
+	}
+
+	/**
+	 * Simplifies every wall and shore in a level file.
+	 *
+	 * The file is replaced atomically, and only if something changed.
+	 *
+	 * @param file		The level file
+	 * @param tolerance	The largest allowed deviation (in physics units)
+	 * @param write		Whether to write the result, or only report it
+	 *
+	 * @return the vertex and triangle counts before and after
+	 */
+	public static Report optimize(File file, float tolerance, boolean write) throws IOException {
+		LevelEditor.Level level;
+		Reader reader = new BufferedReader(new FileReader(file));
+		try {
+			level = LevelParser.read(reader);
+		} finally {
+			reader.close();
+		}
+
+		Report report = new Report();
+		report.file = file;
+		EarClippingTriangulator triangulator = new EarClippingTriangulator();
+		float[][][] polygons = { level.walls, level.shores };
+		for (float[][] list : polygons) {
+			for (int ii = 0; ii < list.length; ii++) {
+				report.verticesBefore += list[ii].length/2;
+				report.trianglesBefore += PolygonObstacle.triangulate(list[ii], triangulator).length/3;
+				list[ii] = simplify(list[ii], tolerance);
+				report.verticesAfter += list[ii].length/2;
+				report.trianglesAfter += PolygonObstacle.triangulate(list[ii], triangulator).length/3;
+			}
+		}
+		// Compiled levels carry the old triangulation; the hash will no longer match
+		level.wallTriangles = null;
+		level.shoreTriangles = null;
+
+		if (write && report.verticesAfter != report.verticesBefore) {
+			LevelSaver.write(level, file);
+		}
+		return report;
+	}
+
+	/**
+	 * Returns a simplified copy of a closed polygon.
+	 *
+	 * Every vertex removed is within tolerance of the new outline.  The result
+	 * always has at least three vertices.
+	 *
+	 * @param points	The polygon as x,y pairs
+	 * @param tolerance	The largest allowed deviation (in the units of points)
+	 *
+	 * @return a simplified copy of a closed polygon.
+	 */
+	public static float[] simplify(float[] points, float tolerance) {
+		boolean simple = LevelValidator.findSelfIntersection(points) == -1;
+		for (int ii = 0; ii <= MAX_RETRIES; ii++) {
+			float[] result = douglasPeucker(points, tolerance);
+			if (!simple || LevelValidator.findSelfIntersection(result) == -1) {
+				return result;
+			}
+			tolerance /= 2;
+		}
+		float[] copy = new float[points.length];
+		System.arraycopy(points, 0, copy, 0, points.length);
+		return copy;
+	}
+
+	/**
+	 * Returns the polygon with every vertex within tolerance removed.
+	 *
+	 * The polygon is split into two chains at the first vertex and the vertex
+	 * farthest from it, which are always kept.  Each chain is then simplified
+	 * as an open path.
+	 *
+	 * @param points	The polygon as x,y pairs
+	 * @param tolerance	The largest allowed deviation
+	 *
+	 * @return the polygon with every vertex within tolerance removed.
+	 */
+	private static float[] douglasPeucker(float[] points, float tolerance) {
+		int n = points.length/2;
+		if (n <= 3) {
+			float[] copy = new float[points.length];
+			System.arraycopy(points, 0, copy, 0, points.length);
+			return copy;
+		}
+
+		int far = 0;
+		float best = -1;
+		for (int ii = 1; ii < n; ii++) {
+			float dx = points[2*ii]-points[0];
+			float dy = points[2*ii+1]-points[1];
+			if (dx*dx+dy*dy > best) {
+				best = dx*dx+dy*dy;
+				far = ii;
+			}
+		}
+
+		boolean[] keep = new boolean[n];
+		keep[0] = true;
+		keep[far] = true;
+		IntArray stack = new IntArray();
+		stack.add(0);
+		stack.add(far);
+		stack.add(far);
+		stack.add(n);
+		float tolerance2 = tolerance*tolerance;
+		while (stack.size > 0) {
+			int last  = stack.pop();
+			int first = stack.pop();
+			int index = -1;
+			float worst = tolerance2;
+			for (int ii = first+1; ii < last; ii++) {
+				float d = distance2(points, ii, first, last % n);
+				if (d > worst) {
+					worst = d;
+					index = ii;
+				}
+			}
+			if (index != -1) {
+				keep[index] = true;
+				stack.add(first);
+				stack.add(index);
+				stack.add(index);
+				stack.add(last);
+			}
+		}
+
+		FloatArray result = new FloatArray();
+		for (int ii = 0; ii < n; ii++) {
+			if (keep[ii]) {
+				result.add(points[2*ii]);
+				result.add(points[2*ii+1]);
+			}
+		}
+		// Two vertices is a line; keep the one farthest from it
+		if (result.size < 6) {
+			int index = 0;
+			float worst = -1;
+			for (int ii = 1; ii < n; ii++) {
+				float d = distance2(points, ii, 0, far);
+				if (ii != far && d > worst) {
+					worst = d;
+					index = ii;
+				}
+			}
+			keep[index] = true;
+			result.clear();
+			for (int ii = 0; ii < n; ii++) {
+				if (keep[ii]) {
+					result.add(points[2*ii]);
+					result.add(points[2*ii+1]);
+				}
+			}
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * Returns the squared distance from vertex p to the segment from vertex a to b
+	 *
+	 * @return the squared distance from vertex p to the segment from vertex a to b
+	 */
+	private static float distance2(float[] points, int p, int a, int b) {
+		float px = points[2*p], py = points[2*p+1];
+		float ax = points[2*a], ay = points[2*a+1];
+		float bx = points[2*b], by = points[2*b+1];
+		float dx = bx-ax, dy = by-ay;
+		float len2 = dx*dx+dy*dy;
+		float t = (len2 == 0 ? 0 : ((px-ax)*dx+(py-ay)*dy)/len2);
+		t = Math.max(0, Math.min(1, t));
+		float ex = ax+t*dx-px;
+		float ey = ay+t*dy-py;
+		return ex*ex+ey*ey;
+	}
+}
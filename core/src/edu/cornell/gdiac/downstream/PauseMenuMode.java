@@ -13,6 +13,7 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 
 import edu.cornell.gdiac.util.ScreenListener;
+import edu.cornell.gdiac.util.TextureController;
 
 public class PauseMenuMode{
 	
@@ -79,15 +80,16 @@ public class PauseMenuMode{
 		backgroundPos.set(new Vector2(canvas.getWidth()/2, canvas.getHeight()/2));
 		
 
-		// Load images immediately.
-		pauseHeader = new Texture(PAUSE_HEADER);
-		resume = new Texture(RESUME_BUTTON);
-		resumeHoverButton = new Texture(RESUME_HOVER_BUTTON);
-		restart = new Texture(RESTART_BUTTON);
-		restartHoverButton = new Texture(RESTART_HOVER_BUTTON);
-		back = new Texture(BACK_BUTTON);
-		backHoverButton = new Texture(BACK_HOVER_BUTTON);
-		background = new Texture(BACKGROUND_FILE);
+		// Load images immediately (shared, so a second menu does not reload them).
+		TextureController textures = TextureController.getInstance();
+		pauseHeader = textures.acquire(PAUSE_HEADER);
+		resume = textures.acquire(RESUME_BUTTON);
+		resumeHoverButton = textures.acquire(RESUME_HOVER_BUTTON);
+		restart = textures.acquire(RESTART_BUTTON);
+		restartHoverButton = textures.acquire(RESTART_HOVER_BUTTON);
+		back = textures.acquire(BACK_BUTTON);
+		backHoverButton = textures.acquire(BACK_HOVER_BUTTON);
+		background = textures.acquire(BACKGROUND_FILE);
 		
 		resumeHover = false;
 		restartHover = false;
@@ -100,14 +102,15 @@ public class PauseMenuMode{
 	 * Called when this screen should release all resources.
 	 */
 	public void dispose() {
-		pauseHeader.dispose();
-		resume.dispose();
-		resumeHoverButton.dispose();
-		restart.dispose();
-		restartHoverButton.dispose();
-		back.dispose();
-		backHoverButton.dispose();
-		background.dispose();
+		TextureController textures = TextureController.getInstance();
+		textures.release(PAUSE_HEADER);
+		textures.release(RESUME_BUTTON);
+		textures.release(RESUME_HOVER_BUTTON);
+		textures.release(RESTART_BUTTON);
+		textures.release(RESTART_HOVER_BUTTON);
+		textures.release(BACK_BUTTON);
+		textures.release(BACK_HOVER_BUTTON);
+		textures.release(BACKGROUND_FILE);
 	}
 
 
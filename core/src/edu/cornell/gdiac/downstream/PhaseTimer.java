@@ -0,0 +1,180 @@
+/*
+ * PhaseTimer.java
+ *
+ * The frame time alone does not say which part of the game loop got slower.  This
+ * class times each phase of a tick separately, so that the scaling benchmark can
+ * show how every loop in the update grows with the size of the level.
+ *
+ * The timer is off by default.  While it is off, starting and stopping a phase
+ * is a single branch, so the hooks can stay in the game loop.
+ */
+package edu.cornell.gdiac.downstream;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.LongArray;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Per-tick timer for the phases of the game loop.
+ *
+ * A phase may be started and stopped several times in a tick; the times add up.
+ * Phases may overlap, in which case the time is counted in both.
+ */
+public class PhaseTimer {
+	/** The timed phases of a tick */
+	public enum Phase {
+		/** Enemy path searches, within their time budget (DownstreamController) */
+		PATHS,
+		/** Enemy patrol and flee checks (DownstreamController) */
+		ENEMIES,
+		/** Lantern checkpoint bookkeeping (DownstreamController) */
+		LANTERNS,
+		/** Searches for the closest tether (DownstreamController, CollisionController) */
+		CLOSEST_TETHER,
+		/** Marking tethers in the koi's path (DownstreamController) */
+		TETHER_IN_PATH,
+		/** Whirlpool capture checks (DownstreamController) */
+		WHIRLPOOLS,
+		/** Tether range and animation states (DownstreamController) */
+		TETHER_STATES,
+		/** Handling the contacts recorded by the step (CollisionController) */
+		CONTACTS,
+		/** The Box2D world step (WorldController) */
+		STEP,
+		/** The object update and removal loop (WorldController) */
+		OBJECTS
+	};
+
+	/** Whether phases are being timed */
+	private boolean enabled;
+	/** When each running phase was started */
+	private long[] started;
+	/** The time spent in each phase in the current tick */
+	private long[] elapsed;
+	/** The time spent in each phase in every finished tick */
+	private LongArray[] samples;
+
+	/**
+	 * Creates a new timer, which is off.
+	 */
+	public PhaseTimer() {
+		int count = Phase.values().length;
+		started = new long[count];
+		elapsed = new long[count];
+		samples = new LongArray[count];
+		for (int ii = 0; ii < count; ii++) {
+			samples[ii] = new LongArray();
+		}
+	}
+
+	/**
+	 * Returns true if phases are being timed
+	 *
+	 * @return true if phases are being timed
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets whether phases are being timed
+	 *
+	 * @param value whether phases are being timed
+	 */
+	public void setEnabled(boolean value) {
+		enabled = value;
+	}
+
+	/**
+	 * Starts timing a phase
+	 *
+	 * @param phase The phase to time
+	 */
+	public void start(Phase phase) {
+		if (enabled) {
+			started[phase.ordinal()] = TimeUtils.nanoTime();
+		}
+	}
+
+	/**
+	 * Stops timing a phase, adding the time to the current tick
+	 *
+	 * @param phase The phase to stop
+	 */
+	public void stop(Phase phase) {
+		if (enabled) {
+			elapsed[phase.ordinal()] += TimeUtils.nanoTime()-started[phase.ordinal()];
+		}
+	}
+
+	/**
+	 * Records the phase times for the current tick, and starts a new one.
+	 */
+	public void endTick() {
+		if (!enabled) {
+			return;
+		}
+		for (int ii = 0; ii < elapsed.length; ii++) {
+			samples[ii].add(elapsed[ii]);
+			elapsed[ii] = 0;
+		}
+	}
+
+	/**
+	 * Throws away every recorded tick.
+	 */
+	public void clear() {
+		for (int ii = 0; ii < elapsed.length; ii++) {
+			samples[ii].clear();
+			elapsed[ii] = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of recorded ticks
+	 *
+	 * @return the number of recorded ticks
+	 */
+	public int getTicks() {
+		return samples[0].size;
+	}
+
+	/**
+	 * Returns the mean time per tick of a phase (in nanoseconds)
+	 *
+	 * @param phase The phase
+	 *
+	 * @return the mean time per tick of a phase
+	 */
+	public double getMean(Phase phase) {
+		LongArray values = samples[phase.ordinal()];
+		if (values.size == 0) {
+			return 0;
+		}
+		double total = 0;
+		for (int ii = 0; ii < values.size; ii++) {
+			total += values.get(ii);
+		}
+		return total/values.size;
+	}
+
+	/**
+	 * Returns a percentile of the time per tick of a phase (in nanoseconds)
+	 *
+	 * @param phase 	The phase
+	 * @param fraction	The percentile, from 0 (the fastest tick) to 1 (the slowest)
+	 *
+	 * @return a percentile of the time per tick of a phase
+	 */
+	public long getPercentile(Phase phase, float fraction) {
+		LongArray values = samples[phase.ordinal()];
+		if (values.size == 0) {
+			return 0;
+		}
+		long[] sorted = values.toArray();
+		Arrays.sort(sorted);
+		int index = Math.round(fraction*(sorted.length-1));
+		return sorted[Math.max(0, Math.min(sorted.length-1, index))];
+	}
+}
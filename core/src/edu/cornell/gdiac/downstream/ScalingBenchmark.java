@@ -0,0 +1,360 @@
+/*
+ * ScalingBenchmark.java
+ *
+ * We used to guess which loops in the game would fall over on a large level.
+ * This benchmark plays generated river levels of increasing size and times each
+ * phase of every tick (see PhaseTimer).  It then fits a power law to each phase,
+ * so a loop that is quadratic in the number of tethers shows up with an exponent
+ * near 2.  The results are written as JSON, so that runs from different builds
+ * can be compared.
+ *
+ * The levels come from MazeGenerator with a fixed seed, so every run plays the
+ * same levels.  The game runs its normal update and physics, with no drawing and
+ * no input.  It still needs a window, since the models load their textures when
+ * they are created.
+ */
+package edu.cornell.gdiac.downstream;
+
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+
+import com.badlogic.gdx.*;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.freetype.*;
+import com.google.gson.stream.JsonWriter;
+
+import edu.cornell.gdiac.downstream.obstacle.SimpleObstacle;
+import edu.cornell.gdiac.util.ScreenListener;
+
+/**
+ * Application that benchmarks the game loop on levels of increasing size.
+ *
+ * Each level is played for a number of warmup ticks before the measured ticks,
+ * so that the camera has finished its opening zoom and the JIT has settled.
+ */
+public class ScalingBenchmark extends ApplicationAdapter implements ScreenListener {
+	/** The default level sizes, relative to level 15 */
+	public static final float[] DEFAULT_SCALES = { 1, 10, 100, 1000 };
+	/** The default seed for the generated levels */
+	public static final long DEFAULT_SEED = 42;
+	/** The number of ticks to play before measuring */
+	private static final int WARMUP_TICKS = 300;
+	/** The number of measured ticks */
+	private static final int MEASURED_TICKS = 600;
+	/** The level number to play generated levels as (night, with no tutorials) */
+	private static final int LEVEL_NUMBER = 16;
+
+	/**
+	 * The measurements for one level size.
+	 */
+	public static class Run {
+		/** The level size, relative to level 15 */
+		public float scale;
+		/** The number of walls, tethers, enemies, whirlpools and rocks */
+		public int walls, tethers, enemies, whirlpools, rocks;
+		/** The number of Box2D bodies and broadphase proxies */
+		public int bodies, proxies;
+		/** The time to build the level (in nanoseconds) */
+		public long buildTime;
+		/** The position, angle and velocity reads per tick (each was a Box2D call before the cache) */
+		public double reads;
+		/** The position, angle and velocity calls into Box2D per tick */
+		public double bodyCalls;
+		/** The mean, median, 95th percentile and worst time per tick of each phase */
+		public double[] mean;
+		public long[] median, p95, max;
+	}
+
+	/** The level sizes to play */
+	private float[] scales;
+	/** The seed for the generated levels */
+	private long seed;
+	/** The file to write the results to */
+	private File output;
+	/** Whether to split the enemy AI across threads */
+	private boolean parallel = true;
+	/** The results so far */
+	private ArrayList<Run> runs = new ArrayList<Run>();
+
+	/**
+	 * Creates a new benchmark.
+	 *
+	 * @param scales	The level sizes to play, relative to level 15
+	 * @param seed		The seed for the generated levels
+	 * @param output	The file to write the results to
+	 */
+	public ScalingBenchmark(float[] scales, long seed, File output) {
+		this.scales = scales;
+		this.seed = seed;
+		this.output = output;
+	}
+
+	/**
+	 * Sets whether to split the enemy AI across threads
+	 *
+	 * @param value	whether to split the enemy AI across threads
+	 */
+	public void setParallel(boolean value) {
+		parallel = value;
+	}
+
+	/**
+	 * Returns the measurements so far
+	 *
+	 * @return the measurements so far
+	 */
+	public ArrayList<Run> getRuns() {
+		return runs;
+	}
+
+	/**
+	 * Runs the whole benchmark, then exits the application.
+	 */
+	public void create() {
+		AssetManager manager = new AssetManager();
+		FileHandleResolver resolver = new InternalFileHandleResolver();
+		manager.setLoader(FreeTypeFontGenerator.class, new FreeTypeFontGeneratorLoader(resolver));
+		manager.setLoader(BitmapFont.class, ".ttf", new FreetypeFontLoader(resolver));
+
+		GameCanvas canvas = new GameCanvas();
+		DownstreamController game = new DownstreamController(LEVEL_NUMBER);
+		game.preLoadContent(manager);
+		manager.finishLoading();
+		game.loadContent(manager);
+		game.setScreenListener(this);
+		game.setCanvas(canvas);
+		game.setParallelEnemies(parallel);
+
+		try {
+			for (float scale : scales) {
+				runs.add(play(game, scale));
+			}
+			write(output);
+			System.out.println("Results written to "+output);
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+
+		game.dispose();
+		canvas.dispose();
+		manager.dispose();
+		Gdx.app.exit();
+	}
+
+	/**
+	 * Returns the measurements for a generated level of the given size.
+	 *
+	 * @param game	The game controller
+	 * @param scale	The level size, relative to level 15
+	 *
+	 * @return the measurements for a generated level of the given size.
+	 */
+	private Run play(DownstreamController game, float scale) throws IOException {
+		LevelEditor.Level level = MazeGenerator.ofScale(scale, seed).generate();
+		File file = File.createTempFile("river", ".json");
+		file.deleteOnExit();
+		LevelSaver.write(level, file);
+		game.swapLevel(LEVEL_NUMBER, file);
+
+		Run run = new Run();
+		run.scale = scale;
+		run.walls = level.walls.length;
+		run.tethers = level.lilypads.size()+level.lotuses.size()+level.lanterns.size();
+		run.enemies = level.enemyPaths.length;
+		run.whirlpools = level.whirlpools.size();
+		run.rocks = level.rocks.size();
+		run.bodies = game.world.getBodyCount();
+		run.proxies = game.world.getProxyCount();
+		run.buildTime = game.getSwapTime();
+
+		PhaseTimer timer = game.getPhaseTimer();
+		timer.setEnabled(false);
+		for (int ii = 0; ii < WARMUP_TICKS; ii++) {
+			tick(game);
+		}
+		timer.clear();
+		timer.setEnabled(true);
+		SimpleObstacle.resetCallCounts();
+		for (int ii = 0; ii < MEASURED_TICKS; ii++) {
+			tick(game);
+			timer.endTick();
+		}
+		timer.setEnabled(false);
+		run.reads = SimpleObstacle.getCachedReads()/(double)MEASURED_TICKS;
+		run.bodyCalls = SimpleObstacle.getBodyCalls()/(double)MEASURED_TICKS;
+
+		PhaseTimer.Phase[] phases = PhaseTimer.Phase.values();
+		run.mean = new double[phases.length];
+		run.median = new long[phases.length];
+		run.p95 = new long[phases.length];
+		run.max = new long[phases.length];
+		StringBuilder line = new StringBuilder(String.format("%7.0fx %6d tethers %5d enemies %6d walls  build %8.1f ms  reads %.0f  box2d %.0f |",
+				scale, run.tethers, run.enemies, run.walls, run.buildTime/1e6, run.reads, run.bodyCalls));
+		for (PhaseTimer.Phase phase : phases) {
+			int ii = phase.ordinal();
+			run.mean[ii] = timer.getMean(phase);
+			run.median[ii] = timer.getPercentile(phase, 0.5f);
+			run.p95[ii] = timer.getPercentile(phase, 0.95f);
+			run.max[ii] = timer.getPercentile(phase, 1.0f);
+			line.append(String.format(" %s %.3f", phase.name().toLowerCase(), run.mean[ii]/1e6));
+		}
+		System.out.println(line);
+		file.delete();
+		return run;
+	}
+
+	/**
+	 * Plays a single tick of the game, without input or drawing
+	 *
+	 * @param game	The game controller
+	 */
+	private static void tick(DownstreamController game) {
+		game.update(WorldController.WORLD_STEP);
+		game.postUpdate(WorldController.WORLD_STEP);
+	}
+
+	/**
+	 * Returns the least squares fit of log(time) against log(scale) for a phase.
+	 *
+	 * The first value is the exponent of the power law (time grows with scale to
+	 * this power), and the second is the R^2 of the fit.  Runs where the phase
+	 * took no time are skipped, and the result is NaN with fewer than two runs.
+	 *
+	 * @param phase	The phase
+	 *
+	 * @return the exponent and R^2 of the fit
+	 */
+	public double[] fit(PhaseTimer.Phase phase) {
+		int n = 0;
+		double sx = 0, sy = 0, sxx = 0, sxy = 0, syy = 0;
+		for (Run run : runs) {
+			double time = run.mean[phase.ordinal()];
+			if (time <= 0 || run.scale <= 0) {
+				continue;
+			}
+			double x = Math.log(run.scale);
+			double y = Math.log(time);
+			n++;
+			sx += x;
+			sy += y;
+			sxx += x*x;
+			sxy += x*y;
+			syy += y*y;
+		}
+		double vx = n*sxx-sx*sx;
+		double vy = n*syy-sy*sy;
+		if (n < 2 || vx == 0) {
+			return new double[] { Double.NaN, Double.NaN };
+		}
+		double cov = n*sxy-sx*sy;
+		double r2 = (vy == 0 ? 1 : cov*cov/(vx*vy));
+		return new double[] { cov/vx, r2 };
+	}
+
+	/**
+	 * Returns the complexity class nearest to a fitted exponent
+	 *
+	 * @param exponent	The fitted exponent
+	 *
+	 * @return the complexity class nearest to a fitted exponent
+	 */
+	private static String order(double exponent) {
+		if (Double.isNaN(exponent)) {
+			return "unknown";
+		}
+		long power = Math.max(0, Math.round(exponent));
+		if (power == 0) {
+			return "O(1)";
+		} else if (power == 1) {
+			return "O(n)";
+		}
+		return "O(n^"+power+")";
+	}
+
+	/**
+	 * Writes the results and the fitted curves to a JSON file.
+	 *
+	 * @param file	The file to write
+	 */
+	public void write(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		Writer out = new BufferedWriter(new FileWriter(file));
+		try {
+			JsonWriter writer = new JsonWriter(out);
+			writer.setIndent("  ");
+			writer.beginObject();
+			writer.name("date").value(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date()));
+			writer.name("java").value(System.getProperty("java.version"));
+			writer.name("os").value(System.getProperty("os.name")+" "+System.getProperty("os.arch"));
+			writer.name("processors").value(Runtime.getRuntime().availableProcessors());
+			writer.name("parallel").value(parallel);
+			writer.name("seed").value(seed);
+			writer.name("warmupTicks").value(WARMUP_TICKS);
+			writer.name("measuredTicks").value(MEASURED_TICKS);
+
+			PhaseTimer.Phase[] phases = PhaseTimer.Phase.values();
+			writer.name("runs").beginArray();
+			for (Run run : runs) {
+				writer.beginObject();
+				writer.name("scale").value(run.scale);
+				writer.name("walls").value(run.walls);
+				writer.name("tethers").value(run.tethers);
+				writer.name("enemies").value(run.enemies);
+				writer.name("whirlpools").value(run.whirlpools);
+				writer.name("rocks").value(run.rocks);
+				writer.name("bodies").value(run.bodies);
+				writer.name("proxies").value(run.proxies);
+				writer.name("buildNanos").value(run.buildTime);
+				if (SimpleObstacle.isCountingReads()) {
+					writer.name("readsPerTick").value(run.reads);
+				}
+				writer.name("box2dCallsPerTick").value(run.bodyCalls);
+				writer.name("phases").beginObject();
+				for (PhaseTimer.Phase phase : phases) {
+					int ii = phase.ordinal();
+					writer.name(phase.name().toLowerCase()).beginObject();
+					writer.name("meanNanos").value(run.mean[ii]);
+					writer.name("medianNanos").value(run.median[ii]);
+					writer.name("p95Nanos").value(run.p95[ii]);
+					writer.name("maxNanos").value(run.max[ii]);
+					writer.endObject();
+				}
+				writer.endObject();
+				writer.endObject();
+			}
+			writer.endArray();
+
+			writer.name("fits").beginObject();
+			for (PhaseTimer.Phase phase : phases) {
+				double[] fit = fit(phase);
+				writer.name(phase.name().toLowerCase()).beginObject();
+				if (!Double.isNaN(fit[0])) {
+					writer.name("exponent").value(fit[0]);
+					writer.name("r2").value(fit[1]);
+				}
+				writer.name("order").value(order(fit[0]));
+				writer.endObject();
+			}
+			writer.endObject();
+			writer.endObject();
+			writer.flush();
+			out.write('\n');
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Ignores requests to change screens, since the benchmark has none.
+	 */
+	public void exitScreen(Screen screen, int exitCode) {
+	}
+}
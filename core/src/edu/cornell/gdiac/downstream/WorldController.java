@@ -17,7 +17,6 @@
 package edu.cornell.gdiac.downstream;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 
 import com.badlogic.gdx.*;
 import com.badlogic.gdx.math.*;
@@ -119,6 +118,9 @@ public abstract class WorldController implements Screen {
 	protected static final String TUTORIAL_TEXTURE6 = "MENUS/tip_6.png";
 	protected static final String HELP_TEXTURE = "MENUS/help_button.png";
 	protected static final String ENEMY_TEXTUREA = "enemy/enemy_fish_sheet.png";
+	/** References to the koi sprite sheets */
+	protected static final String KOI_STRAIGHT_SHEET = "koi/Straight_Koi.png";
+	protected static final String KOI_CURVE_SHEET = "koi/curve_koi.png";
 
 	// TextureRegions//
 	/** Texture assets for the koi */
@@ -188,7 +190,16 @@ public abstract class WorldController implements Screen {
 	private static Texture overlay;
 	private Color referenceC = Color.WHITE.cpy();
 	
-	protected ArrayList<ArrayList<Float>> walls = new ArrayList<ArrayList<Float>>();
+	protected ArrayList<float[]> walls = new ArrayList<float[]>();
+
+	/** Index of the day variant of the lily and flower sheets */
+	protected static final int DAY = 0;
+	/** Index of the sunset variant of the lily and flower sheets */
+	protected static final int SUNSET = 1;
+	/** Index of the night variant of the lily and flower sheets */
+	protected static final int NIGHT = 2;
+	/** Which time of day variants have been sliced so far */
+	private boolean[] timeOfDayLoaded = new boolean[3];
 
 	//Animations//
 	protected Animation lilyAnimation; // This is the only one
@@ -227,10 +238,6 @@ public abstract class WorldController implements Screen {
 	protected Animation openingFlowerAnimationT; // #3
 	protected Animation openFlowerAnimationT; // #3
 	protected Animation closedFlowerAnimationT; // #3
-	protected TextureRegion[] openingFlowerFramesT; // #5
-	protected TextureRegion[] closingFlowerFramesT; // #5
-	protected TextureRegion[] openFlowerFramesT; // #5
-	protected TextureRegion[] closedFlowerFramesT; // #5
 	protected TextureRegion openingFlowercurrentFrameT; // #7
 	protected TextureRegion closingFlowercurrentFrameT; // #7
 	protected TextureRegion openFlowercurrentFrameT; // #7
@@ -239,7 +246,6 @@ public abstract class WorldController implements Screen {
 	protected Animation koiSAnimation; // #3
 	protected Texture koiSSheet; // #4
 	protected TextureRegion[] koiSFrames; // #5
-	protected SpriteBatch koiSspriteBatch; // #6
 	protected TextureRegion koiScurrentFrame; // #7
 
 	protected Animation koiCAnimation; // #3
@@ -298,14 +304,7 @@ public abstract class WorldController implements Screen {
 		manager.load(ENEMY_TEXTURE, Texture.class);
 		assets.add(ENEMY_TEXTURE);
 
-		manager.load(LILY_TEXTURE, Texture.class);
-		assets.add(LILY_TEXTURE);
-		
-		manager.load(LILY_TEXTURE_N, Texture.class);
-		assets.add(LILY_TEXTURE_N);
-		
-		manager.load(LILY_TEXTURE_S, Texture.class);
-		assets.add(LILY_TEXTURE_S);
+		// The lily sheets are sliced through the FrameCache (see loadTimeOfDay)
 
 		manager.load(LANTERN_TEXTURE, Texture.class);
 		assets.add(LANTERN_TEXTURE);
@@ -405,36 +404,64 @@ public abstract class WorldController implements Screen {
 	}
 
 
+	/**
+	 * Returns the frames of a sprite sheet, in row-major order.
+	 *
+	 * The frames come from the FrameCache, so the sheet is only decoded the first
+	 * time any controller asks for it.  The result must not be modified.
+	 *
+	 * @param cols		The number of columns in the sheet
+	 * @param rows		The number of rows in the sheet
+	 * @param filePath	The sprite sheet file
+	 *
+	 * @return the frames of a sprite sheet, in row-major order.
+	 */
 	protected TextureRegion[] splice(int cols, int rows, String filePath){
-
-		Texture sheet = new Texture(Gdx.files.internal(filePath));
-
-		TextureRegion[][] tmp = TextureRegion.split(sheet, sheet.getWidth()/cols, sheet.getHeight()/rows);
-		TextureRegion[] Frames = new TextureRegion[cols * rows];
-		int index = 0;
-		for (int i = 0; i < rows; i++) {
-			for (int j = 0; j < cols; j++) {
-				Frames[index++] = tmp[i][j];
-			}
-		}
-		return Frames;
+		return FrameCache.getFrames(filePath, cols, rows, cols * rows, false);
 	}	
 	
 	protected TextureRegion[] splice(int cols, int rows, int images, String filePath){
+		return FrameCache.getFrames(filePath, cols, rows, images, false);
+	}
 
-		Texture sheet = new Texture(Gdx.files.internal(filePath));
-
-		TextureRegion[][] tmp = TextureRegion.split(sheet, sheet.getWidth()/cols, sheet.getHeight()/rows);
-		TextureRegion[] Frames = new TextureRegion[images];
-		int index = 0;
-		for (int i = 0; i < rows; i++) {
-			for (int j = 0; j < cols; j++) {
-				if (index < images){
-					Frames[index++] = tmp[i][j];
-				}
-			}
+	/**
+	 * Slices the lily and flower sheets for the given time of day.
+	 *
+	 * Each time of day has its own set of sheets, and most levels only use
+	 * one of them.  So the sheets are sliced the first time a level asks for
+	 * them, rather than all at once in loadContent.  Calling this again for
+	 * the same time of day does nothing.
+	 *
+	 * @param time	The time of day (DAY, SUNSET or NIGHT)
+	 */
+	protected void loadTimeOfDay(int time) {
+		if (timeOfDayLoaded[time]) {
+			return;
+		}
+		switch (time) {
+		case DAY:
+			lilyFramesDay = splice(4, 12, 47, LILY_TEXTURE);
+			closedFlowerFramesDay = splice(26, 1, "tethers/Floating_Closed_Day_small.png");
+			openFlowerFramesDay = splice(26, 1, "tethers/Floating_Open_Day_small.png");
+			openingFlowerFramesDay = splice(26, 1, "tethers/Opening_Flower_Day_small.png" );
+			closingFlowerFramesDay = splice(26, 1, "tethers/Closing_Flower_Day_small.png");
+			break;
+		case SUNSET:
+			lilyFramesSunset = splice(24, 2, 47, LILY_TEXTURE_S);
+			closedFlowerFramesSunset = splice(26, 1, "tethers/Floating_Closed_Sunset_small.png");
+			openFlowerFramesSunset = splice(26, 1, "tethers/Floating_Open_Sunset_small.png");
+			openingFlowerFramesSunset = splice(26, 1, "tethers/Opening_Flower_Sunset_small.png");
+			closingFlowerFramesSunset = splice(26, 1, "tethers/Closing_Flower_Sunset_small.png");
+			break;
+		case NIGHT:
+			lilyFramesNight = splice(24, 2, 47, LILY_TEXTURE_N);
+			closedFlowerFramesNight = splice(26, 1, "tethers/Floating_Closed_Night_small.png");
+			openFlowerFramesNight = splice(26, 1, "tethers/Floating_Open_Night_small.png");
+			openingFlowerFramesNight = splice(26, 1, "tethers/Opening_Flower_Night_small.png");
+			closingFlowerFramesNight = splice(26, 1, "tethers/Closing_Flower_Night_small.png");
+			break;
 		}
-		return Frames;
+		timeOfDayLoaded[time] = true;
 	}
 
 
@@ -462,11 +489,10 @@ public abstract class WorldController implements Screen {
 		//animationDef
 		//load the animation content here
 
-		lilyFrames = splice(4, 12, 47, LILY_TEXTURE);
-
-		lilyFramesDay = splice(4, 12, 47, LILY_TEXTURE);
-		lilyFramesNight = splice(24, 2, 47, LILY_TEXTURE_N);
-		lilyFramesSunset = splice(24, 2, 47, LILY_TEXTURE_S);
+		// Only the day sheets are needed up front.  The others are sliced
+		// when a level that uses them is populated.
+		loadTimeOfDay(DAY);
+		lilyFrames = lilyFramesDay;
 
 
 		goalFrames = splice(4,20, GOAL_TEXTURE);
@@ -480,65 +506,17 @@ public abstract class WorldController implements Screen {
 		cols = 11;
 		rows = 1;
 
-
-		closedFlowerFramesDay = splice(26, 1, "tethers/Floating_Closed_Day_small.png");
-		closedFlowerFramesNight = splice(26, 1, "tethers/Floating_Closed_Night_small.png");
-		closedFlowerFramesSunset = splice(26, 1, "tethers/Floating_Closed_Sunset_small.png");
-		closedFlowerFramesT = splice(23, 1, "tethers/Floating_Closed_Sunset2.png");
-
-
-		int index = 0;
-
-		openFlowerFramesDay = splice(26, 1, "tethers/Floating_Open_Day_small.png");
-		openFlowerFramesNight = splice(26, 1, "tethers/Floating_Open_Night_small.png");
-		openFlowerFramesSunset = splice(26, 1, "tethers/Floating_Open_Sunset_small.png");
-		openFlowerFramesT = splice(23, 1, "tethers/Floating_Open_Sunset2.png");
-
-
-		cols = 8; 
-
-		openingFlowerFramesDay = splice(26, 1, "tethers/Opening_Flower_Day_small.png" );
-		openingFlowerFramesNight = splice(26, 1, "tethers/Opening_Flower_Night_small.png");
-		openingFlowerFramesSunset = splice(26, 1, "tethers/Opening_Flower_Sunset_small.png");
-		openingFlowerFramesT = splice(26, 1, "tethers/Opening_Flower_Sunset2.png");
-
-		closingFlowerFramesDay = splice(26, 1, "tethers/Closing_Flower_Day_small.png");
-		closingFlowerFramesNight = splice(26, 1, "tethers/Closing_Flower_Night_small.png");
-		closingFlowerFramesSunset = splice(26, 1, "tethers/Closing_Flower_Sunset_small.png");
-		closingFlowerFramesT = splice(26, 1, "tethers/Opening_Flower_Sunset2.png");
-
 		cols = 12;
-		koiSSheet = new Texture(Gdx.files.internal("koi/Straight_Koi.png"));
-		TextureRegion[][] tmpkoiS = TextureRegion.split(koiSSheet, koiSSheet.getWidth()/cols, koiSSheet.getHeight()/rows);              // #10
-		koiSFrames = new TextureRegion[cols * rows];
-		index = 0;
-		for (int i = 0; i < rows; i++) {
-			for (int j = 0; j < cols; j++) {
-				koiSFrames[index++] = tmpkoiS[i][j];
-			}
-		}
+		koiSFrames = splice(cols, rows, KOI_STRAIGHT_SHEET);
+		koiSSheet = koiSFrames[0].getTexture();
 		koiSAnimation = new Animation(.05f, koiSFrames); 
-		koiSspriteBatch = new SpriteBatch(); 
 
 		cols = 31;
 
 		//remeber kiddies, animate both directions
-		koiCSheet = new Texture(Gdx.files.internal("koi/curve_koi.png"));
-
-		TextureRegion[][] tmpkoiC = TextureRegion.split(koiCSheet, koiCSheet.getWidth()/cols, koiCSheet.getHeight()/rows);              // #10
-		TextureRegion[][] tmpkoiCFlipped = TextureRegion.split(koiCSheet, koiCSheet.getWidth()/cols, koiCSheet.getHeight()/rows);              // #10
-
-		koiCFrames = new TextureRegion[cols * rows];
-		koiCFramesFlipped = new TextureRegion[cols * rows];
-		index = 0;
-		for (int i = 0; i < rows; i++) {
-			for (int j = 0; j < cols; j++) {
-				//tmpkoiC[i][j].flip(false, true);
-				koiCFrames[index] = tmpkoiC[i][j];
-				tmpkoiCFlipped[i][j].flip(false, true);
-				koiCFramesFlipped[index++] = tmpkoiCFlipped[i][j];
-			}
-		}
+		koiCFrames = splice(cols, rows, KOI_CURVE_SHEET);
+		koiCFramesFlipped = FrameCache.getFrames(KOI_CURVE_SHEET, cols, rows, cols * rows, true);
+		koiCSheet = koiCFrames[0].getTexture();
 		koiCAnimation = new Animation(.02f, koiCFrames); 
 		koiCAnimationFlipped = new Animation(.02f, koiCFramesFlipped);
 
@@ -752,10 +730,10 @@ public abstract class WorldController implements Screen {
 
 	/** Reference to the game canvas */
 	protected GameCanvas canvas;
-	/** All the objects in the world. */
-	protected PooledList<Obstacle> objects  = new PooledList<Obstacle>();
-	/** Queue for adding objects */
-	protected PooledList<Obstacle> addQueue = new PooledList<Obstacle>();
+	/** All the objects in the world, by draw layer. */
+	protected ObjectStore objects  = new ObjectStore();
+	/** Queue for adding objects (added in order, then cleared) */
+	protected Bag<Obstacle> addQueue = new Bag<Obstacle>();
 	/** Listener that will update the player mode when we are done */
 	protected ScreenListener listener;
 
@@ -767,6 +745,8 @@ public abstract class WorldController implements Screen {
 	protected Rectangle bounds;
 	/** The world scale */
 	protected Vector2 scale;
+	/** The timer for the phases of each tick (off unless benchmarking) */
+	protected PhaseTimer timer = new PhaseTimer();
 
 	/** Whether or not this is an active controller */
 	public boolean active;
@@ -785,6 +765,17 @@ public abstract class WorldController implements Screen {
 	protected int fadeOut;
 	
 
+	/**
+	 * Returns the timer for the phases of each tick
+	 *
+	 * The timer is off until it is enabled.
+	 *
+	 * @return the timer for the phases of each tick
+	 */
+	public PhaseTimer getPhaseTimer() {
+		return timer;
+	}
+
 	/**
 	 * Returns true if debug mode is active.
 	 *
@@ -984,8 +975,20 @@ public abstract class WorldController implements Screen {
 	 * param obj The object to add
 	 */
 	protected void addObject(Obstacle obj) {
+		addObject(obj, ObjectStore.Layer.DYNAMIC);
+	}
+
+	/**
+	 * Immediately adds the object to the physics world, in the given draw layer
+	 *
+	 * Objects in a static layer are not updated by postUpdate.
+	 *
+	 * param obj	The object to add
+	 * param layer	The layer to draw it in
+	 */
+	protected void addObject(Obstacle obj, ObjectStore.Layer layer) {
 		assert inBounds(obj) : "Object is not in bounds";
-		objects.add(obj);
+		objects.add(obj, layer);
 		obj.activatePhysics(world);
 	}
 
@@ -1086,28 +1089,67 @@ public abstract class WorldController implements Screen {
 	 */
 	public void postUpdate(float dt) {
 		// Add any objects created by actions
-		while (!addQueue.isEmpty()) {
-			addObject(addQueue.poll());
+		for (int ii = 0; ii < addQueue.size(); ii++) {
+			addObject(addQueue.get(ii));
 		}
+		addQueue.clear();
 
 		// Turn the physics engine crank.
+		// Positions and velocities set during the update are written to the bodies
+		// first, and the results are read back once, so the getters can use them.
+		// Static layers are flushed too, in case a piece was moved by hand.
+		timer.start(PhaseTimer.Phase.STEP);
+		for (ObjectStore.Layer layer : ObjectStore.Layer.values()) {
+			Array<Obstacle> list = objects.getLayer(layer);
+			for (int ii = 0; ii < list.size; ii++) {
+				list.get(ii).flushTransform();
+			}
+		}
 		world.step(WORLD_STEP,WORLD_VELOC,WORLD_POSIT);
-
-		// Garbage collect the deleted objects.
-		// Note how we use the linked list nodes to delete O(1) in place.
-		// This is O(n) without copying.
-		Iterator<PooledList<Obstacle>.Entry> iterator = objects.entryIterator();
-		while (iterator.hasNext()) {
-			PooledList<Obstacle>.Entry entry = iterator.next();
-			Obstacle obj = entry.getValue();
-			if (obj.isRemoved()) {
-				obj.deactivatePhysics(world);
-				entry.remove();
-			} else {
-				// Note that update is called last!
-				obj.update(dt);
+		for (ObjectStore.Layer layer : ObjectStore.Layer.values()) {
+			if (layer.isDynamic()) {
+				Array<Obstacle> list = objects.getLayer(layer);
+				for (int ii = 0; ii < list.size; ii++) {
+					list.get(ii).cacheTransform();
+				}
 			}
 		}
+		timer.stop(PhaseTimer.Phase.STEP);
+		processContacts();
+
+		// Garbage collect the deleted objects in the dynamic layers.
+		// The survivors are compacted in place, keeping their draw order.
+		// This is O(n) in the dynamic objects, without copying the static ones.
+		timer.start(PhaseTimer.Phase.OBJECTS);
+		for (ObjectStore.Layer layer : ObjectStore.Layer.values()) {
+			if (!layer.isDynamic()) {
+				continue;
+			}
+			Array<Obstacle> list = objects.getLayer(layer);
+			int kept = 0;
+			for (int ii = 0; ii < list.size; ii++) {
+				Obstacle obj = list.get(ii);
+				if (obj.isRemoved()) {
+					obj.deactivatePhysics(world);
+				} else {
+					// Note that update is called last!
+					obj.update(dt);
+					list.set(kept++, obj);
+				}
+			}
+			list.truncate(kept);
+		}
+		timer.stop(PhaseTimer.Phase.OBJECTS);
+	}
+
+	/**
+	 * Handles the contacts recorded during the last step
+	 *
+	 * Contact listeners should only record contacts, since they are called from
+	 * inside world.step.  This method is called once the step is over, before
+	 * removed objects are garbage collected.  By default it does nothing.
+	 */
+	protected void processContacts() {
 	}
 
 	/**
@@ -1116,7 +1158,8 @@ public abstract class WorldController implements Screen {
 	 * For simple worlds, this method is enough by itself.  It will need
 	 * to be overriden if the world needs fancy backgrounds or the like.
 	 *
-	 * The method draws all objects in the order that they were added.
+	 * The method draws the objects layer by layer, and each layer in the order
+	 * that its objects were added.
 	 *
 	 * @param canvas The drawing context
 	 */
@@ -1135,14 +1178,14 @@ public abstract class WorldController implements Screen {
 		}
 		canvas.end();
 		if (walls.size() > 0){ 
-			for (ArrayList<Float> wall : walls) canvas.drawPath(wall);
+			for (float[] wall : walls) canvas.drawPath(wall);
 		}
 		canvas.begin();
 		//		canvas.draw(background, Color.WHITE, 0, 0, canvas.getWidth(), canvas.getHeight());
 		//canvas.draw(rocks, Color.WHITE, 0, 0, canvas.getWidth(), canvas.getHeight());
 		
 		
-//		for (ArrayList<Float> wall : walls) canvas.drawPath(wall);
+//		for (float[] wall : walls) canvas.drawPath(wall);
 		
 		for(Obstacle obj : objects) {
 			obj.draw(canvas);
@@ -0,0 +1,296 @@
+/*
+ * EnemyPilot.java
+ *
+ * Steers an enemy fish toward its goal with the gdx-ai steering behaviors.  The
+ * enemy used to jump a fixed distance straight at its goal every tick.  Now it
+ * asks the navigator for a path around the land, follows it with FollowPath, and
+ * accelerates and turns smoothly.  Until the path arrives (usually the next frame),
+ * or if the goal is off the grid, it swims straight at the goal with Arrive.
+ *
+ * Enemy bodies are static, so the pilot integrates the velocity itself and moves
+ * the body, as the old code did.
+ */
+package edu.cornell.gdiac.downstream.ai;
+
+import com.badlogic.gdx.ai.msg.Telegram;
+import com.badlogic.gdx.ai.msg.Telegraph;
+import com.badlogic.gdx.ai.pfa.PathFinderRequest;
+import com.badlogic.gdx.ai.steer.Steerable;
+import com.badlogic.gdx.ai.steer.SteeringAcceleration;
+import com.badlogic.gdx.ai.steer.SteeringBehavior;
+import com.badlogic.gdx.ai.steer.behaviors.Arrive;
+import com.badlogic.gdx.ai.steer.behaviors.FollowPath;
+import com.badlogic.gdx.ai.steer.utils.paths.LinePath;
+import com.badlogic.gdx.ai.steer.utils.paths.LinePath.LinePathParam;
+import com.badlogic.gdx.ai.utils.Location;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+
+import edu.cornell.gdiac.downstream.models.EnemyIntent;
+import edu.cornell.gdiac.downstream.models.EnemyModel;
+
+/**
+ * Steering controller for a single enemy.
+ */
+public class EnemyPilot implements Steerable<Vector2>, Telegraph {
+	/** The top speed of an enemy (the old code moved .2 units a tick at 60 fps) */
+	private static final float MAX_SPEED = 12.0f;
+	/** The top acceleration of an enemy */
+	private static final float MAX_ACCELERATION = 48.0f;
+	/** How close the enemy must get to its goal to stop */
+	private static final float ARRIVAL_TOLERANCE = 0.1f;
+	/** How far from its goal the enemy starts to slow down */
+	private static final float DECELERATION_RADIUS = 1.0f;
+	/** How far ahead along the path the enemy aims */
+	private static final float PATH_OFFSET = 1.0f;
+	/** How far the goal must move before the path is found again */
+	private static final float RETARGET_DISTANCE = 0.01f;
+
+	/** The enemy being steered */
+	private EnemyModel enemy;
+	/** The navigator for this level (or null to always swim straight) */
+	private Navigator navigator;
+	/** The velocity of the enemy */
+	private Vector2 velocity = new Vector2();
+	/** Whether the enemy has a goal yet */
+	private boolean targeted;
+	/** The goal the path was found for */
+	private SteeringPoint target = new SteeringPoint();
+	/** The path search in progress (or null if none) */
+	private PathFinderRequest<NavGrid.Cell> pending;
+	/** The points of the current path */
+	private Array<Vector2> waypoints = new Array<Vector2>();
+	/** The current path (or null if swimming straight) */
+	private LinePath<Vector2> route;
+	/** Behavior to follow the path */
+	private FollowPath<Vector2, LinePathParam> follow;
+	/** Behavior to swim straight at the goal */
+	private Arrive<Vector2> arrive;
+	/** The output of the current behavior */
+	private SteeringAcceleration<Vector2> steering = new SteeringAcceleration<Vector2>(new Vector2());
+
+	/** Whether some group behavior has tagged this enemy */
+	private boolean tagged;
+	/** The speed below which the enemy is not turned */
+	private float zeroLinearSpeedThreshold = 0.001f;
+	/** The top speed of the enemy */
+	private float maxLinearSpeed = MAX_SPEED;
+	/** The top acceleration of the enemy */
+	private float maxLinearAcceleration = MAX_ACCELERATION;
+	/** The top turning speed (unused; the enemy faces its velocity) */
+	private float maxAngularSpeed;
+	/** The top turning acceleration (unused; the enemy faces its velocity) */
+	private float maxAngularAcceleration;
+
+	/**
+	 * Creates a new pilot for an enemy
+	 *
+	 * @param enemy		The enemy to steer
+	 * @param navigator	The navigator for this level (or null to swim straight)
+	 */
+	public EnemyPilot(EnemyModel enemy, Navigator navigator) {
+		this.enemy = enemy;
+		this.navigator = navigator;
+		arrive = new Arrive<Vector2>(this, target);
+		arrive.setArrivalTolerance(ARRIVAL_TOLERANCE);
+		arrive.setDecelerationRadius(DECELERATION_RADIUS);
+	}
+
+	/**
+	 * Sets the navigator for this level, dropping the current path
+	 *
+	 * @param value	the navigator for this level (or null to swim straight)
+	 */
+	public void setNavigator(Navigator value) {
+		navigator = value;
+		reset();
+	}
+
+	/**
+	 * Drops the current path, so that a new one is found on the next step.
+	 *
+	 * Call this when the enemy is moved by hand.
+	 */
+	public void reset() {
+		targeted = false;
+		pending = null;
+		route = null;
+		velocity.setZero();
+	}
+
+	/**
+	 * Decides the next step of the enemy toward the goal in the intent.
+	 *
+	 * The new position and angle are written to the intent, not to the enemy.
+	 * If the goal moved, the intent is marked to ask for a new path, which is done
+	 * by request() once the decision is applied.  This only changes the pilot, so
+	 * pilots for different enemies may plan in parallel.
+	 *
+	 * @param intent	The decision of the enemy so far
+	 * @param dt		Number of seconds since last animation frame
+	 */
+	public void plan(EnemyIntent intent, float dt) {
+		if (!targeted || !intent.goal.epsilonEquals(target.getPosition(), RETARGET_DISTANCE)) {
+			// Swim straight at the new goal until there is a path to it
+			targeted = true;
+			target.getPosition().set(intent.goal);
+			route = null;
+			pending = null;
+			intent.retarget = navigator != null && navigator.getGrid().contains(intent.goal);
+		}
+
+		SteeringBehavior<Vector2> behavior = route != null ? follow : arrive;
+		behavior.calculateSteering(steering);
+		velocity.mulAdd(steering.linear, dt).limit(maxLinearSpeed);
+
+		intent.position.mulAdd(velocity, dt);
+		if (!velocity.isZero(zeroLinearSpeedThreshold)) {
+			intent.angle = vectorToAngle(velocity);
+		}
+	}
+
+	/**
+	 * Asks the navigator for a path to the current goal.
+	 *
+	 * This must be called on the main thread.
+	 *
+	 * @param from	The start of the path (in physics units)
+	 */
+	public void request(Vector2 from) {
+		pending = navigator.request(this, from, target.getPosition());
+	}
+
+	/**
+	 * Receives a finished path from the navigator.
+	 *
+	 * Answers to requests that were replaced by a newer goal are ignored.
+	 *
+	 * @param msg	The message from the navigator
+	 *
+	 * @return true, since the message was handled
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean handleMessage(Telegram msg) {
+		PathFinderRequest<NavGrid.Cell> request = (PathFinderRequest<NavGrid.Cell>)msg.extraInfo;
+		if (request != pending) {
+			return true;
+		}
+		pending = null;
+		if (!request.pathFound) {
+			return true;
+		}
+
+		// Start where the fish is now, and end exactly on the goal
+		NavPath path = (NavPath)request.resultPath;
+		navigator.smooth(path);
+		waypoints.clear();
+		waypoints.add(enemy.getPosition().cpy());
+		for (int ii = 1; ii < path.getCount()-1; ii++) {
+			waypoints.add(path.getNodePosition(ii).cpy());
+		}
+		waypoints.add(target.getPosition().cpy());
+
+		route = new LinePath<Vector2>(waypoints, true);
+		if (follow == null) {
+			follow = new FollowPath<Vector2, LinePathParam>(this, route, PATH_OFFSET);
+			follow.setArrivalTolerance(ARRIVAL_TOLERANCE);
+			follow.setDecelerationRadius(DECELERATION_RADIUS);
+		} else {
+			follow.setPath(route);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if a path search for this enemy has not finished yet
+	 *
+	 * @return true if a path search for this enemy has not finished yet
+	 */
+	public boolean isWaiting() {
+		return pending != null;
+	}
+
+	public Vector2 getLinearVelocity() {
+		return velocity;
+	}
+
+	public float getAngularVelocity() {
+		return 0;
+	}
+
+	public float getBoundingRadius() {
+		return enemy.getWidth()/2;
+	}
+
+	public boolean isTagged() {
+		return tagged;
+	}
+
+	public void setTagged(boolean tagged) {
+		this.tagged = tagged;
+	}
+
+	public Vector2 getPosition() {
+		return enemy.getPosition();
+	}
+
+	public float getOrientation() {
+		return enemy.getAngle();
+	}
+
+	public void setOrientation(float orientation) {
+		enemy.setAngle(orientation);
+	}
+
+	public float vectorToAngle(Vector2 vector) {
+		return (float)Math.atan2(vector.y, vector.x);
+	}
+
+	public Vector2 angleToVector(Vector2 outVector, float angle) {
+		return outVector.set((float)Math.cos(angle), (float)Math.sin(angle));
+	}
+
+	public Location<Vector2> newLocation() {
+		return new SteeringPoint();
+	}
+
+	public float getZeroLinearSpeedThreshold() {
+		return zeroLinearSpeedThreshold;
+	}
+
+	public void setZeroLinearSpeedThreshold(float value) {
+		zeroLinearSpeedThreshold = value;
+	}
+
+	public float getMaxLinearSpeed() {
+		return maxLinearSpeed;
+	}
+
+	public void setMaxLinearSpeed(float maxLinearSpeed) {
+		this.maxLinearSpeed = maxLinearSpeed;
+	}
+
+	public float getMaxLinearAcceleration() {
+		return maxLinearAcceleration;
+	}
+
+	public void setMaxLinearAcceleration(float maxLinearAcceleration) {
+		this.maxLinearAcceleration = maxLinearAcceleration;
+	}
+
+	public float getMaxAngularSpeed() {
+		return maxAngularSpeed;
+	}
+
+	public void setMaxAngularSpeed(float maxAngularSpeed) {
+		this.maxAngularSpeed = maxAngularSpeed;
+	}
+
+	public float getMaxAngularAcceleration() {
+		return maxAngularAcceleration;
+	}
+
+	public void setMaxAngularAcceleration(float maxAngularAcceleration) {
+		this.maxAngularAcceleration = maxAngularAcceleration;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * LightHash.java
+ *
+ * Every tick, each enemy checks whether it is inside the light of a lantern.  It
+ * used to test the light circle of every lantern in the level, so the cost grew with
+ * enemies times lanterns.  This hash buckets the light circles on a coarse grid, so
+ * an enemy only tests the lights that overlap its own cell (usually none or one).
+ *
+ * The light of a lantern grows and shrinks as it is lit and goes out (see
+ * TetherModel.draw), so the hash is kept up to date by the LightSystem.  A light
+ * is only moved between cells when its circle changes, and a dark lantern (radius
+ * 0) is in no cells at all.
+ *
+ * The hash is only changed on the main thread.  Queries do not change it, so the
+ * enemies may query it in parallel (see PatrolSystem).
+ */
+package edu.cornell.gdiac.downstream.ai;
+
+import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.LongMap;
+import com.badlogic.gdx.utils.ObjectMap;
+
+import edu.cornell.gdiac.downstream.models.TetherModel;
+import edu.cornell.gdiac.util.Bag;
+
+/**
+ * Spatial hash of the lantern light circles.
+ */
+public class LightHash {
+	/** The width and height of a cell (in physics units) */
+	private static final float CELL_SIZE = 4.0f;
+
+	/** The cells covered by a light, and the circle they were found for */
+	private static class Span {
+		/** The circle when the light was last hashed */
+		Circle circle = new Circle();
+		/** The first column covered */
+		int x0;
+		/** The first row covered */
+		int y0;
+		/** The last column covered (less than x0 if the light is dark) */
+		int x1;
+		/** The last row covered */
+		int y1;
+	}
+
+	/** The lights overlapping each cell, by cell key */
+	private LongMap<Bag<TetherModel>> cells = new LongMap<Bag<TetherModel>>();
+	/** The cells covered by each light */
+	private ObjectMap<TetherModel, Span> spans = new ObjectMap<TetherModel, Span>();
+
+	/**
+	 * Rehashes a light if its circle has changed since the last update.
+	 *
+	 * A light seen for the first time is added to the hash.
+	 *
+	 * @param light	The lantern to update
+	 */
+	public void update(TetherModel light) {
+		Circle circle = light.lightCircle;
+		Span span = spans.get(light);
+		if (span == null) {
+			span = new Span();
+			span.x1 = span.x0-1;
+			spans.put(light, span);
+		} else if (span.circle.equals(circle)) {
+			return;
+		}
+
+		unhash(light, span);
+		span.circle.set(circle);
+		if (circle.radius > 0) {
+			span.x0 = cellOf(circle.x-circle.radius);
+			span.y0 = cellOf(circle.y-circle.radius);
+			span.x1 = cellOf(circle.x+circle.radius);
+			span.y1 = cellOf(circle.y+circle.radius);
+		} else {
+			span.x1 = span.x0-1;
+		}
+		for (int x = span.x0; x <= span.x1; x++) {
+			for (int y = span.y0; y <= span.y1; y++) {
+				long key = keyOf(x, y);
+				Bag<TetherModel> bucket = cells.get(key);
+				if (bucket == null) {
+					bucket = new Bag<TetherModel>(4);
+					cells.put(key, bucket);
+				}
+				bucket.add(light);
+			}
+		}
+	}
+
+	/**
+	 * Removes a light from the hash.
+	 *
+	 * @param light	The lantern to remove
+	 */
+	public void remove(TetherModel light) {
+		Span span = spans.remove(light);
+		if (span != null) {
+			unhash(light, span);
+		}
+	}
+
+	/**
+	 * Removes every light from the hash.
+	 */
+	public void clear() {
+		cells.clear();
+		spans.clear();
+	}
+
+	/**
+	 * Returns true if the point is inside the light of some lantern
+	 *
+	 * @param point	The point to test (in physics units)
+	 *
+	 * @return true if the point is inside the light of some lantern
+	 */
+	public boolean isLit(Vector2 point) {
+		Bag<TetherModel> bucket = cells.get(keyOf(cellOf(point.x), cellOf(point.y)));
+		if (bucket == null) {
+			return false;
+		}
+		for (int ii = 0; ii < bucket.size(); ii++) {
+			if (bucket.get(ii).lightCircle.contains(point)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes a light from the cells it was hashed to.
+	 *
+	 * Empty cells are kept, since lights tend to grow back into them.
+	 *
+	 * @param light	The lantern to remove
+	 * @param span	The cells the lantern was hashed to
+	 */
+	private void unhash(TetherModel light, Span span) {
+		for (int x = span.x0; x <= span.x1; x++) {
+			for (int y = span.y0; y <= span.y1; y++) {
+				Bag<TetherModel> bucket = cells.get(keyOf(x, y));
+				if (bucket != null) {
+					bucket.remove(light);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the cell row or column containing a coordinate
+	 *
+	 * @param value	The coordinate (in physics units)
+	 *
+	 * @return the cell row or column containing a coordinate
+	 */
+	private static int cellOf(float value) {
+		return (int)Math.floor(value/CELL_SIZE);
+	}
+
+	/**
+	 * Returns the key of a cell in the hash
+	 *
+	 * @param x	The cell column
+	 * @param y	The cell row
+	 *
+	 * @return the key of a cell in the hash
+	 */
+	private static long keyOf(int x, int y) {
+		return ((long)x << 32) | (y & 0xffffffffL);
+	}
+}
@@ -0,0 +1,429 @@
+/*
+ * NavGrid.java
+ *
+ * The enemies used to swim in a straight line to the next point of their patrol
+ * path, right over any land in the way.  This is a grid over the water of a level,
+ * for the gdx-ai path finders.  It is baked from the wall and shore polygons when
+ * the level is prepared, on the prefetcher thread, so it costs nothing at load.
+ *
+ * Cells are blocked if their center is on land, or within CLEARANCE cells of it,
+ * so the fish do not clip the shore.  Each open cell connects to its eight
+ * neighbors, except that a diagonal may not cut the corner of a blocked cell.
+ */
+package edu.cornell.gdiac.downstream.ai;
+
+import com.badlogic.gdx.ai.pfa.Connection;
+import com.badlogic.gdx.ai.pfa.Heuristic;
+import com.badlogic.gdx.ai.pfa.indexed.IndexedGraph;
+import com.badlogic.gdx.ai.utils.Collision;
+import com.badlogic.gdx.ai.utils.Ray;
+import com.badlogic.gdx.ai.utils.RaycastCollisionDetector;
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Navigation grid over the water of a level.
+ *
+ * The grid is immutable once it is baked, so it may be shared between threads.
+ */
+public class NavGrid implements IndexedGraph<NavGrid.Cell>, RaycastCollisionDetector<Vector2> {
+	/** The preferred width of a cell (in physics units) */
+	public static final float CELL_SIZE = 1.0f;
+	/** The largest number of cells in a grid; bigger levels get bigger cells */
+	public static final int MAX_CELLS = 1 << 18;
+	/** The number of cells kept clear around the land */
+	private static final int CLEARANCE = 1;
+	/** How far to look for an open cell near a point on land (in cells) */
+	private static final int SNAP_RADIUS = 4;
+
+	/** A cell of the grid */
+	public static class Cell {
+		/** The index of this cell in the grid */
+		public final int index;
+		/** The column of this cell */
+		public final int x;
+		/** The row of this cell */
+		public final int y;
+		/** Whether this cell is on (or too near) land */
+		private boolean blocked;
+		/** The connections to the open neighbors of this cell */
+		private Array<Connection<Cell>> links = new Array<Connection<Cell>>(8);
+
+		/**
+		 * Creates a new cell
+		 *
+		 * @param index	The index of this cell in the grid
+		 * @param x		The column of this cell
+		 * @param y		The row of this cell
+		 */
+		Cell(int index, int x, int y) {
+			this.index = index;
+			this.x = x;
+			this.y = y;
+		}
+
+		/**
+		 * Returns true if this cell is on (or too near) land
+		 *
+		 * @return true if this cell is on (or too near) land
+		 */
+		public boolean isBlocked() {
+			return blocked;
+		}
+	}
+
+	/** A connection between two neighboring cells */
+	private static class Link implements Connection<Cell> {
+		/** The cell this connection leaves */
+		private Cell from;
+		/** The cell this connection enters */
+		private Cell to;
+		/** The length of this connection (in cells) */
+		private float cost;
+
+		/**
+		 * Creates a new connection
+		 *
+		 * @param from	The cell this connection leaves
+		 * @param to	The cell this connection enters
+		 * @param cost	The length of this connection (in cells)
+		 */
+		Link(Cell from, Cell to, float cost) {
+			this.from = from;
+			this.to = to;
+			this.cost = cost;
+		}
+
+		public float getCost() {
+			return cost;
+		}
+
+		public Cell getFromNode() {
+			return from;
+		}
+
+		public Cell getToNode() {
+			return to;
+		}
+	}
+
+	/** Straight line distance between cells, which never overestimates */
+	public static final Heuristic<Cell> DISTANCE = new Heuristic<Cell>() {
+		public float estimate(Cell node, Cell endNode) {
+			float dx = endNode.x-node.x;
+			float dy = endNode.y-node.y;
+			return (float)Math.sqrt(dx*dx+dy*dy);
+		}
+	};
+
+	/** The cells of the grid, in row order */
+	private Cell[] cells;
+	/** The number of columns */
+	private int width;
+	/** The number of rows */
+	private int height;
+	/** The position of the bottom left corner of the grid */
+	private Vector2 origin;
+	/** The width of a cell (in physics units) */
+	private float size;
+
+	/**
+	 * Returns a navigation grid over the water between the given polygons.
+	 *
+	 * The grid covers the bounding box of the polygons.  If that would take more
+	 * than MAX_CELLS cells, the cells are made larger.
+	 *
+	 * @param walls		The wall polygons, as x,y pairs (in physics units)
+	 * @param shores	The shore polygons, as x,y pairs (in physics units)
+	 *
+	 * @return a navigation grid over the water between the given polygons
+	 */
+	public static NavGrid bake(float[][] walls, float[][] shores) {
+		Rectangle bounds = null;
+		Array<float[]> polygons = new Array<float[]>(walls.length+shores.length);
+		polygons.addAll(walls);
+		polygons.addAll(shores);
+		Rectangle[] boxes = new Rectangle[polygons.size];
+		for (int ii = 0; ii < polygons.size; ii++) {
+			boxes[ii] = boundsOf(polygons.get(ii));
+			bounds = bounds == null ? new Rectangle(boxes[ii]) : bounds.merge(boxes[ii]);
+		}
+		if (bounds == null) {
+			bounds = new Rectangle(0, 0, CELL_SIZE, CELL_SIZE);
+		}
+
+		float size = CELL_SIZE;
+		while ((bounds.width/size+1)*(bounds.height/size+1) > MAX_CELLS) {
+			size *= 2;
+		}
+		NavGrid grid = new NavGrid(bounds.x, bounds.y, (int)(bounds.width/size)+1, (int)(bounds.height/size)+1, size);
+
+		// Mark the cells whose centers are on land
+		boolean[] land = new boolean[grid.cells.length];
+		for (int ii = 0; ii < polygons.size; ii++) {
+			float[] polygon = polygons.get(ii);
+			Rectangle box = boxes[ii];
+			int x0 = Math.max(0, (int)((box.x-grid.origin.x)/size));
+			int y0 = Math.max(0, (int)((box.y-grid.origin.y)/size));
+			int x1 = Math.min(grid.width-1, (int)((box.x+box.width-grid.origin.x)/size));
+			int y1 = Math.min(grid.height-1, (int)((box.y+box.height-grid.origin.y)/size));
+			for (int y = y0; y <= y1; y++) {
+				float cy = grid.origin.y+(y+0.5f)*size;
+				for (int x = x0; x <= x1; x++) {
+					int index = y*grid.width+x;
+					if (!land[index] && Intersector.isPointInPolygon(polygon, 0, polygon.length, grid.origin.x+(x+0.5f)*size, cy)) {
+						land[index] = true;
+					}
+				}
+			}
+		}
+
+		// Block the land and the cells next to it
+		for (int y = 0; y < grid.height; y++) {
+			for (int x = 0; x < grid.width; x++) {
+				if (!land[y*grid.width+x]) {
+					continue;
+				}
+				for (int dy = -CLEARANCE; dy <= CLEARANCE; dy++) {
+					for (int dx = -CLEARANCE; dx <= CLEARANCE; dx++) {
+						Cell cell = grid.getCell(x+dx, y+dy);
+						if (cell != null) {
+							cell.blocked = true;
+						}
+					}
+				}
+			}
+		}
+		grid.link();
+		return grid;
+	}
+
+	/**
+	 * Returns the bounding box of a polygon
+	 *
+	 * @param polygon	The polygon, as x,y pairs
+	 *
+	 * @return the bounding box of a polygon
+	 */
+	private static Rectangle boundsOf(float[] polygon) {
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		for (int ii = 0; ii < polygon.length; ii += 2) {
+			minX = Math.min(minX, polygon[ii]);
+			maxX = Math.max(maxX, polygon[ii]);
+			minY = Math.min(minY, polygon[ii+1]);
+			maxY = Math.max(maxY, polygon[ii+1]);
+		}
+		return new Rectangle(minX, minY, maxX-minX, maxY-minY);
+	}
+
+	/**
+	 * Creates a new grid with every cell open and unconnected.
+	 *
+	 * @param x			The left edge of the grid
+	 * @param y			The bottom edge of the grid
+	 * @param width		The number of columns
+	 * @param height	The number of rows
+	 * @param size		The width of a cell
+	 */
+	private NavGrid(float x, float y, int width, int height, float size) {
+		this.origin = new Vector2(x, y);
+		this.width = width;
+		this.height = height;
+		this.size = size;
+		cells = new Cell[width*height];
+		for (int row = 0; row < height; row++) {
+			for (int col = 0; col < width; col++) {
+				int index = row*width+col;
+				cells[index] = new Cell(index, col, row);
+			}
+		}
+	}
+
+	/**
+	 * Connects every open cell to its open neighbors.
+	 */
+	private void link() {
+		float diagonal = (float)Math.sqrt(2);
+		for (Cell cell : cells) {
+			if (cell.blocked) {
+				continue;
+			}
+			for (int dy = -1; dy <= 1; dy++) {
+				for (int dx = -1; dx <= 1; dx++) {
+					if (dx == 0 && dy == 0 || !isOpen(cell.x+dx, cell.y+dy)) {
+						continue;
+					}
+					if (dx != 0 && dy != 0) {
+						// No cutting corners
+						if (isOpen(cell.x+dx, cell.y) && isOpen(cell.x, cell.y+dy)) {
+							cell.links.add(new Link(cell, getCell(cell.x+dx, cell.y+dy), diagonal));
+						}
+					} else {
+						cell.links.add(new Link(cell, getCell(cell.x+dx, cell.y+dy), 1));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the cell at the given column and row, or null if it is off the grid
+	 *
+	 * @param x	The column
+	 * @param y	The row
+	 *
+	 * @return the cell at the given column and row
+	 */
+	public Cell getCell(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height) {
+			return null;
+		}
+		return cells[y*width+x];
+	}
+
+	/**
+	 * Returns true if the cell at the given column and row is on the grid and open
+	 *
+	 * @param x	The column
+	 * @param y	The row
+	 *
+	 * @return true if the cell at the given column and row is open
+	 */
+	private boolean isOpen(int x, int y) {
+		Cell cell = getCell(x, y);
+		return cell != null && !cell.blocked;
+	}
+
+	/**
+	 * Returns true if the given position is on the grid
+	 *
+	 * @param position	The position (in physics units)
+	 *
+	 * @return true if the given position is on the grid
+	 */
+	public boolean contains(Vector2 position) {
+		return position.x >= origin.x && position.y >= origin.y &&
+				position.x < origin.x+width*size && position.y < origin.y+height*size;
+	}
+
+	/**
+	 * Returns the open cell nearest to a position, or null if there is none close
+	 *
+	 * Positions on land (or just off the grid) snap to an open cell within a few
+	 * cells, which is usually the one the designer meant.
+	 *
+	 * @param position	The position (in physics units)
+	 *
+	 * @return the open cell nearest to a position
+	 */
+	public Cell findCell(Vector2 position) {
+		int x = (int)Math.floor((position.x-origin.x)/size);
+		int y = (int)Math.floor((position.y-origin.y)/size);
+		if (isOpen(x, y)) {
+			return getCell(x, y);
+		}
+		Cell best = null;
+		int bestDistance = Integer.MAX_VALUE;
+		for (int dy = -SNAP_RADIUS; dy <= SNAP_RADIUS; dy++) {
+			for (int dx = -SNAP_RADIUS; dx <= SNAP_RADIUS; dx++) {
+				int distance = dx*dx+dy*dy;
+				if (distance < bestDistance && isOpen(x+dx, y+dy)) {
+					best = getCell(x+dx, y+dy);
+					bestDistance = distance;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the center of a cell (in physics units)
+	 *
+	 * @param cell	The cell
+	 * @param out	The vector to store the result
+	 *
+	 * @return the center of a cell, in out
+	 */
+	public Vector2 getCenter(Cell cell, Vector2 out) {
+		return out.set(origin.x+(cell.x+0.5f)*size, origin.y+(cell.y+0.5f)*size);
+	}
+
+	/**
+	 * Returns the width of a cell (in physics units)
+	 *
+	 * @return the width of a cell
+	 */
+	public float getCellSize() {
+		return size;
+	}
+
+	public int getIndex(Cell node) {
+		return node.index;
+	}
+
+	public int getNodeCount() {
+		return cells.length;
+	}
+
+	public Array<Connection<Cell>> getConnections(Cell fromNode) {
+		return fromNode.links;
+	}
+
+	/**
+	 * Returns true if the segment crosses a blocked cell
+	 *
+	 * @param ray	The segment (in physics units)
+	 *
+	 * @return true if the segment crosses a blocked cell
+	 */
+	public boolean collides(Ray<Vector2> ray) {
+		return findHit(ray) >= 0;
+	}
+
+	/**
+	 * Returns true if the segment crosses a blocked cell, storing the first one hit
+	 *
+	 * The collision point is the sample that hit, and the normal points back along
+	 * the segment.
+	 *
+	 * @param collision	The collision to store the result
+	 * @param ray		The segment (in physics units)
+	 *
+	 * @return true if the segment crosses a blocked cell
+	 */
+	public boolean findCollision(Collision<Vector2> collision, Ray<Vector2> ray) {
+		float t = findHit(ray);
+		if (t < 0) {
+			return false;
+		}
+		collision.point.set(ray.start).lerp(ray.end, t);
+		collision.normal.set(ray.start).sub(ray.end).nor();
+		return true;
+	}
+
+	/**
+	 * Returns how far along the segment it first hits a blocked cell, or -1
+	 *
+	 * The segment is sampled every half cell, which is enough for smoothing paths
+	 * that already run through open cells.
+	 *
+	 * @param ray	The segment (in physics units)
+	 *
+	 * @return the fraction of the segment before the first hit, or -1 if none
+	 */
+	private float findHit(Ray<Vector2> ray) {
+		int steps = (int)Math.ceil(2*ray.start.dst(ray.end)/size);
+		for (int ii = 0; ii <= steps; ii++) {
+			float t = steps == 0 ? 0 : ii/(float)steps;
+			float px = ray.start.x+(ray.end.x-ray.start.x)*t;
+			float py = ray.start.y+(ray.end.y-ray.start.y)*t;
+			if (!isOpen((int)Math.floor((px-origin.x)/size), (int)Math.floor((py-origin.y)/size))) {
+				return t;
+			}
+		}
+		return -1;
+	}
+}
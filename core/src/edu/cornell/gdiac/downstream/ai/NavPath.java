@@ -0,0 +1,52 @@
+/*
+ * NavPath.java
+ *
+ * A path of grid cells that the gdx-ai PathSmoother can shorten.  The smoother
+ * drops every cell that can be skipped with a straight line over open water, so
+ * the fish swim in long straight legs instead of stepping from cell to cell.
+ */
+package edu.cornell.gdiac.downstream.ai;
+
+import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
+import com.badlogic.gdx.ai.pfa.SmoothableGraphPath;
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Path through a navigation grid.
+ */
+public class NavPath extends DefaultGraphPath<NavGrid.Cell> implements SmoothableGraphPath<NavGrid.Cell, Vector2> {
+	/** The grid the path runs through */
+	private NavGrid grid;
+	/** Cache for the position of a cell */
+	private Vector2 position = new Vector2();
+
+	/**
+	 * Creates a new, empty path
+	 *
+	 * @param grid	The grid the path runs through
+	 */
+	public NavPath(NavGrid grid) {
+		this.grid = grid;
+	}
+
+	/**
+	 * Returns the center of the cell at the given index.
+	 *
+	 * This returns the same vector each time it is called.
+	 *
+	 * @param index	The index of the cell in the path
+	 *
+	 * @return the center of the cell at the given index
+	 */
+	public Vector2 getNodePosition(int index) {
+		return grid.getCenter(nodes.get(index), position);
+	}
+
+	public void swapNodes(int index1, int index2) {
+		nodes.set(index1, nodes.get(index2));
+	}
+
+	public void truncatePath(int newLength) {
+		nodes.truncate(newLength);
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Navigator.java
+ *
+ * Finds paths through the navigation grid for the enemies.  A single A* search on
+ * a big level can take longer than a frame, and a reload can ask for hundreds of
+ * them at once.  So requests go into a gdx-ai PathFinderQueue, and the controller
+ * gives the queue a fixed slice of time each frame.  Searches that do not finish
+ * are picked up where they left off in the next frame.
+ *
+ * The answer is sent back to the enemy as a message, through a dispatcher owned
+ * by the navigator (not the global MessageManager), so that a navigator for an
+ * old level cannot deliver paths into a new one.
+ */
+package edu.cornell.gdiac.downstream.ai;
+
+import com.badlogic.gdx.ai.msg.MessageDispatcher;
+import com.badlogic.gdx.ai.msg.Telegraph;
+import com.badlogic.gdx.ai.pfa.PathFinderQueue;
+import com.badlogic.gdx.ai.pfa.PathFinderRequest;
+import com.badlogic.gdx.ai.pfa.PathSmoother;
+import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Time-sliced path finding over a navigation grid.
+ */
+public class Navigator {
+	/** Message code for a new path request (sent to the queue) */
+	public static final int PATH_REQUEST = 1;
+	/** Message code for a finished path request (sent to the client) */
+	public static final int PATH_RESPONSE = 2;
+
+	/** The grid to search */
+	private NavGrid grid;
+	/** The queue of searches in progress */
+	private PathFinderQueue<NavGrid.Cell> queue;
+	/** Removes the unneeded cells from a finished path */
+	private PathSmoother<NavGrid.Cell, Vector2> smoother;
+	/** Delivers the requests and the answers */
+	private MessageDispatcher dispatcher;
+
+	/**
+	 * Creates a new navigator for the given grid
+	 *
+	 * @param grid	The grid to search
+	 */
+	public Navigator(NavGrid grid) {
+		this.grid = grid;
+		queue = new PathFinderQueue<NavGrid.Cell>(new IndexedAStarPathFinder<NavGrid.Cell>(grid));
+		smoother = new PathSmoother<NavGrid.Cell, Vector2>(grid);
+		dispatcher = new MessageDispatcher();
+	}
+
+	/**
+	 * Returns the grid this navigator searches
+	 *
+	 * @return the grid this navigator searches
+	 */
+	public NavGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * Returns the number of requests waiting for a path
+	 *
+	 * This does not count the search in progress, if any.
+	 *
+	 * @return the number of requests waiting for a path
+	 */
+	public int getPending() {
+		return queue.size();
+	}
+
+	/**
+	 * Queues a search for a path, returning the request (or null if there is no
+	 * open water near either end).
+	 *
+	 * When the search finishes, the client gets a PATH_RESPONSE message with the
+	 * request as its extra info.  The path is a NavPath, not yet smoothed.
+	 *
+	 * @param client	The object to send the answer to
+	 * @param from		The start of the path (in physics units)
+	 * @param to		The end of the path (in physics units)
+	 *
+	 * @return the request, or null if no path can be searched for
+	 */
+	public PathFinderRequest<NavGrid.Cell> request(Telegraph client, Vector2 from, Vector2 to) {
+		NavGrid.Cell start = grid.findCell(from);
+		NavGrid.Cell end = grid.findCell(to);
+		if (start == null || end == null) {
+			return null;
+		}
+		PathFinderRequest<NavGrid.Cell> request = new PathFinderRequest<NavGrid.Cell>(
+				start, end, NavGrid.DISTANCE, new NavPath(grid), dispatcher);
+		request.responseMessageCode = PATH_RESPONSE;
+		dispatcher.dispatchMessage(client, queue, PATH_REQUEST, request);
+		return request;
+	}
+
+	/**
+	 * Removes every cell from a path that can be skipped in a straight line
+	 *
+	 * @param path	The path to smooth
+	 *
+	 * @return the number of cells removed
+	 */
+	public int smooth(NavPath path) {
+		return smoother.smoothPath(path);
+	}
+
+	/**
+	 * Works on the queued searches for at most the given time.
+	 *
+	 * @param nanos	The time budget (in nanoseconds)
+	 */
+	public void run(long nanos) {
+		queue.run(nanos);
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * SteeringPoint.java
+ *
+ * The gdx-ai steering behaviors aim at a Location, which is an interface.  This
+ * is the simplest one: a point in the water.
+ */
+package edu.cornell.gdiac.downstream.ai;
+
+import com.badlogic.gdx.ai.utils.Location;
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * A point target for the steering behaviors.
+ */
+public class SteeringPoint implements Location<Vector2> {
+	/** The position of the point */
+	private Vector2 position = new Vector2();
+	/** The orientation of the point (in radians) */
+	private float orientation;
+
+	public Vector2 getPosition() {
+		return position;
+	}
+
+	public float getOrientation() {
+		return orientation;
+	}
+
+	public void setOrientation(float orientation) {
+		this.orientation = orientation;
+	}
+
+	public float vectorToAngle(Vector2 vector) {
+		return (float)Math.atan2(vector.y, vector.x);
+	}
+
+	public Vector2 angleToVector(Vector2 outVector, float angle) {
+		return outVector.set((float)Math.cos(angle), (float)Math.sin(angle));
+	}
+
+	public Location<Vector2> newLocation() {
+		return new SteeringPoint();
+	}
+}
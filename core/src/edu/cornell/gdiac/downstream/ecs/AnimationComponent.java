@@ -0,0 +1,29 @@
+/*
+ * AnimationComponent.java
+ *
+ * A looping animation played on the shared level clock.  Every lilypad (and
+ * every enemy) shows the same frame at the same time, as it always has.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Component for the animation of an entity.
+ */
+public class AnimationComponent implements Component, Pool.Poolable {
+	/** The animation to play */
+	public Animation animation;
+	/** Whether the animation loops */
+	public boolean looping = true;
+
+	/**
+	 * Clears the component for reuse.
+	 */
+	public void reset() {
+		animation = null;
+		looping = true;
+	}
+}
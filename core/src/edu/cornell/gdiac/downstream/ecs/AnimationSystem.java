@@ -0,0 +1,63 @@
+/*
+ * AnimationSystem.java
+ *
+ * Sets the current frame of every animated entity.  All animations run on the
+ * level clock, so the controller sets the time before updating.  The texture of
+ * the obstacle is only replaced when the frame actually changes.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+/**
+ * System advancing the animation of each entity.
+ */
+public class AnimationSystem extends IteratingSystem {
+	/** The time on the level clock */
+	private float time;
+
+	/**
+	 * Creates a new animation system
+	 */
+	@SuppressWarnings("unchecked")
+	public AnimationSystem() {
+		super(Family.all(AnimationComponent.class, SpriteComponent.class, BodyComponent.class).get());
+	}
+
+	/**
+	 * Returns the time on the level clock
+	 *
+	 * @return the time on the level clock
+	 */
+	public float getTime() {
+		return time;
+	}
+
+	/**
+	 * Sets the time on the level clock
+	 *
+	 * @param value	the time on the level clock
+	 */
+	public void setTime(float value) {
+		time = value;
+	}
+
+	/**
+	 * Sets the current frame of a single entity.
+	 *
+	 * @param entity	The entity to update
+	 * @param dt		Number of seconds since last animation frame
+	 */
+	protected void processEntity(Entity entity, float dt) {
+		AnimationComponent animation = Mappers.animation.get(entity);
+		SpriteComponent sprite = Mappers.sprite.get(entity);
+		TextureRegion frame = animation.animation.getKeyFrame(time, animation.looping);
+		if (frame != sprite.region) {
+			sprite.region = frame;
+			Mappers.body.get(entity).obstacle.setTexture(frame);
+		}
+	}
+}
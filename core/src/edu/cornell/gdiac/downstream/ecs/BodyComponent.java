@@ -0,0 +1,27 @@
+/*
+ * BodyComponent.java
+ *
+ * Links an entity to the physics obstacle that owns its Box2D body.  The obstacle
+ * still does the physics and the drawing; the entity is how the systems find it.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.utils.Pool;
+
+import edu.cornell.gdiac.downstream.obstacle.SimpleObstacle;
+
+/**
+ * Component for the physics obstacle of an entity.
+ */
+public class BodyComponent implements Component, Pool.Poolable {
+	/** The obstacle owning the body */
+	public SimpleObstacle obstacle;
+
+	/**
+	 * Clears the component for reuse.
+	 */
+	public void reset() {
+		obstacle = null;
+	}
+}
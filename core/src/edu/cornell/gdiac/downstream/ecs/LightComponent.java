@@ -0,0 +1,27 @@
+/*
+ * LightComponent.java
+ *
+ * Marks an entity as a lantern that lights up when the koi orbits it.  The game
+ * state of the lantern still lives in the TetherModel.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.utils.Pool;
+
+import edu.cornell.gdiac.downstream.models.TetherModel;
+
+/**
+ * Component for a lantern that lights up when the koi orbits it.
+ */
+public class LightComponent implements Component, Pool.Poolable {
+	/** The model of the lantern */
+	public TetherModel lantern;
+
+	/**
+	 * Clears the component for reuse.
+	 */
+	public void reset() {
+		lantern = null;
+	}
+}
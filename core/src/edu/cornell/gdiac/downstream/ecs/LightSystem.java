@@ -0,0 +1,132 @@
+/*
+ * LightSystem.java
+ *
+ * Keeps the stack of lit lanterns up to date.  The most recently lit lantern is
+ * the checkpoint, so a lantern is pushed when it lights and removed when it goes
+ * out.
+ *
+ * It also keeps the LightHash up to date, so enemies can find the lights near
+ * them.  A lantern leaves the hash when its entity leaves the engine.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import java.util.Stack;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntityListener;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.systems.IteratingSystem;
+
+import edu.cornell.gdiac.downstream.ai.LightHash;
+import edu.cornell.gdiac.downstream.models.TetherModel;
+
+/**
+ * System tracking which lanterns are lit.
+ */
+public class LightSystem extends IteratingSystem implements EntityListener {
+	/** The lit lanterns, most recent on top (owned by the controller) */
+	private Stack<TetherModel> litlanterns;
+	/** The light circles of the lanterns, for the enemies to query */
+	private LightHash lights = new LightHash();
+	/** The number of lanterns lit in the last update */
+	private int newlyLit;
+
+	/**
+	 * Creates a new light system
+	 *
+	 * @param litlanterns	The stack of lit lanterns
+	 */
+	@SuppressWarnings("unchecked")
+	public LightSystem(Stack<TetherModel> litlanterns) {
+		super(Family.all(LightComponent.class).get());
+		this.litlanterns = litlanterns;
+	}
+
+	/**
+	 * Returns the light circles of the lanterns, as of the last update
+	 *
+	 * @return the light circles of the lanterns
+	 */
+	public LightHash getLights() {
+		return lights;
+	}
+
+	/**
+	 * Returns the number of lanterns lit in the last update
+	 *
+	 * The controller plays the lighting sound once for each of them.
+	 *
+	 * @return the number of lanterns lit in the last update
+	 */
+	public int getNewlyLit() {
+		return newlyLit;
+	}
+
+	/**
+	 * Updates the stack of lit lanterns.
+	 *
+	 * @param dt	Number of seconds since last animation frame
+	 */
+	public void update(float dt) {
+		newlyLit = 0;
+		super.update(dt);
+	}
+
+	/**
+	 * Updates a single lantern.
+	 *
+	 * @param entity	The entity to update
+	 * @param dt		Number of seconds since last animation frame
+	 */
+	protected void processEntity(Entity entity, float dt) {
+		TetherModel t = Mappers.light.get(entity).lantern;
+		lights.update(t);
+		if (t.lit) {
+			if (!litlanterns.contains(t)) {
+				litlanterns.push(t);
+				newlyLit++;
+			}
+		} else {
+			litlanterns.remove(t);
+		}
+	}
+
+	/**
+	 * Starts listening for lanterns leaving the engine.
+	 *
+	 * @param engine	The engine this system was added to
+	 */
+	public void addedToEngine(Engine engine) {
+		super.addedToEngine(engine);
+		engine.addEntityListener(getFamily(), this);
+	}
+
+	/**
+	 * Stops listening for lanterns, and empties the hash.
+	 *
+	 * @param engine	The engine this system was removed from
+	 */
+	public void removedFromEngine(Engine engine) {
+		super.removedFromEngine(engine);
+		engine.removeEntityListener(this);
+		lights.clear();
+	}
+
+	/**
+	 * Does nothing; the lantern is hashed on the next update.
+	 *
+	 * @param entity	The lantern added
+	 */
+	public void entityAdded(Entity entity) {
+	}
+
+	/**
+	 * Removes a lantern from the hash.
+	 *
+	 * @param entity	The lantern removed
+	 */
+	public void entityRemoved(Entity entity) {
+		lights.remove(Mappers.light.get(entity).lantern);
+	}
+}
@@ -0,0 +1,29 @@
+/*
+ * Mappers.java
+ *
+ * ComponentMappers are the fast way to get a component from an entity in Ashley.
+ * There is one per component type, so we keep them all here.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import com.badlogic.ashley.core.ComponentMapper;
+
+/**
+ * Static class holding the component mappers for every component.
+ */
+public class Mappers {
+	/** Mapper for the physics obstacle */
+	public static final ComponentMapper<BodyComponent> body = ComponentMapper.getFor(BodyComponent.class);
+	/** Mapper for the position and angle */
+	public static final ComponentMapper<TransformComponent> transform = ComponentMapper.getFor(TransformComponent.class);
+	/** Mapper for the current texture */
+	public static final ComponentMapper<SpriteComponent> sprite = ComponentMapper.getFor(SpriteComponent.class);
+	/** Mapper for the animation */
+	public static final ComponentMapper<AnimationComponent> animation = ComponentMapper.getFor(AnimationComponent.class);
+	/** Mapper for the tether model */
+	public static final ComponentMapper<TetherComponent> tether = ComponentMapper.getFor(TetherComponent.class);
+	/** Mapper for the lantern model */
+	public static final ComponentMapper<LightComponent> light = ComponentMapper.getFor(LightComponent.class);
+	/** Mapper for the enemy model */
+	public static final ComponentMapper<PatrolComponent> patrol = ComponentMapper.getFor(PatrolComponent.class);
+}
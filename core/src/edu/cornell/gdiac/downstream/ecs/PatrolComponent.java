@@ -0,0 +1,27 @@
+/*
+ * PatrolComponent.java
+ *
+ * Marks an entity as an enemy fish that patrols its path and flees the light.  The game
+ * state of the enemy still lives in the EnemyModel.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.utils.Pool;
+
+import edu.cornell.gdiac.downstream.models.EnemyModel;
+
+/**
+ * Component for an enemy fish that patrols its path and flees the light.
+ */
+public class PatrolComponent implements Component, Pool.Poolable {
+	/** The model of the enemy */
+	public EnemyModel enemy;
+
+	/**
+	 * Clears the component for reuse.
+	 */
+	public void reset() {
+		enemy = null;
+	}
+}
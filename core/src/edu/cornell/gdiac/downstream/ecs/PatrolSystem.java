@@ -0,0 +1,229 @@
+/*
+ * PatrolSystem.java
+ *
+ * Moves the enemy fish.  Each one follows its patrol path (steering around the
+ * land), and flees any lit lantern.  A fish that has fled stops colliding while it
+ * fades, and once it has faded out it is marked removed, so the next sweep in
+ * postUpdate destroys its body.  The controller then drops it from the level.
+ *
+ * The update has two phases.  First every fish decides what to do, writing the
+ * result to its EnemyIntent.  A fish only reads itself and the lights when it
+ * decides, so with enough fish the decisions are split across a thread pool.  Then
+ * the intents are applied to the fish one at a time, in entity order, on the main
+ * thread.  Nothing a fish decides depends on another fish, so the result is the
+ * same as deciding and applying each fish in turn.
+ *
+ * We build for Java 6, so this uses a plain ExecutorService instead of fork/join.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import edu.cornell.gdiac.downstream.ai.LightHash;
+import edu.cornell.gdiac.downstream.models.EnemyIntent;
+import edu.cornell.gdiac.downstream.models.EnemyModel;
+
+/**
+ * System running the patrol AI of each enemy.
+ */
+public class PatrolSystem extends IteratingSystem {
+	/** The fewest enemies worth splitting across threads */
+	private static final int PARALLEL_THRESHOLD = 256;
+
+	/** The lantern lights the enemies flee (owned by the LightSystem) */
+	private LightHash lights;
+	/** The decision of each enemy, by entity index */
+	private Array<EnemyIntent> intents = new Array<EnemyIntent>();
+	/** The worker threads (or null if there is only one core) */
+	private ExecutorService executor;
+	/** The number of slices to split the enemies into (one per thread) */
+	private int slices;
+	/** The tasks deciding each slice */
+	private ArrayList<Slice> tasks = new ArrayList<Slice>();
+	/** Whether to split the decisions across threads */
+	private boolean parallel = true;
+	/** The enemies that faded out in the last update */
+	private Array<EnemyModel> despawned = new Array<EnemyModel>();
+
+	/** A task deciding a contiguous slice of the enemies */
+	private class Slice implements Callable<Void> {
+		/** The first enemy of the slice */
+		int begin;
+		/** One past the last enemy of the slice */
+		int end;
+		/** The length of the tick */
+		float dt;
+
+		public Void call() {
+			decide(begin, end, dt);
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a new patrol system
+	 *
+	 * @param lights	The lantern lights the enemies flee
+	 */
+	@SuppressWarnings("unchecked")
+	public PatrolSystem(LightHash lights) {
+		super(Family.all(PatrolComponent.class, BodyComponent.class).get());
+		this.lights = lights;
+
+		// The main thread takes a slice too
+		slices = Runtime.getRuntime().availableProcessors();
+		if (slices > 1) {
+			executor = Executors.newFixedThreadPool(slices-1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "PatrolSystem");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Returns true if the decisions are split across threads
+	 *
+	 * Even when this is true, small levels are decided on the main thread.
+	 *
+	 * @return true if the decisions are split across threads
+	 */
+	public boolean isParallel() {
+		return parallel && executor != null;
+	}
+
+	/**
+	 * Sets whether to split the decisions across threads
+	 *
+	 * @param value	whether to split the decisions across threads
+	 */
+	public void setParallel(boolean value) {
+		parallel = value;
+	}
+
+	/**
+	 * Returns the enemies that faded out in the last update
+	 *
+	 * These are marked removed, but are still in the engine.  The controller
+	 * should remove them before the next update.
+	 *
+	 * @return the enemies that faded out in the last update
+	 */
+	public Array<EnemyModel> getDespawned() {
+		return despawned;
+	}
+
+	/**
+	 * Moves every enemy.
+	 *
+	 * @param dt	Number of seconds since last animation frame
+	 */
+	public void update(float dt) {
+		despawned.clear();
+		ImmutableArray<Entity> entities = getEntities();
+		int count = entities.size();
+		if (!isParallel() || count < PARALLEL_THRESHOLD) {
+			super.update(dt);
+			return;
+		}
+
+		while (intents.size < count) {
+			intents.add(new EnemyIntent());
+		}
+		while (tasks.size() < slices-1) {
+			tasks.add(new Slice());
+		}
+		int size = (count+slices-1)/slices;
+		try {
+			ArrayList<Future<Void>> results = new ArrayList<Future<Void>>(slices-1);
+			for (int ii = 0; ii < slices-1; ii++) {
+				Slice task = tasks.get(ii);
+				task.begin = Math.min(count, (ii+1)*size);
+				task.end = Math.min(count, (ii+2)*size);
+				task.dt = dt;
+				results.add(executor.submit(task));
+			}
+			decide(0, Math.min(count, size), dt);
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GdxRuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new GdxRuntimeException(e.getCause());
+		}
+
+		for (int ii = 0; ii < count; ii++) {
+			apply(entities.get(ii), intents.get(ii));
+		}
+	}
+
+	/**
+	 * Decides the moves of a range of enemies.
+	 *
+	 * @param begin	The first enemy
+	 * @param end	One past the last enemy
+	 * @param dt	Number of seconds since last animation frame
+	 */
+	private void decide(int begin, int end, float dt) {
+		ImmutableArray<Entity> entities = getEntities();
+		for (int ii = begin; ii < end; ii++) {
+			Mappers.patrol.get(entities.get(ii)).enemy.decide(intents.get(ii), lights, dt);
+		}
+	}
+
+	/**
+	 * Moves a single enemy.
+	 *
+	 * @param entity	The entity to update
+	 * @param dt		Number of seconds since last animation frame
+	 */
+	protected void processEntity(Entity entity, float dt) {
+		if (intents.size == 0) {
+			intents.add(new EnemyIntent());
+		}
+		EnemyIntent intent = intents.first();
+		Mappers.patrol.get(entity).enemy.decide(intent, lights, dt);
+		apply(entity, intent);
+	}
+
+	/**
+	 * Applies the decision of a single enemy.
+	 *
+	 * @param entity	The entity to update
+	 * @param intent	The decision of the enemy
+	 */
+	private void apply(Entity entity, EnemyIntent intent) {
+		EnemyModel enemy = Mappers.patrol.get(entity).enemy;
+		enemy.apply(intent);
+		if (enemy.dead && !enemy.isRemoved()) {
+			if (enemy.isFaded()) {
+				enemy.markRemoved(true);
+				despawned.add(enemy);
+			} else if (enemy.isActive()) {
+				enemy.setActive(false);
+			}
+		}
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	public void dispose() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+}
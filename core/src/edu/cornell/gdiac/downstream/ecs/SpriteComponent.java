@@ -0,0 +1,28 @@
+/*
+ * SpriteComponent.java
+ *
+ * The texture region an entity is currently drawn with.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Component for the current texture of an entity.
+ *
+ * The AnimationSystem only pushes a new frame to the obstacle when it differs
+ * from this region.
+ */
+public class SpriteComponent implements Component, Pool.Poolable {
+	/** The region the entity is drawn with */
+	public TextureRegion region;
+
+	/**
+	 * Clears the component for reuse.
+	 */
+	public void reset() {
+		region = null;
+	}
+}
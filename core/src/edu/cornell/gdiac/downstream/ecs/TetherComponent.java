@@ -0,0 +1,27 @@
+/*
+ * TetherComponent.java
+ *
+ * Marks an entity as a tether (lilypad or lantern) the koi can orbit.  The game
+ * state of the tether still lives in the TetherModel.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.utils.Pool;
+
+import edu.cornell.gdiac.downstream.models.TetherModel;
+
+/**
+ * Component for a tether (lilypad or lantern) the koi can orbit.
+ */
+public class TetherComponent implements Component, Pool.Poolable {
+	/** The model of the tether */
+	public TetherModel tether;
+
+	/**
+	 * Clears the component for reuse.
+	 */
+	public void reset() {
+		tether = null;
+	}
+}
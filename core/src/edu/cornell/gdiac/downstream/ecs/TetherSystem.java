@@ -0,0 +1,88 @@
+/*
+ * TetherSystem.java
+ *
+ * Finds the tether closest to the koi, and marks which tether the koi can
+ * currently orbit.  The search reads the TransformComponents, which sit together
+ * in the entity list, rather than asking each body for its position.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.math.Vector2;
+
+import edu.cornell.gdiac.downstream.CollisionController;
+import edu.cornell.gdiac.downstream.models.TetherModel;
+
+/**
+ * System for the tethers the koi can orbit.
+ */
+public class TetherSystem extends IteratingSystem {
+	/** The collision controller tracking the tethers in range */
+	private CollisionController collisions;
+	/** The tether closest to the koi */
+	private TetherModel closest;
+
+	/**
+	 * Creates a new tether system
+	 */
+	@SuppressWarnings("unchecked")
+	public TetherSystem() {
+		super(Family.all(TetherComponent.class, TransformComponent.class).get());
+	}
+
+	/**
+	 * Sets the collision controller tracking the tethers in range
+	 *
+	 * @param value	the collision controller for this level
+	 */
+	public void setCollisions(CollisionController value) {
+		collisions = value;
+	}
+
+	/**
+	 * Sets the tether closest to the koi
+	 *
+	 * @param value	the tether closest to the koi
+	 */
+	public void setClosest(TetherModel value) {
+		closest = value;
+	}
+
+	/**
+	 * Returns the tether closest to the given position, or null if there are none.
+	 *
+	 * Ties go to the tether added first.
+	 *
+	 * @param v	The position (in physics units)
+	 *
+	 * @return the tether closest to the given position
+	 */
+	public TetherModel findClosest(Vector2 v) {
+		ImmutableArray<Entity> entities = getEntities();
+		TetherModel closestTether = null;
+		float closestDistance = Float.MAX_VALUE;
+		for (int ii = 0; ii < entities.size(); ii++) {
+			Entity entity = entities.get(ii);
+			float newDistance = Mappers.transform.get(entity).position.dst2(v);
+			if (newDistance < closestDistance) {
+				closestDistance = newDistance;
+				closestTether = Mappers.tether.get(entity).tether;
+			}
+		}
+		return closestTether;
+	}
+
+	/**
+	 * Marks whether a single tether is the one in range.
+	 *
+	 * @param entity	The entity to update
+	 * @param dt		Number of seconds since last animation frame
+	 */
+	protected void processEntity(Entity entity, float dt) {
+		TetherModel tether = Mappers.tether.get(entity).tether;
+		tether.inrange = tether == closest && collisions.inRangeOf(tether);
+	}
+}
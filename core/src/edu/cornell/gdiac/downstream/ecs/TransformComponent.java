@@ -0,0 +1,31 @@
+/*
+ * TransformComponent.java
+ *
+ * The position and angle of an entity as of the start of the tick.  Systems read
+ * these plain fields instead of calling the getters on the obstacle.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Component for the position and angle of an entity (in physics units).
+ *
+ * This is filled in by the TransformSystem from the body of the entity.
+ */
+public class TransformComponent implements Component, Pool.Poolable {
+	/** The position of the entity */
+	public final Vector2 position = new Vector2();
+	/** The angle of the entity (in radians) */
+	public float angle;
+
+	/**
+	 * Clears the component for reuse.
+	 */
+	public void reset() {
+		position.setZero();
+		angle = 0;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * TransformSystem.java
+ *
+ * Copies the position and angle of every body into its TransformComponent.  The
+ * other systems read the component, so each body is only asked once per tick.
+ */
+package edu.cornell.gdiac.downstream.ecs;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.systems.IteratingSystem;
+
+import edu.cornell.gdiac.downstream.obstacle.SimpleObstacle;
+
+/**
+ * System copying the transform of each obstacle into its entity.
+ */
+public class TransformSystem extends IteratingSystem {
+
+	/**
+	 * Creates a new transform system
+	 */
+	@SuppressWarnings("unchecked")
+	public TransformSystem() {
+		super(Family.all(TransformComponent.class, BodyComponent.class).get());
+	}
+
+	/**
+	 * Copies the transform of a single entity from its obstacle.
+	 *
+	 * @param entity	The entity to update
+	 * @param dt		Number of seconds since last animation frame
+	 */
+	protected void processEntity(Entity entity, float dt) {
+		sync(entity);
+	}
+
+	/**
+	 * Copies the transform of an entity from its obstacle.
+	 *
+	 * This is also called when the entity is created, so that the transform is
+	 * valid before the first tick.
+	 *
+	 * @param entity	The entity to update
+	 */
+	public static void sync(Entity entity) {
+		SimpleObstacle obstacle = Mappers.body.get(entity).obstacle;
+		TransformComponent transform = Mappers.transform.get(entity);
+		transform.position.set(obstacle.getX(), obstacle.getY());
+		transform.angle = obstacle.getAngle();
+	}
+}
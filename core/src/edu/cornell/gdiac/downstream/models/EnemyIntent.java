@@ -0,0 +1,32 @@
+/*
+ * EnemyIntent.java
+ *
+ * What an enemy fish decided to do this tick.  Each fish only looks at itself and
+ * at the lanterns when it decides, so the decisions can be made on several threads
+ * at once.  They are written here instead of to the fish, and then applied one at
+ * a time on the main thread, in the same order as before.  Anything that is not
+ * thread safe (the navigator, the Box2D world) is only touched while applying.
+ */
+package edu.cornell.gdiac.downstream.models;
+
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Buffer for the decisions of one enemy in one tick.
+ */
+public class EnemyIntent {
+	/** The position of the fish at the start of the tick */
+	public final Vector2 start = new Vector2();
+	/** The position of the fish at the end of the tick */
+	public final Vector2 position = new Vector2();
+	/** The angle of the fish at the end of the tick (in radians) */
+	public float angle;
+	/** The goal of the fish at the end of the tick */
+	public final Vector2 goal = new Vector2();
+	/** The patrol point the fish last reached */
+	public Vector2 lastGoal;
+	/** Whether the fish is in the light (and so fading away) */
+	public boolean flee;
+	/** Whether the fish needs a new path from start to goal */
+	public boolean retarget;
+}
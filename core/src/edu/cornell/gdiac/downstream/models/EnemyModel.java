@@ -21,6 +21,8 @@ import com.badlogic.gdx.graphics.*;
 import com.badlogic.gdx.physics.box2d.*;
 
 import edu.cornell.gdiac.downstream.*;  // For GameCanvas
+import edu.cornell.gdiac.downstream.ai.EnemyPilot;
+import edu.cornell.gdiac.downstream.ai.LightHash;
 import edu.cornell.gdiac.downstream.obstacle.SimpleObstacle;
 //Downstream-core refactor
 /**
@@ -62,6 +64,9 @@ public class EnemyModel extends SimpleObstacle {
 	
 	public boolean dead = false;
 	
+	/** Steers the fish around the land (or null to swim straight at the goal) */
+	private EnemyPilot pilot;
+	
 	
 	
 	/** 
@@ -246,6 +251,24 @@ public class EnemyModel extends SimpleObstacle {
 		canvas.drawPhysics(shape,Color.YELLOW,getX(),getY(),getAngle(),drawScale.x,drawScale.y);
 	}
 	
+	/**
+	 * Returns the steering controller for this fish (or null if it swims straight)
+	 *
+	 * @return the steering controller for this fish
+	 */
+	public EnemyPilot getPilot() {
+		return pilot;
+	}
+	
+	/**
+	 * Sets the steering controller for this fish (or null to swim straight)
+	 *
+	 * @param value  the steering controller for this fish
+	 */
+	public void setPilot(EnemyPilot value) {
+		pilot = value;
+	}
+	
 	public Vector2 getGoal() {
 		return this.goal;
 	}
@@ -268,24 +291,35 @@ public class EnemyModel extends SimpleObstacle {
 	 */
 	
 	public void patrol(ArrayList<Vector2> goals){
-		
+		int i = findWaypoint(goals, getX(), getY());
+		if (i != -1) {
+			Vector2 next = goals.get((i+1) % goals.size());
+			this.goal.set(next.x, next.y);
+			setAngle(findA(this.getPosition(), this.goal));
+			lastGoal = goals.get(i);
+		}
+	}
+	
+	/**
+	 * Returns the index of the patrol point the fish is on, or -1 if none
+	 *
+	 * If the fish is on several points, this is the last of them.
+	 *
+	 * @param goals The patrol points
+	 * @param x     The x-coordinate of the fish
+	 * @param y     The y-coordinate of the fish
+	 *
+	 * @return the index of the patrol point the fish is on
+	 */
+	private int findWaypoint(ArrayList<Vector2> goals, float x, float y) {
+		int found = -1;
 		for(int i = 0; i < goals.size(); i++){
-			//if (getX() > (goals.get(i).x - 1)
-			
-			if ( i != goals.size() - 1 && (getX() > (goals.get(i).x - .5) && getX() < (goals.get(i).x + .5)) && (getY() > (goals.get(i).y - .5) && getY() < (goals.get(i).y + .5)))
-			{
-				this.goal.set(goals.get(i+1).x, goals.get(i+1).y);
-				setAngle(findA(this.getPosition(), this.goal));
-				lastGoal = goals.get(i);
-				
-			}
-			if ( i == goals.size() - 1 && (getX() > (goals.get(i).x - .5) && getX() < (goals.get(i).x + .5)) && (getY() > (goals.get(i).y - .5) && getY() < (goals.get(i).y + .5))){
-				this.goal.set(goals.get(0).x, goals.get(0).y);
-				setAngle(findA(this.getPosition(), this.goal));
-				lastGoal = goals.get(i);
+			Vector2 point = goals.get(i);
+			if ((x > (point.x - .5) && x < (point.x + .5)) && (y > (point.y - .5) && y < (point.y + .5))) {
+				found = i;
 			}
-			
 		}
+		return found;
 	}
 	
 	public void patrol() {
@@ -318,6 +352,76 @@ public class EnemyModel extends SimpleObstacle {
 		setY(getY() + direction.y *.2f);
 		setX(getX() + direction.x *.2f);
 	}
+	
+	/**
+	 * Decides what the fish does this tick, without changing the fish.
+	 *
+	 * This does the work of patrol(), moveTowardsGoal(), fleeFind() and
+	 * fleeFind(lanterns), in that order, but writes the result to the intent.
+	 * It only reads this fish and the lights, so fish may decide in parallel.
+	 * Call apply() afterwards, on the main thread.
+	 *
+	 * @param intent   The buffer for the decision
+	 * @param lights   The lantern lights that scare the fish
+	 * @param dt       Number of seconds since last animation frame
+	 */
+	public void decide(EnemyIntent intent, LightHash lights, float dt) {
+		intent.start.set(getPosition());
+		intent.position.set(intent.start);
+		intent.angle = getAngle();
+		intent.goal.set(goal);
+		intent.lastGoal = lastGoal;
+		intent.flee = flee;
+		intent.retarget = false;
+		
+		// Patrol
+		int i = findWaypoint(patrolPath, intent.start.x, intent.start.y);
+		if (i != -1) {
+			intent.goal.set(patrolPath.get((i+1) % patrolPath.size()));
+			intent.angle = findA(intent.start, intent.goal);
+			intent.lastGoal = patrolPath.get(i);
+		}
+		
+		// Move
+		if (pilot == null) {
+			float dx = intent.goal.x - intent.start.x;
+			float dy = intent.goal.y - intent.start.y;
+			float len = (float)Math.sqrt(dx*dx + dy*dy);
+			if (len != 0) {
+				intent.position.add(dx/len *.2f, dy/len *.2f);
+			}
+		} else {
+			pilot.plan(intent, dt);
+		}
+		
+		// Flee
+		if (tethered != null && tethered.lit) {
+			intent.goal.set(999, 999);
+			intent.angle = findA(intent.position, intent.goal);
+		}
+		if (lights.isLit(intent.position)) {
+			intent.flee = true;
+		}
+	}
+	
+	/**
+	 * Applies the decision made by decide() to the fish.
+	 *
+	 * This must be called on the main thread, since it may ask the navigator for
+	 * a new path.
+	 *
+	 * @param intent   The decision for this tick
+	 */
+	public void apply(EnemyIntent intent) {
+		setPosition(intent.position);
+		setAngle(intent.angle);
+		goal.set(intent.goal);
+		lastGoal = intent.lastGoal;
+		flee = intent.flee;
+		if (pilot != null && intent.retarget) {
+			pilot.request(intent.start);
+		}
+	}
 	 public float findA(Vector2 target, Vector2 t2) {
 		  	float angle = (float) Math.toDegrees(Math.atan2(target.y - t2.y, target.x - t2.x));
 		  	angle = angle - 180;
@@ -341,6 +445,15 @@ public class EnemyModel extends SimpleObstacle {
 		 }
 	 }
 	 
+	 /**
+	  * Returns true if the fish has fled the light and faded out completely
+	  *
+	  * @return true if the fish has faded out completely
+	  */
+	 public boolean isFaded() {
+		 return dead && alpha <= 0;
+	 }
+	 
 	 private void fade(){
 		 if (flee){
 			 alpha = alpha - .03f;
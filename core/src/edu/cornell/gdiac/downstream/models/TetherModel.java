@@ -30,8 +30,9 @@ public class TetherModel extends WheelObstacle {
 	
 	private static final String LIGHTTEXTURE = "tethers/lotusLight.png";
 	private static final String LIGHTTEXTURE2 = "tethers/lotusLight2.png";
-	private TextureRegion lotusLightTexture = new TextureRegion(new Texture(Gdx.files.internal(LIGHTTEXTURE)));
-	private TextureRegion lotusLightTexture2 = new TextureRegion(new Texture(Gdx.files.internal(LIGHTTEXTURE2)));
+	/** Glow textures (each tether holds a reference in the TextureController until it is removed) */
+	private TextureRegion lotusLightTexture;
+	private TextureRegion lotusLightTexture2;
 	
 	private static final BodyDef.BodyType TETHER_BODY_TYPE = BodyDef.BodyType.StaticBody;
 
@@ -80,28 +81,64 @@ public class TetherModel extends WheelObstacle {
 
 	public TetherModel(float x, float y, TetherType type) {
 		super(x,y,TETHER_DEFAULT_RANGE);
+		initLightTextures();
 		setType(type);
 		setBodyType(TETHER_BODY_TYPE);
 	}
 
 	public TetherModel(float x, float y, float r, boolean b){
 		super(x,y, TETHER_DEFAULT_RANGE);
+		initLightTextures();
 		setType(TetherType.Lantern);
 		setBodyType(TETHER_BODY_TYPE);
 	}
 	
 	public TetherModel(float x, float y, float r, boolean b, TetherType type){
 		super(x,y, TETHER_DEFAULT_RANGE);
+		initLightTextures();
 		setType(type);
 		setBodyType(TETHER_BODY_TYPE);
 	}
 
 	public TetherModel(float x, float y, float r) {
 		super(x,y,TETHER_DEFAULT_RANGE);
+		initLightTextures();
 		setType(TetherType.Lilypad);
 		setBodyType(TETHER_BODY_TYPE);
 	}
 
+	/**
+	 * Acquires the glow textures for this tether.
+	 *
+	 * The TextureController only loads each file once, so every lily pad and
+	 * lotus still draws from the same two uploads.  The references are released
+	 * when the tether is removed from the world (see deactivatePhysics).
+	 */
+	private void initLightTextures() {
+		TextureController textures = TextureController.getInstance();
+		lotusLightTexture = new TextureRegion(textures.acquire(LIGHTTEXTURE));
+		lotusLightTexture2 = new TextureRegion(textures.acquire(LIGHTTEXTURE2));
+	}
+
+	/**
+	 * Destroys the physics body, and releases the glow textures.
+	 *
+	 * A tether is never added back to the world once it is removed.  Calling this
+	 * more than once only releases the textures the first time.
+	 *
+	 * @param world Box2D world that stores body
+	 */
+	public void deactivatePhysics(World world) {
+		super.deactivatePhysics(world);
+		if (lotusLightTexture != null) {
+			TextureController textures = TextureController.getInstance();
+			textures.release(LIGHTTEXTURE);
+			textures.release(LIGHTTEXTURE2);
+			lotusLightTexture = null;
+			lotusLightTexture2 = null;
+		}
+	}
+
 	public void setType(TetherType newType) {
 		type = newType;
 	}
@@ -160,11 +197,13 @@ public class TetherModel extends WheelObstacle {
 	}
 	
 	public void drawLight(GameCanvas canvas){
+		if (lotusLightTexture == null) return;
 		setLightingScale();
 		canvas.draw(lotusLightTexture,new Color(255, 255, 255, .5f),texture.getRegionHeight()/2,texture.getRegionWidth()/2,getX()*drawScale.x,getY()*drawScale.x,getAngle(),lightingScale,lightingScale);
 	}
 	
 	public void drawLight2(GameCanvas canvas){
+		if (lotusLightTexture2 == null) return;
 		//setLightingScale();
 		canvas.draw(lotusLightTexture2,new Color(255, 255, 255, .5f),texture.getRegionHeight()/2,texture.getRegionWidth()/2,getX()*drawScale.x,getY()*drawScale.x,getAngle(),.6f,.6f);
 	}
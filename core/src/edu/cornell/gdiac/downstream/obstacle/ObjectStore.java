@@ -0,0 +1,192 @@
+/*
+ * ObjectStore.java
+ *
+ * Most of the obstacles in a level are walls, shores, rocks and tethers that never
+ * move.  When every obstacle lived in one list, each physics step still visited all
+ * of them to update them and check whether they had been removed.  This store keeps
+ * obstacles in separate arrays by layer.  Only the dynamic layers are swept each
+ * step, and drawing goes through the layers in order.
+ */
+package edu.cornell.gdiac.downstream.obstacle;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Collection of obstacles, partitioned into draw layers.
+ *
+ * Within a layer, obstacles are kept in the order they were added.  Iterating over
+ * the store visits every layer, from the bottom to the top.
+ *
+ * Obstacles in a static layer are not updated or removed by the physics step.  Put
+ * them in a static layer only if they have static bodies (or none) and never change
+ * shape once they are added.
+ */
+public class ObjectStore implements Iterable<Obstacle> {
+	/** The layers of the store, from the bottom to the top */
+	public enum Layer {
+		/** Static pieces drawn under the actors (whirlpools and the goal) */
+		UNDERLAY(false),
+		/** Anything that moves, changes shape, or may be marked for removal */
+		DYNAMIC(true),
+		/** Walls and shores */
+		GEOMETRY(false),
+		/** Static pieces drawn over the actors (rocks and tethers) */
+		INTERACTIVE(false),
+		/** Pieces without bodies drawn over everything else (tutorial signs) */
+		OVERLAY(false);
+
+		/** Whether obstacles in this layer are updated every step */
+		private boolean dynamic;
+
+		/**
+		 * Creates a new layer
+		 *
+		 * @param dynamic	Whether obstacles in this layer are updated every step
+		 */
+		private Layer(boolean dynamic) {
+			this.dynamic = dynamic;
+		}
+
+		/**
+		 * Returns true if obstacles in this layer are updated every step
+		 *
+		 * @return true if obstacles in this layer are updated every step
+		 */
+		public boolean isDynamic() {
+			return dynamic;
+		}
+	}
+
+	/** The obstacles of each layer */
+	private Array<Obstacle>[] layers;
+
+	/**
+	 * Creates a new, empty store
+	 */
+	@SuppressWarnings("unchecked")
+	public ObjectStore() {
+		Layer[] values = Layer.values();
+		layers = (Array<Obstacle>[]) new Array<?>[values.length];
+		for (int ii = 0; ii < values.length; ii++) {
+			layers[ii] = new Array<Obstacle>(true, 16, Obstacle.class);
+		}
+	}
+
+	/**
+	 * Returns the obstacles in a layer
+	 *
+	 * The array is the one backing the store, so that the physics step can sweep
+	 * it in place.  Other code should treat it as read-only.
+	 *
+	 * @param layer	The layer
+	 *
+	 * @return the obstacles in a layer
+	 */
+	public Array<Obstacle> getLayer(Layer layer) {
+		return layers[layer.ordinal()];
+	}
+
+	/**
+	 * Adds an obstacle to the dynamic layer
+	 *
+	 * @param obj	The obstacle to add
+	 */
+	public void add(Obstacle obj) {
+		add(obj, Layer.DYNAMIC);
+	}
+
+	/**
+	 * Adds an obstacle to the top of a layer
+	 *
+	 * @param obj	The obstacle to add
+	 * @param layer	The layer to add it to
+	 */
+	public void add(Obstacle obj, Layer layer) {
+		layers[layer.ordinal()].add(obj);
+	}
+
+	/**
+	 * Removes an obstacle from whichever layer holds it
+	 *
+	 * @param obj	The obstacle to remove
+	 *
+	 * @return true if the obstacle was in the store
+	 */
+	public boolean remove(Obstacle obj) {
+		for (Array<Obstacle> layer : layers) {
+			if (layer.removeValue(obj, true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes every obstacle from the store
+	 */
+	public void clear() {
+		for (Array<Obstacle> layer : layers) {
+			layer.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of obstacles in the store
+	 *
+	 * @return the number of obstacles in the store
+	 */
+	public int size() {
+		int total = 0;
+		for (Array<Obstacle> layer : layers) {
+			total += layer.size;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns true if the store has no obstacles
+	 *
+	 * @return true if the store has no obstacles
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Returns an iterator over every obstacle, from the bottom layer to the top
+	 *
+	 * The iterator does not support removal.
+	 *
+	 * @return an iterator over every obstacle
+	 */
+	public Iterator<Obstacle> iterator() {
+		return new Iterator<Obstacle>() {
+			/** The layer of the next obstacle */
+			private int layer = 0;
+			/** The position of the next obstacle in its layer */
+			private int index = 0;
+
+			public boolean hasNext() {
+				while (layer < layers.length && index >= layers[layer].size) {
+					layer++;
+					index = 0;
+				}
+				return layer < layers.length;
+			}
+
+			public Obstacle next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return layers[layer].get(index++);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -970,6 +970,24 @@ public abstract class Obstacle {
 	 */
 	public abstract void deactivatePhysics(World world);
 
+	/**
+	 * Copies the position, angle and velocity of the body after a physics step.
+	 *
+	 * Subclasses with bodies may keep this state so that the getters do not have
+	 * to call into Box2D.  This method does nothing by default.
+	 */
+	public void cacheTransform() {
+	}
+
+	/**
+	 * Writes any position, angle or velocity set since the last step to the body.
+	 *
+	 * This is called just before the physics step.  This method does nothing by
+	 * default.
+	 */
+	public void flushTransform() {
+	}
+
 	/**
 	 * Updates the object's physics state (NOT GAME LOGIC).
 	 *
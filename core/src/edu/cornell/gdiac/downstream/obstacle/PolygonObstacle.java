@@ -39,9 +39,15 @@ import edu.cornell.gdiac.downstream.*;  // For GameCanvas
 public class PolygonObstacle extends SimpleObstacle {
 	/** An earclipping triangular to make sure we work with convex shapes */
 	private static final EarClippingTriangulator TRIANGULATOR = new EarClippingTriangulator();
+	/** The most vertices Box2D allows in a polygon shape (b2_maxPolygonVertices) */
+	public static final int MAX_PIECE_VERTICES = 8;
+	/** The closest two chain vertices may be (b2_linearSlop) */
+	private static final float MIN_CHAIN_EDGE = 0.005f;
 	
 	/** Shape information for this physics object */
 	protected PolygonShape[] shapes;
+	/** The outline of this object, in boundary mode */
+	protected ChainShape chain;
 	/** Texture information for this object */
 	protected PolygonRegion region;
 
@@ -56,8 +62,16 @@ public class PolygonObstacle extends SimpleObstacle {
 	private Vector2 dimension;
 	/** A cache value for when the user wants to access the dimensions */
 	private Vector2 sizeCache;
-	/** Cache of the polygon vertices (for resizing) */
+	/** Cache of the shape vertices (for resizing) */
 	private float[] vertices;
+	/** Where each shape starts in vertices (the last entry is the total length) */
+	private int[] offsets;
+	/** The polygon vertices in physics units (for rebuilding the shapes) */
+	private float[] outline;
+	/** Whether the triangles are merged into larger convex pieces */
+	private boolean convex;
+	/** Whether only the outline collides */
+	private boolean boundary;
 	
 	//Custom second texture for Downstream land fading
 	protected TextureRegion overlayTexture;
@@ -175,29 +189,71 @@ public class PolygonObstacle extends SimpleObstacle {
 		assert points.length % 2 == 0;
 		
 		// Compute the bounds.
-		initShapes(points);
+		initShapes(points, triangulate(points, TRIANGULATOR));
 		initBounds();
 	}
 
+	/**
+	 * Creates a (not necessarily convex) polygon with a known triangulation
+	 *
+	 * This skips the ear clipping step, so the triangulation can be computed
+	 * ahead of time (even on another thread) with triangulate().
+	 *
+	 * @param points    The polygon vertices
+	 * @param triangles The triangle indices, as returned by triangulate()
+	 * @param x  Initial x position of the polygon center
+	 * @param y  Initial y position of the polygon center
+	 */
+	public PolygonObstacle(float[] points, short[] triangles, float x, float y) {
+		super(x, y);
+		assert points.length % 2 == 0;
+		assert triangles.length % 3 == 0;
+
+		// Compute the bounds.
+		initShapes(points, triangles);
+		initBounds();
+	}
+
+	/**
+	 * Returns the triangle indices for the given polygon.
+	 *
+	 * This is the triangulation used by the constructor, with colinear triangles
+	 * removed.  The triangulator is passed in because EarClippingTriangulator is
+	 * not thread safe.
+	 *
+	 * @param points       The polygon vertices
+	 * @param triangulator The triangulator to use
+	 *
+	 * @return the triangle indices for the given polygon.
+	 */
+	public static short[] triangulate(float[] points, EarClippingTriangulator triangulator) {
+		ShortArray array = triangulator.computeTriangles(points);
+		trimColinear(points,array);
+
+		short[] result = new short[array.size];
+		System.arraycopy(array.items, 0, result, 0, result.length);
+		return result;
+	}
+
 	/**
 	 * Initializes the bounding box (and drawing scale) for this polygon
 	 */
 	private void initBounds() {
-		float minx = vertices[0];
-		float maxx = vertices[0];
-		float miny = vertices[1];
-		float maxy = vertices[1];
+		float minx = outline[0];
+		float maxx = outline[0];
+		float miny = outline[1];
+		float maxy = outline[1];
 		
-		for(int ii = 2; ii < vertices.length; ii += 2) {
-			if (vertices[ii] < minx) {
-				minx = vertices[ii];
-			} else if (vertices[ii] > maxx) {
-				maxx = vertices[ii];
+		for(int ii = 2; ii < outline.length; ii += 2) {
+			if (outline[ii] < minx) {
+				minx = outline[ii];
+			} else if (outline[ii] > maxx) {
+				maxx = outline[ii];
 			}
-			if (vertices[ii+1] < miny) {
-				miny = vertices[ii+1];
-			} else if (vertices[ii] > maxy) {
-				maxy = vertices[ii+1];
+			if (outline[ii+1] < miny) {
+				miny = outline[ii+1];
+			} else if (outline[ii] > maxy) {
+				maxy = outline[ii+1];
 			}
 		}
 		dimension = new Vector2((maxx-minx), (maxy-miny));
@@ -205,35 +261,20 @@ public class PolygonObstacle extends SimpleObstacle {
 	}
 	
 	/**
-	 * Initializes the Box2d shapes for this polygon
+	 * Initializes the triangulation and drawing data for this polygon
 	 *
-	 * If the texture is not null, this method also allocates the PolygonRegion 
-	 * for drawing.  However, the points in the polygon region may be rescaled 
-	 * later.
+	 * The Box2d shapes are not built until the fixtures are, so that the convex
+	 * decomposition can be chosen after construction.  If the texture is not null,
+	 * this method also allocates the PolygonRegion for drawing.  However, the points
+	 * in the polygon region may be rescaled later.
 	 *
-	 * @param points   The polygon vertices
+	 * @param points    The polygon vertices
+	 * @param triangles The triangle indices
 	 */
-	private void initShapes(float[] points) {
-		// Triangulate
-		ShortArray array = TRIANGULATOR.computeTriangles(points);
-		trimColinear(points,array);
-		
-		tridx = new short[array.items.length];
-		System.arraycopy(array.items, 0, tridx, 0, tridx.length);
-		
-		// Allocate space for physics triangles.
-		int tris = array.items.length / 3;
-		vertices = new float[tris*6];
-		shapes = new PolygonShape[tris];
-		geoms  = new Fixture[tris];
-		for(int ii = 0; ii < tris; ii++) {
-			for(int jj = 0; jj < 3; jj++) {
-				vertices[6*ii+2*jj  ] = points[2*array.items[3*ii+jj]  ];
-				vertices[6*ii+2*jj+1] = points[2*array.items[3*ii+jj]+1];
-			}
-			shapes[ii] = new PolygonShape();
-			shapes[ii].set(vertices,6*ii,6);
-		}
+	private void initShapes(float[] points, short[] triangles) {
+		tridx = triangles;
+		outline = new float[points.length];
+		System.arraycopy(points, 0, outline, 0, points.length);
 		
 		// Draw the shape with the appropriate scaling factor
 		scaled = new float[points.length];
@@ -251,6 +292,331 @@ public class PolygonObstacle extends SimpleObstacle {
 		}
 
 	}
+
+	/**
+	 * Builds the Box2d shapes for this polygon
+	 *
+	 * There is one shape per triangle, unless convex decomposition is on.  In
+	 * that case there is one shape per convex piece.  In boundary mode, there
+	 * is a single chain loop instead.
+	 */
+	private void buildShapes() {
+		if (boundary) {
+			shapes = new PolygonShape[0];
+			geoms  = new Fixture[1];
+			chain  = new ChainShape();
+			chain.createLoop(chainVertices(outline));
+			return;
+		}
+
+		short[][] pieces = decompose(outline, tridx, convex ? MAX_PIECE_VERTICES : 3);
+		offsets = new int[pieces.length+1];
+		for(int ii = 0; ii < pieces.length; ii++) {
+			offsets[ii+1] = offsets[ii]+2*pieces[ii].length;
+		}
+
+		vertices = new float[offsets[pieces.length]];
+		shapes = new PolygonShape[pieces.length];
+		geoms  = new Fixture[pieces.length];
+		for(int ii = 0; ii < pieces.length; ii++) {
+			for(int jj = 0; jj < pieces[ii].length; jj++) {
+				vertices[offsets[ii]+2*jj  ] = outline[2*pieces[ii][jj]  ];
+				vertices[offsets[ii]+2*jj+1] = outline[2*pieces[ii][jj]+1];
+			}
+			shapes[ii] = new PolygonShape();
+			shapes[ii].set(vertices,offsets[ii],offsets[ii+1]-offsets[ii]);
+		}
+	}
+
+	/**
+	 * Releases the Box2d shapes for this polygon
+	 */
+	private void disposeShapes() {
+		if (chain != null) {
+			chain.dispose();
+			chain = null;
+		}
+		if (shapes == null) {
+			return;
+		}
+		for(PolygonShape shape : shapes) {
+			shape.dispose();
+		}
+		shapes = null;
+	}
+
+	/**
+	 * Releases the shapes and fixtures, so that they are rebuilt on the next update
+	 */
+	private void resetShapes() {
+		if (body != null) {
+			releaseFixtures();
+			geoms = null;
+		}
+		disposeShapes();
+		markDirty(true);
+	}
+
+	/**
+	 * Returns the polygon vertices, without any that Box2d would weld together
+	 *
+	 * Box2d requires the edges of a chain to be longer than the linear slop.
+	 *
+	 * @param points The polygon vertices
+	 *
+	 * @return the polygon vertices, without any that Box2d would weld together
+	 */
+	private static float[] chainVertices(float[] points) {
+		FloatArray result = new FloatArray(points.length);
+		float min2 = MIN_CHAIN_EDGE*MIN_CHAIN_EDGE;
+		for(int ii = 0; ii < points.length; ii += 2) {
+			if (result.size > 0) {
+				float dx = points[ii  ]-result.get(result.size-2);
+				float dy = points[ii+1]-result.get(result.size-1);
+				if (dx*dx+dy*dy <= min2) {
+					continue;
+				}
+			}
+			result.add(points[ii  ]);
+			result.add(points[ii+1]);
+		}
+		// The loop closes back to the first vertex
+		while (result.size > 6) {
+			float dx = result.get(0)-result.get(result.size-2);
+			float dy = result.get(1)-result.get(result.size-1);
+			if (dx*dx+dy*dy > min2) {
+				break;
+			}
+			result.size -= 2;
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * Returns true if the triangles are merged into larger convex pieces
+	 *
+	 * @return true if the triangles are merged into larger convex pieces
+	 */
+	public boolean isConvexDecomposition() {
+		return convex;
+	}
+
+	/**
+	 * Sets whether the triangles are merged into larger convex pieces
+	 *
+	 * Box2D needs convex shapes, so by default there is one fixture per triangle.
+	 * Merging neighboring triangles gives far fewer fixtures for the broadphase to
+	 * track, at no cost in accuracy.  The drawing still uses the triangles.
+	 *
+	 * @param value  whether the triangles are merged into larger convex pieces
+	 */
+	public void setConvexDecomposition(boolean value) {
+		if (value == convex) {
+			return;
+		}
+		convex = value;
+		resetShapes();
+	}
+
+	/**
+	 * Returns true if only the outline of this polygon collides
+	 *
+	 * @return true if only the outline of this polygon collides
+	 */
+	public boolean isBoundary() {
+		return boundary;
+	}
+
+	/**
+	 * Sets whether only the outline of this polygon collides
+	 *
+	 * In boundary mode, the fixture is a single chain loop around the polygon.
+	 * This is for obstacles that only care when something crosses their edge,
+	 * like walls that kill on contact.  An object entirely inside the polygon
+	 * does not touch it, and the body has no mass.  The convex decomposition
+	 * setting is ignored.  The drawing still uses the triangles.
+	 *
+	 * Note that Box2d gives every edge of a chain its own broadphase proxy.  The
+	 * edges have much smaller bounding boxes than the triangles, though, which
+	 * cuts down on the contacts that have to be checked.
+	 *
+	 * @param value  whether only the outline of this polygon collides
+	 */
+	public void setBoundary(boolean value) {
+		if (value == boundary) {
+			return;
+		}
+		boundary = value;
+		resetShapes();
+	}
+
+	/**
+	 * Returns the convex pieces of a triangulated polygon.
+	 *
+	 * This is the Hertel-Mehlhorn algorithm.  Each diagonal of the triangulation
+	 * is removed if the two pieces it separates would still make a convex polygon
+	 * with at most maxVertices vertices.  The result has at most four times as
+	 * many pieces as the best possible decomposition, and takes linear time.
+	 * With a maxVertices of 3, the result is just the triangles.
+	 *
+	 * Each piece is a list of vertex indices in counterclockwise order.
+	 *
+	 * @param points      The polygon vertices
+	 * @param triangles   The triangle indices, as returned by triangulate()
+	 * @param maxVertices The most vertices allowed in a piece
+	 *
+	 * @return the convex pieces of a triangulated polygon.
+	 */
+	public static short[][] decompose(float[] points, short[] triangles, int maxVertices) {
+		int tris = triangles.length/3;
+		ShortArray[] pieces = new ShortArray[tris];
+		int[] owner = new int[tris];
+		for(int ii = 0; ii < tris; ii++) {
+			short a = triangles[3*ii];
+			short b = triangles[3*ii+1];
+			short c = triangles[3*ii+2];
+			pieces[ii] = new ShortArray(maxVertices);
+			pieces[ii].add(a);
+			if (cross(points, a, b, c) < 0) {
+				pieces[ii].add(c);
+				pieces[ii].add(b);
+			} else {
+				pieces[ii].add(b);
+				pieces[ii].add(c);
+			}
+			owner[ii] = ii;
+		}
+
+		// Every diagonal is an edge shared by exactly two triangles
+		if (maxVertices > 3) {
+			IntIntMap edges = new IntIntMap(3*tris);
+			for(int ii = 0; ii < tris; ii++) {
+				for(int jj = 0; jj < 3; jj++) {
+					int a = triangles[3*ii+jj];
+					int b = triangles[3*ii+(jj+1)%3];
+					int key = Math.min(a,b) << 16 | Math.max(a,b);
+					int other = edges.get(key,-1);
+					if (other == -1) {
+						edges.put(key,ii);
+						continue;
+					}
+					int p = findOwner(owner,other);
+					int q = findOwner(owner,ii);
+					if (p == q) {
+						// Only malformed polygons share an edge inside one piece
+						continue;
+					}
+					ShortArray merged = merge(points, pieces[p], pieces[q], a, b, maxVertices);
+					if (merged != null) {
+						pieces[p] = merged;
+						pieces[q] = null;
+						owner[q] = p;
+					}
+				}
+			}
+		}
+
+		int count = 0;
+		for(int ii = 0; ii < tris; ii++) {
+			if (pieces[ii] != null) {
+				count++;
+			}
+		}
+		short[][] result = new short[count][];
+		count = 0;
+		for(int ii = 0; ii < tris; ii++) {
+			if (pieces[ii] != null) {
+				result[count++] = pieces[ii].toArray();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the piece that now holds the given triangle
+	 *
+	 * @param owner	The piece each triangle was merged into
+	 * @param tri	The triangle index
+	 *
+	 * @return the piece that now holds the given triangle
+	 */
+	private static int findOwner(int[] owner, int tri) {
+		int root = tri;
+		while (owner[root] != root) {
+			root = owner[root];
+		}
+		while (owner[tri] != root) {
+			int next = owner[tri];
+			owner[tri] = root;
+			tri = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Returns the union of two convex pieces sharing an edge, or null.
+	 *
+	 * The union is null if it is not convex, or has more than maxVertices vertices.
+	 * Only the two ends of the shared edge can stop the union from being convex.
+	 *
+	 * @param points      The polygon vertices
+	 * @param first       The first piece (counterclockwise)
+	 * @param second      The second piece (counterclockwise)
+	 * @param a           One end of the shared edge
+	 * @param b           The other end of the shared edge
+	 * @param maxVertices The most vertices allowed in a piece
+	 *
+	 * @return the union of two convex pieces sharing an edge, or null.
+	 */
+	private static ShortArray merge(float[] points, ShortArray first, ShortArray second, int a, int b, int maxVertices) {
+		int n1 = first.size;
+		int n2 = second.size;
+		if (n1+n2-2 > maxVertices) {
+			return null;
+		}
+
+		// Orient the edge so that it runs a to b in the first piece
+		int ia = first.indexOf((short)a);
+		if (first.get((ia+1) % n1) != b) {
+			int temp = a;
+			a = b;
+			b = temp;
+			ia = first.indexOf((short)a);
+		}
+		int ib = (ia+1) % n1;
+		int ja = second.indexOf((short)a);
+		int jb = (ja+n2-1) % n2;
+		if (ia == -1 || ja == -1 || second.get(jb) != b) {
+			return null;
+		}
+
+		if (cross(points, first.get((ia+n1-1) % n1), a, second.get((ja+1) % n2)) < 0 ||
+			cross(points, second.get((jb+n2-1) % n2), b, first.get((ib+1) % n1)) < 0) {
+			return null;
+		}
+
+		ShortArray result = new ShortArray(maxVertices);
+		for(int ii = 0; ii < n1; ii++) {
+			result.add(first.get((ib+ii) % n1));
+		}
+		for(int ii = 1; ii < n2-1; ii++) {
+			result.add(second.get((ja+ii) % n2));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the cross product of (b-a) and (c-b), which is positive for a left turn
+	 *
+	 * @return the cross product of (b-a) and (c-b)
+	 */
+	private static float cross(float[] points, int a, int b, int c) {
+		float ux = points[2*b  ]-points[2*a  ];
+		float uy = points[2*b+1]-points[2*a+1];
+		float vx = points[2*c  ]-points[2*b  ];
+		float vy = points[2*c+1]-points[2*b+1];
+		return ux*vy-uy*vx;
+	}
 	
 	/**
 	 * Removes colinear vertices from the given triangulation.
@@ -261,7 +627,7 @@ public class PolygonObstacle extends SimpleObstacle {
 	 * @param points  The polygon vertices
 	 * @param indices The triangulation indices
 	 */
-	private void trimColinear(float[] points, ShortArray indices) {
+	private static void trimColinear(float[] points, ShortArray indices) {
 		int colinear = 0;
 		for(int ii = 0; ii < indices.size/3-colinear; ii++) {
 			float t1 = points[2*indices.items[3*ii  ]]*(points[2*indices.items[3*ii+1]+1]-points[2*indices.items[3*ii+2]+1]);
@@ -288,12 +654,21 @@ public class PolygonObstacle extends SimpleObstacle {
 		float scalex = width/dimension.x;
 		float scaley = height/dimension.y;
 		
-		for(int ii = 0; ii < shapes.length; ii++) {
-			for(int jj = 0; jj < 3; jj++) {
-				vertices[6*ii+2*jj  ] *= scalex;
-				vertices[6*ii+2*jj+1] *= scaley;
+		for(int ii = 0; ii < outline.length; ii+= 2) {
+			outline[ii  ] *= scalex;
+			outline[ii+1] *= scaley;
+		}
+		if (chain != null) {
+			// Chains cannot be changed once created
+			disposeShapes();
+		} else if (shapes != null) {
+			for(int ii = 0; ii < vertices.length; ii+= 2) {
+				vertices[ii  ] *= scalex;
+				vertices[ii+1] *= scaley;
+			}
+			for(int ii = 0; ii < shapes.length; ii++) {
+				shapes[ii].set(vertices,offsets[ii],offsets[ii+1]-offsets[ii]);
 			}
-			shapes[ii].set(vertices,6*ii,6);
 		}
 		
 		// Reset the drawing shape as well
@@ -316,12 +691,19 @@ public class PolygonObstacle extends SimpleObstacle {
 		}
 		
 		releaseFixtures();
+		if (shapes == null) {
+			buildShapes();
+		}
 		
 		// Create the fixtures
 		for(int ii = 0; ii < shapes.length; ii++) {
 			fixture.shape = shapes[ii];
 			geoms[ii] = body.createFixture(fixture);
 		}
+		if (chain != null) {
+			fixture.shape = chain;
+			geoms[shapes.length] = body.createFixture(fixture);
+		}
 		markDirty(false);
 	}
 	
@@ -331,7 +713,7 @@ public class PolygonObstacle extends SimpleObstacle {
 	 * This is the primary method to override for custom physics objects
 	 */
 	protected void releaseFixtures() {
-		if (geoms[0] != null) {
+		if (geoms != null && geoms.length > 0 && geoms[0] != null) {
 			for(Fixture fix : geoms) {
 				body.destroyFixture(fix);
 			}
@@ -410,6 +792,12 @@ public class PolygonObstacle extends SimpleObstacle {
 	 * @param canvas Drawing context
 	 */
 	public void drawDebug(GameCanvas canvas) {
+		if (chain != null) {
+			canvas.drawPhysics(chain,Color.YELLOW,getX(),getY(),getAngle(),drawScale.x,drawScale.y);
+		}
+		if (shapes == null) {
+			return;
+		}
 		for(PolygonShape tri : shapes) {
 			canvas.drawPhysics(tri,Color.YELLOW,getX(),getY(),getAngle(),drawScale.x,drawScale.y);
 		}
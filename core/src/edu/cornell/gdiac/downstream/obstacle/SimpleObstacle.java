@@ -16,6 +16,8 @@
  */
 package edu.cornell.gdiac.downstream.obstacle;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.badlogic.gdx.math.*;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.*;
@@ -30,6 +32,11 @@ import edu.cornell.gdiac.downstream.GameCanvas;
  * This is an instance of a Obstacle with just one body. It does not have any joints.
  * It is the primary type of physics object. 
  *
+ * While the body is active, the position, angle and linear velocity in the body
+ * definition are a cache of the body as of the last physics step.  The getters
+ * read this cache instead of calling into Box2D, and the setters write to it.
+ * WorldController flushes any changes to the body before the next step.
+ *
  * This class does not provide Shape information, and cannot be instantiated directly.
  */
 public abstract class SimpleObstacle extends Obstacle {
@@ -43,6 +50,18 @@ public abstract class SimpleObstacle extends Obstacle {
 	protected Vector2 origin;
 
 	private Vector2 speed;
+
+	/// Transform cache
+	/** Whether the position or angle has been set since the last step */
+	private boolean transformDirty;
+	/** Whether the linear velocity has been set since the last step */
+	private boolean velocityDirty;
+	/** Whether to count position, angle and velocity reads (-Ddownstream.countReads=true) */
+	private static final boolean COUNT_READS = Boolean.getBoolean("downstream.countReads");
+	/** The number of position, angle and velocity reads (for benchmarking; enemies read in parallel) */
+	private static final AtomicLong cachedReads = new AtomicLong();
+	/** The number of position, angle and velocity calls into Box2D (for benchmarking; main thread only) */
+	private static long bodyCalls;
 	
 	/// BodyDef Methods
 	/**
@@ -70,9 +89,8 @@ public abstract class SimpleObstacle extends Obstacle {
 	public void setBodyType(BodyType value) {
 		if (body != null) {
 			body.setType(value);
-		} else {
-			super.setBodyType(value);
 		}
+		super.setBodyType(value);
 	}
 	
 	/**
@@ -85,7 +103,10 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @return the current position for this physics body
 	 */
 	public Vector2 getPosition() {
-		return (body != null ? body.getPosition() : super.getPosition());
+		if (COUNT_READS) {
+			cachedReads.incrementAndGet();
+		}
+		return super.getPosition();
 	}
 	
 	/**
@@ -96,11 +117,8 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @param value  the current position for this physics body
 	 */
 	public void setPosition(Vector2 value) {
-		if (body != null) {
-			body.setTransform(value,body.getAngle());
-		} else {
-			super.setPosition(value);
-		}
+		super.setPosition(value);
+		transformDirty = true;
 	}
 
 	/**
@@ -110,12 +128,8 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @param y  the y-coordinate for this physics body
 	 */
 	public void setPosition(float x, float y) {
-		if (body != null) {
-			positionCache.set(x,y);
-			body.setTransform(positionCache,body.getAngle());
-		} else {
-			super.setPosition(x,y);
-		}
+		super.setPosition(x,y);
+		transformDirty = true;
 	}
 
 	/**
@@ -124,7 +138,10 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @return the x-coordinate for this physics body
 	 */
 	public float getX() {
-		return (body != null ? body.getPosition().x : super.getX());
+		if (COUNT_READS) {
+			cachedReads.incrementAndGet();
+		}
+		return super.getX();
 	}
 	
 	/**
@@ -133,12 +150,8 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @param value  the x-coordinate for this physics body
 	 */
 	public void setX(float value) {
-		if (body != null) {
-			positionCache.set(value,body.getPosition().y);
-			body.setTransform(positionCache,body.getAngle());
-		} else {
-			super.setX(value);
-		}
+		super.setX(value);
+		transformDirty = true;
 	}
 	
 	/**
@@ -147,7 +160,10 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @return the y-coordinate for this physics body
 	 */
 	public float getY() {
-		return (body != null ? body.getPosition().y : super.getY());
+		if (COUNT_READS) {
+			cachedReads.incrementAndGet();
+		}
+		return super.getY();
 	}
 	
 	/**
@@ -156,12 +172,8 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @param value  the y-coordinate for this physics body
 	 */
 	public void setY(float value) {
-		if (body != null) {
-			positionCache.set(body.getPosition().x,value);
-			body.setTransform(positionCache,body.getAngle());
-		} else {
-			super.setY(value);
-		}
+		super.setY(value);
+		transformDirty = true;
 	}
 	
 	/**
@@ -172,7 +184,10 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @return the angle of rotation for this body
 	 */
 	public float getAngle() {
-		return (body != null ? body.getAngle() : super.getAngle());
+		if (COUNT_READS) {
+			cachedReads.incrementAndGet();
+		}
+		return super.getAngle();
 	}
 	
 	/**
@@ -181,11 +196,8 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @param value  the angle of rotation for this body (in radians)
 	 */
 	public void setAngle(float value) {
-		if (body != null) {
-			body.setTransform(body.getPosition(),value);
-		} else {
-			super.setAngle(value);
-		}
+		super.setAngle(value);
+		transformDirty = true;
 	}
 	
 	/**
@@ -198,7 +210,10 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @return the linear velocity for this physics body
 	 */
 	public Vector2 getLinearVelocity() {
-		return (body != null ? body.getLinearVelocity() : super.getLinearVelocity());
+		if (COUNT_READS) {
+			cachedReads.incrementAndGet();
+		}
+		return super.getLinearVelocity();
 	}
 	
 	/**
@@ -209,11 +224,8 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @param value  the linear velocity for this physics body
 	 */
 	public void setLinearVelocity(Vector2 value) {
-		if (body != null) {
-			body.setLinearVelocity(value);
-		} else {
-			super.setLinearVelocity(value);
-		}
+		super.setLinearVelocity(value);
+		velocityDirty = true;
 	}
 	
 	/**
@@ -222,7 +234,10 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @return the x-velocity for this physics body
 	 */
 	public float getVX() {
-		return (body != null ? body.getLinearVelocity().x : super.getVX());
+		if (COUNT_READS) {
+			cachedReads.incrementAndGet();
+		}
+		return super.getVX();
 	}
 	
 	/**
@@ -231,12 +246,8 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @param value  the x-velocity for this physics body
 	 */
 	public void setVX(float value) {
-		if (body != null) {
-			velocityCache.set(value,body.getLinearVelocity().y);
-			body.setLinearVelocity(velocityCache);
-		} else {
-			super.setVX(value);
-		}
+		super.setVX(value);
+		velocityDirty = true;
 	}
 	
 	/**
@@ -245,7 +256,10 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @return the y-velocity for this physics body
 	 */
 	public float getVY() {
-		return (body != null ? body.getLinearVelocity().y : super.getVY());
+		if (COUNT_READS) {
+			cachedReads.incrementAndGet();
+		}
+		return super.getVY();
 	}
 	
 	/**
@@ -254,12 +268,8 @@ public abstract class SimpleObstacle extends Obstacle {
 	 * @param value  the y-velocity for this physics body
 	 */
 	public void setVY(float value) {
-		if (body != null) {
-			velocityCache.set(body.getLinearVelocity().x,value);
-			body.setLinearVelocity(velocityCache);
-		} else {
-			super.setVY(value);
-		}
+		super.setVY(value);
+		velocityDirty = true;
 	}
 	
 	/**
@@ -829,6 +839,8 @@ public abstract class SimpleObstacle extends Obstacle {
 		bodyinfo.active = true;
 		body = world.createBody(bodyinfo);
 		body.setUserData(this);
+		transformDirty = false;
+		velocityDirty = false;
 		
 		// Only initialize if a body was created.
 		if (body != null) {
@@ -850,6 +862,7 @@ public abstract class SimpleObstacle extends Obstacle {
 		// Should be good for most (simple) applications.
 		if (body != null) {
 			// Snapshot the values
+			flushTransform();
 			setBodyState(body);
 			world.destroyBody(body);
 			body = null;
@@ -857,6 +870,78 @@ public abstract class SimpleObstacle extends Obstacle {
 		}
 	}
 
+	/**
+	 * Copies the position, angle and velocity of the body after a physics step.
+	 *
+	 * Static bodies only move when they are set, so they are skipped.
+	 */
+	public void cacheTransform() {
+		if (body == null || bodyinfo.type == BodyType.StaticBody) {
+			return;
+		}
+		bodyinfo.position.set(body.getPosition());
+		bodyinfo.angle = body.getAngle();
+		bodyinfo.linearVelocity.set(body.getLinearVelocity());
+		bodyCalls += 3;
+	}
+
+	/**
+	 * Writes any position, angle or velocity set since the last step to the body.
+	 */
+	public void flushTransform() {
+		if (body != null && transformDirty) {
+			body.setTransform(bodyinfo.position,bodyinfo.angle);
+			bodyCalls++;
+		}
+		if (body != null && velocityDirty) {
+			body.setLinearVelocity(bodyinfo.linearVelocity);
+			bodyCalls++;
+		}
+		transformDirty = false;
+		velocityDirty = false;
+	}
+
+	/**
+	 * Returns true if position, angle and velocity reads are counted
+	 *
+	 * Counting is off unless the downstream.countReads property is set, since it
+	 * slows down the getters (and the enemies call them in parallel).
+	 *
+	 * @return true if position, angle and velocity reads are counted
+	 */
+	public static boolean isCountingReads() {
+		return COUNT_READS;
+	}
+
+	/**
+	 * Returns the number of position, angle and velocity reads since the last reset
+	 *
+	 * Before the transform cache, each of these reads was a call into Box2D.  This
+	 * is always 0 unless isCountingReads() is true.
+	 *
+	 * @return the number of position, angle and velocity reads
+	 */
+	public static long getCachedReads() {
+		return cachedReads.get();
+	}
+
+	/**
+	 * Returns the number of position, angle and velocity calls into Box2D since the last reset
+	 *
+	 * @return the number of position, angle and velocity calls into Box2D
+	 */
+	public static long getBodyCalls() {
+		return bodyCalls;
+	}
+
+	/**
+	 * Resets the read and call counts to zero
+	 */
+	public static void resetCallCounts() {
+		cachedReads.set(0);
+		bodyCalls = 0;
+	}
+
 	/**
 	 * Create new fixtures for this body, defining the shape
 	 *
@@ -0,0 +1,208 @@
+/*
+ * Bag.java
+ *
+ * PooledList gives us O(1) removal, but every element lives in its own Entry node,
+ * so iterating over it chases pointers all over the heap.  When we do not care
+ * about order, we can do better.  A bag keeps its elements packed in an array and
+ * removes an element by moving the last element into its slot.  Removal is still
+ * O(1), and iteration is a walk down an array.
+ *
+ * IntBag and FloatBag are the same structure for primitive values, without boxing.
+ */
+package edu.cornell.gdiac.util;
+
+import java.util.*;
+
+/**
+ * An unordered, array-backed collection with O(1) removal.
+ *
+ * Removing an element moves the last element into its slot, so the order of the
+ * elements changes.  It is safe to remove elements while iterating, as long as
+ * it is done through the iterator, or with removeIndex() on the current index
+ * when walking the bag by hand:
+ *
+ *     for (int ii = 0; ii < bag.size(); ) {
+ *         if (done(bag.get(ii))) {
+ *             bag.removeIndex(ii);   // Visit the moved element next
+ *         } else {
+ *             ii++;
+ *         }
+ *     }
+ *
+ * Every element is visited exactly once either way.
+ */
+public class Bag<E> implements Iterable<E> {
+	/** The default capacity of a new bag */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** The elements of the bag; only the first size are used */
+	private E[] items;
+	/** The number of elements in the bag */
+	private int size;
+
+	/**
+	 * Creates a new, empty bag with the default capacity
+	 */
+	public Bag() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new, empty bag
+	 *
+	 * @param capacity	The number of elements to allocate up front
+	 */
+	@SuppressWarnings("unchecked")
+	public Bag(int capacity) {
+		items = (E[])new Object[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Returns the number of elements in this bag.
+	 *
+	 * @return the number of elements in this bag
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if this bag has no elements.
+	 *
+	 * @return true if this bag has no elements.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the element at the given index.
+	 *
+	 * @param index	The element index
+	 *
+	 * @return the element at the given index.
+	 */
+	public E get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("index can't be >= size: " + index + " >= " + size);
+		}
+		return items[index];
+	}
+
+	/**
+	 * Adds an element to the end of the bag.
+	 *
+	 * @param e	The element to add
+	 */
+	public void add(E e) {
+		if (size == items.length) {
+			items = Arrays.copyOf(items, size*2);
+		}
+		items[size++] = e;
+	}
+
+	/**
+	 * Removes the element at the given index, moving the last element into its slot.
+	 *
+	 * @param index	The element index
+	 *
+	 * @return the element removed
+	 */
+	public E removeIndex(int index) {
+		E result = get(index);
+		size--;
+		items[index] = items[size];
+		items[size] = null;
+		return result;
+	}
+
+	/**
+	 * Removes the first occurrence of an element (by identity).
+	 *
+	 * @param e	The element to remove
+	 *
+	 * @return true if the element was in the bag
+	 */
+	public boolean remove(E e) {
+		int index = indexOf(e);
+		if (index == -1) {
+			return false;
+		}
+		removeIndex(index);
+		return true;
+	}
+
+	/**
+	 * Returns the index of the first occurrence of an element (by identity), or -1.
+	 *
+	 * @param e	The element to find
+	 *
+	 * @return the index of the element, or -1 if it is not in the bag
+	 */
+	public int indexOf(E e) {
+		for (int ii = 0; ii < size; ii++) {
+			if (items[ii] == e) {
+				return ii;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns true if the bag contains an element (by identity).
+	 *
+	 * @param e	The element to find
+	 *
+	 * @return true if the bag contains the element
+	 */
+	public boolean contains(E e) {
+		return indexOf(e) != -1;
+	}
+
+	/**
+	 * Removes every element from the bag.
+	 *
+	 * The capacity is kept, so refilling the bag does not allocate.
+	 */
+	public void clear() {
+		Arrays.fill(items, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Returns an iterator over the elements of this bag.
+	 *
+	 * The iterator supports removal.  The element moved into the removed slot is
+	 * returned by the next call to next().
+	 *
+	 * @return an iterator over the elements of this bag.
+	 */
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			/** The index of the next element */
+			private int index = 0;
+			/** Whether the last element returned may be removed */
+			private boolean removable = false;
+
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			public E next() {
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+				removable = true;
+				return items[index++];
+			}
+
+			public void remove() {
+				if (!removable) {
+					throw new IllegalStateException();
+				}
+				removable = false;
+				removeIndex(--index);
+			}
+		};
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * FloatBag.java
+ *
+ * A Bag of float values, without boxing.  See Bag for the details of the structure.
+ */
+package edu.cornell.gdiac.util;
+
+import java.util.Arrays;
+
+/**
+ * An unordered, array-backed collection of floats with O(1) removal.
+ *
+ * Removing a value moves the last value into its slot.  When walking the bag by
+ * index, do not advance the index after a removal (see Bag).
+ */
+public class FloatBag {
+	/** The default capacity of a new bag */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** The values of the bag; only the first size are used */
+	private float[] items;
+	/** The number of values in the bag */
+	private int size;
+
+	/**
+	 * Creates a new, empty bag with the default capacity
+	 */
+	public FloatBag() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new, empty bag
+	 *
+	 * @param capacity	The number of values to allocate up front
+	 */
+	public FloatBag(int capacity) {
+		items = new float[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Returns the number of values in this bag.
+	 *
+	 * @return the number of values in this bag
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if this bag has no values.
+	 *
+	 * @return true if this bag has no values.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the value at the given index.
+	 *
+	 * @param index	The value index
+	 *
+	 * @return the value at the given index.
+	 */
+	public float get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("index can't be >= size: " + index + " >= " + size);
+		}
+		return items[index];
+	}
+
+	/**
+	 * Adds a value to the end of the bag.
+	 *
+	 * @param value	The value to add
+	 */
+	public void add(float value) {
+		if (size == items.length) {
+			items = Arrays.copyOf(items, size*2);
+		}
+		items[size++] = value;
+	}
+
+	/**
+	 * Removes the value at the given index, moving the last value into its slot.
+	 *
+	 * @param index	The value index
+	 *
+	 * @return the value removed
+	 */
+	public float removeIndex(int index) {
+		float result = get(index);
+		items[index] = items[--size];
+		return result;
+	}
+
+	/**
+	 * Removes the first occurrence of a value.
+	 *
+	 * @param value	The value to remove
+	 *
+	 * @return true if the value was in the bag
+	 */
+	public boolean removeValue(float value) {
+		int index = indexOf(value);
+		if (index == -1) {
+			return false;
+		}
+		removeIndex(index);
+		return true;
+	}
+
+	/**
+	 * Returns the index of the first occurrence of a value, or -1.
+	 *
+	 * @param value	The value to find
+	 *
+	 * @return the index of the value, or -1 if it is not in the bag
+	 */
+	public int indexOf(float value) {
+		for (int ii = 0; ii < size; ii++) {
+			if (items[ii] == value) {
+				return ii;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns true if the bag contains a value.
+	 *
+	 * @param value	The value to find
+	 *
+	 * @return true if the bag contains the value
+	 */
+	public boolean contains(float value) {
+		return indexOf(value) != -1;
+	}
+
+	/**
+	 * Removes every value from the bag, keeping the capacity.
+	 */
+	public void clear() {
+		size = 0;
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * FrameCache.java
+ *
+ * Static cache for animation frames sliced from sprite sheets.
+ *
+ * Our sprite sheets are several megabytes each, and every new game controller
+ * used to decode and upload all of them again.  The frames themselves never
+ * change, so there is no reason to tie them to a controller instance.  This
+ * class keeps them for the lifetime of the application.  Like RandomController,
+ * it is implemented as a static class.
+ */
+package edu.cornell.gdiac.util;
+
+import com.badlogic.gdx.graphics.*;
+import com.badlogic.gdx.graphics.g2d.*;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * Static class for sharing sprite sheet frames between controllers.
+ *
+ * The sheets are loaded through the TextureController, which holds one
+ * reference to each sheet until clear() is called.  Callers must treat
+ * the returned arrays (and the regions in them) as read-only.
+ *
+ * If a sheet has a packed ETC1 copy, the frames are cut from the top (color)
+ * half of that texture.  GameCanvas recognizes these frames and draws them
+ * with the alpha shader.
+ */
+public class FrameCache {
+	/** The sliced frames, keyed by file and layout */
+	private static ObjectMap<String,TextureRegion[]> frames = new ObjectMap<String,TextureRegion[]>();
+	/** The sheets we hold a reference to in the TextureController, by original path */
+	private static ObjectMap<String,String> sheets = new ObjectMap<String,String>();
+
+	/**
+	 * Returns the frames of a sprite sheet, in row-major order.
+	 *
+	 * The sheet is decoded the first time it is requested.  Later requests for
+	 * the same file and layout return the same array.
+	 *
+	 * @param file		The sprite sheet file
+	 * @param cols		The number of columns in the sheet
+	 * @param rows		The number of rows in the sheet
+	 * @param images	The number of frames actually used in the sheet
+	 * @param flip		Whether to flip each frame vertically
+	 *
+	 * @return the frames of a sprite sheet, in row-major order.
+	 */
+	public static TextureRegion[] getFrames(String file, int cols, int rows, int images, boolean flip) {
+		String key = file+"#"+cols+"x"+rows+"x"+images+(flip ? "f" : "");
+		TextureRegion[] result = frames.get(key);
+		if (result != null) {
+			return result;
+		}
+
+		Texture sheet = getSheet(file);
+		int height = sheet.getHeight();
+		if (TextureController.getInstance().isPacked(sheet)) {
+			height /= 2;
+		}
+		TextureRegion[][] tmp = TextureRegion.split(sheet, sheet.getWidth()/cols, height/rows);
+		result = new TextureRegion[images];
+		int index = 0;
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < cols; j++) {
+				if (index < images) {
+					if (flip) {
+						tmp[i][j].flip(false, true);
+					}
+					result[index++] = tmp[i][j];
+				}
+			}
+		}
+		frames.put(key, result);
+		return result;
+	}
+
+	/**
+	 * Returns true if the given sprite sheet has already been decoded.
+	 *
+	 * @param file		The sprite sheet file
+	 *
+	 * @return true if the given sprite sheet has already been decoded.
+	 */
+	public static boolean isLoaded(String file) {
+		return sheets.containsKey(file);
+	}
+
+	/**
+	 * Releases every sprite sheet and forgets all of the frames.
+	 *
+	 * This should only be called when the application shuts down, since any
+	 * frames still in use will refer to disposed textures after a purge.
+	 */
+	public static void clear() {
+		TextureController textures = TextureController.getInstance();
+		for(String source : sheets.values()) {
+			textures.release(source);
+		}
+		sheets.clear();
+		frames.clear();
+	}
+
+	/**
+	 * Returns the sheet texture, acquiring it the first time it is used.
+	 *
+	 * The packed copy of the sheet is used if there is one.
+	 *
+	 * @param file		The sprite sheet file
+	 *
+	 * @return the sheet texture
+	 */
+	private static Texture getSheet(String file) {
+		TextureController textures = TextureController.getInstance();
+		String source = sheets.get(file);
+		if (source == null) {
+			source = textures.getPackedFile(file);
+			sheets.put(file, source);
+			return textures.acquire(source);
+		}
+		// We already hold a reference; do not take another one.
+		Texture sheet = textures.acquire(source);
+		textures.release(source);
+		return sheet;
+	}
+}
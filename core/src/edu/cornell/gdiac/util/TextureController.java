@@ -0,0 +1,372 @@
+/*
+ * TextureController.java
+ *
+ * Textures that are created with new Texture(...) bypass the AssetManager.  That
+ * means every menu or model that wants the same image decodes and uploads its own
+ * copy, and nobody remembers to dispose of them.  This class is a shared registry
+ * for those textures, keyed by file path and reference counted.
+ *
+ * Note that this class is an instance of a Singleton.  There is only one
+ * TextureController at a time.  You use the method getInstance() to get it.
+ */
+package edu.cornell.gdiac.util;
+
+import com.badlogic.gdx.*;
+import com.badlogic.gdx.files.*;
+import com.badlogic.gdx.graphics.*;
+import com.badlogic.gdx.graphics.glutils.*;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * A singleton class for sharing textures between game modes and models.
+ *
+ * Every call to acquire() must be paired with a call to release().  A texture
+ * is only decoded the first time its path is acquired.  When the reference count
+ * drops to zero, the texture stays resident so that a menu which is torn down and
+ * rebuilt does not pay for the upload again.  Unreferenced textures are only
+ * disposed by purge() or clear().
+ *
+ * The controller also keeps track of how many bytes of texture memory it owns
+ * and how long it has spent loading, so that we can compare levels.
+ *
+ * If the offline texture compressor has been run (gradle compressTextures), the
+ * controller prefers the compressed copy of a file over the original.  Opaque
+ * images are stored as plain ETC1 (.etc1), and are used in place of the original
+ * automatically.  Images with transparency are stored as packed ETC1 (.etc1a),
+ * with the color in the top half of the texture and the alpha in the bottom half.
+ * Packed textures must be drawn with the GameCanvas alpha shader, so they are
+ * only used when asked for by name (see getPackedFile).  When the GPU does not
+ * support ETC1, libGDX decodes the texture in software before uploading it.
+ */
+public class TextureController {
+	/** The singleton texture controller instance */
+	private static TextureController controller;
+
+	/** The extension of an opaque ETC1 texture */
+	public static final String ETC1_EXTENSION = ".etc1";
+	/** The extension of a packed ETC1 texture (color above, alpha below) */
+	public static final String PACKED_EXTENSION = ".etc1a";
+	/** The extension of a KTX texture */
+	public static final String KTX_EXTENSION = ".ktx";
+	/** The GL extension for hardware ETC1 support */
+	private static final String ETC1_GL_EXTENSION = "GL_OES_compressed_ETC1_RGB8_texture";
+
+	/** The textures currently resident, keyed by file path */
+	private ObjectMap<String,Texture> textures;
+	/** The number of outstanding references to each texture */
+	private ObjectIntMap<String> counts;
+	/** The textures that store their alpha in the bottom half */
+	private ObjectSet<Texture> packed;
+	/** Whether to use compressed copies of files when they exist */
+	private boolean preferCompressed;
+
+	/** The estimated texture memory owned by this controller (in bytes) */
+	private long residentBytes;
+	/** The total time spent decoding and uploading textures (in nanoseconds) */
+	private long loadTime;
+	/** The number of textures decoded since the controller was created */
+	private int loadCount;
+
+	/**
+	 * Creates a new, empty TextureController.
+	 */
+	private TextureController() {
+		textures = new ObjectMap<String,Texture>();
+		counts = new ObjectIntMap<String>();
+		packed = new ObjectSet<Texture>();
+		preferCompressed = true;
+		residentBytes = 0;
+		loadTime = 0;
+		loadCount = 0;
+	}
+
+	/**
+	 * Returns the single instance for the TextureController
+	 *
+	 * The first time this is called, it will construct the TextureController.
+	 *
+	 * @return the single instance for the TextureController
+	 */
+	public static TextureController getInstance() {
+		if (controller == null) {
+			controller = new TextureController();
+		}
+		return controller;
+	}
+
+	/**
+	 * Returns the texture for the given file, loading it if necessary.
+	 *
+	 * This increments the reference count for the file.  The caller must call
+	 * release() with the same path when it no longer needs the texture.
+	 *
+	 * If there is an opaque compressed copy of the file, that copy is loaded
+	 * instead.  Packed files (those returned by getPackedFile) may also be
+	 * acquired directly.
+	 *
+	 * @param file	The internal path of the texture
+	 *
+	 * @return the texture for the given file
+	 */
+	public Texture acquire(String file) {
+		Texture texture = textures.get(file);
+		if (texture == null) {
+			long start = TimeUtils.nanoTime();
+			texture = load(file);
+			loadTime += TimeUtils.nanoTime()-start;
+			loadCount++;
+			residentBytes += sizeOf(texture);
+			textures.put(file,texture);
+		}
+		counts.getAndIncrement(file,0,1);
+		return texture;
+	}
+
+	/**
+	 * Releases a reference to the texture for the given file.
+	 *
+	 * The texture is not disposed when the count reaches zero.  It remains
+	 * resident until the next call to purge().
+	 *
+	 * @param file	The internal path of the texture
+	 */
+	public void release(String file) {
+		int count = counts.get(file,0);
+		if (count > 0) {
+			counts.put(file,count-1);
+		}
+	}
+
+	/**
+	 * Returns the number of outstanding references to the given file.
+	 *
+	 * @param file	The internal path of the texture
+	 *
+	 * @return the number of outstanding references to the given file.
+	 */
+	public int getReferences(String file) {
+		return counts.get(file,0);
+	}
+
+	/**
+	 * Returns true if the texture for the given file is resident.
+	 *
+	 * @param file	The internal path of the texture
+	 *
+	 * @return true if the texture for the given file is resident.
+	 */
+	public boolean isLoaded(String file) {
+		return textures.containsKey(file);
+	}
+
+	/**
+	 * Returns true if the texture stores its alpha in the bottom half.
+	 *
+	 * Packed textures must be drawn with the GameCanvas alpha shader.  Regions
+	 * of a packed texture should only cover the top half.
+	 *
+	 * @param texture	The texture to check
+	 *
+	 * @return true if the texture stores its alpha in the bottom half.
+	 */
+	public boolean isPacked(Texture texture) {
+		return packed.contains(texture);
+	}
+
+	/**
+	 * Returns the path of the packed copy of a file, if there is one.
+	 *
+	 * If there is no packed copy (or compressed textures are disabled), this
+	 * returns the original path.  Either way, the result can be passed to
+	 * acquire() and release().
+	 *
+	 * @param file	The internal path of the texture
+	 *
+	 * @return the path of the packed copy of a file, if there is one.
+	 */
+	public String getPackedFile(String file) {
+		if (preferCompressed) {
+			String path = replaceExtension(file, PACKED_EXTENSION);
+			if (Gdx.files.internal(path).exists()) {
+				return path;
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Sets whether to use compressed copies of files when they exist
+	 *
+	 * This only affects textures loaded after the call.  It is useful for
+	 * comparing load times and memory with and without compression.
+	 *
+	 * @param value	Whether to use compressed copies of files when they exist
+	 */
+	public void setPreferCompressed(boolean value) {
+		preferCompressed = value;
+	}
+
+	/**
+	 * Returns true if compressed copies of files are used when they exist
+	 *
+	 * @return true if compressed copies of files are used when they exist
+	 */
+	public boolean isPreferCompressed() {
+		return preferCompressed;
+	}
+
+	/**
+	 * Disposes of every texture that no longer has any references.
+	 */
+	public void purge() {
+		Array<String> unused = new Array<String>();
+		for(ObjectMap.Entry<String,Texture> entry : textures.entries()) {
+			if (counts.get(entry.key,0) == 0) {
+				unused.add(entry.key);
+			}
+		}
+		for(String file : unused) {
+			unload(file);
+		}
+	}
+
+	/**
+	 * Disposes of every texture, regardless of the reference counts.
+	 *
+	 * This should only be called when the application shuts down.
+	 */
+	public void clear() {
+		for(Texture texture : textures.values()) {
+			texture.dispose();
+		}
+		textures.clear();
+		counts.clear();
+		packed.clear();
+		residentBytes = 0;
+	}
+
+	/**
+	 * Returns the estimated texture memory owned by this controller (in bytes)
+	 *
+	 * This is computed from the texture dimensions and pixel format, and does
+	 * not include any mipmaps.
+	 *
+	 * @return the estimated texture memory owned by this controller
+	 */
+	public long getResidentBytes() {
+		return residentBytes;
+	}
+
+	/**
+	 * Returns the total time spent decoding and uploading textures (in nanoseconds)
+	 *
+	 * @return the total time spent decoding and uploading textures
+	 */
+	public long getLoadTime() {
+		return loadTime;
+	}
+
+	/**
+	 * Returns the number of textures decoded since the controller was created
+	 *
+	 * @return the number of textures decoded since the controller was created
+	 */
+	public int getLoadCount() {
+		return loadCount;
+	}
+
+	/**
+	 * Disposes of a single texture and forgets about it.
+	 *
+	 * @param file	The internal path of the texture
+	 */
+	private void unload(String file) {
+		Texture texture = textures.remove(file);
+		if (texture != null) {
+			residentBytes -= sizeOf(texture);
+			packed.remove(texture);
+			texture.dispose();
+		}
+		counts.remove(file,0);
+	}
+
+	/**
+	 * Returns a new texture for the given file, preferring a compressed copy.
+	 *
+	 * @param file	The internal path of the texture
+	 *
+	 * @return a new texture for the given file
+	 */
+	private Texture load(String file) {
+		if (file.endsWith(PACKED_EXTENSION)) {
+			Texture texture = new Texture(new ETC1TextureData(Gdx.files.internal(file), false));
+			packed.add(texture);
+			return texture;
+		}
+		if (preferCompressed) {
+			FileHandle handle = Gdx.files.internal(replaceExtension(file, ETC1_EXTENSION));
+			if (handle.exists()) {
+				return new Texture(handle);
+			}
+			handle = Gdx.files.internal(replaceExtension(file, KTX_EXTENSION));
+			if (handle.exists()) {
+				return new Texture(handle);
+			}
+		}
+		return new Texture(Gdx.files.internal(file));
+	}
+
+	/**
+	 * Returns the file path with its extension replaced
+	 *
+	 * @param file		The file path
+	 * @param extension	The new extension (including the period)
+	 *
+	 * @return the file path with its extension replaced
+	 */
+	public static String replaceExtension(String file, String extension) {
+		int dot = file.lastIndexOf('.');
+		if (dot <= file.lastIndexOf('/')) {
+			return file+extension;
+		}
+		return file.substring(0,dot)+extension;
+	}
+
+	/**
+	 * Returns the estimated size of a texture in video memory (in bytes)
+	 *
+	 * ETC1 textures take half a byte per pixel when the GPU supports them.
+	 * Otherwise they are decoded to RGB565 before they are uploaded.
+	 *
+	 * @param texture	The texture to measure
+	 *
+	 * @return the estimated size of a texture in video memory
+	 */
+	public static long sizeOf(Texture texture) {
+		TextureData data = texture.getTextureData();
+		if (data instanceof ETC1TextureData && Gdx.graphics.supportsExtension(ETC1_GL_EXTENSION)) {
+			return (long)texture.getWidth()*texture.getHeight()/2;
+		}
+		int bytes = 4;
+		Pixmap.Format format = data.getFormat();
+		if (format != null) {
+			switch (format) {
+			case Alpha:
+			case Intensity:
+				bytes = 1;
+				break;
+			case LuminanceAlpha:
+			case RGB565:
+			case RGBA4444:
+				bytes = 2;
+				break;
+			case RGB888:
+				bytes = 3;
+				break;
+			default:
+				bytes = 4;
+			}
+		}
+		return (long)texture.getWidth()*texture.getHeight()*bytes;
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * BenchmarkLauncher.java
+ *
+ * Command line front end for the ScalingBenchmark.  It opens a window (the models
+ * need textures), plays generated levels of increasing size without drawing them,
+ * and writes the per-phase timings to a JSON file.
+ *
+ * This is run from gradle (gradle desktop:benchmark), with the assets directory
+ * as the working directory.  It is not part of the game itself.  To also count
+ * the cached position reads, add -Ddownstream.countReads=true (this slows down
+ * the getters, so the timings are not comparable).
+ */
+package edu.cornell.gdiac.downstream.desktop;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
+import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+
+import edu.cornell.gdiac.downstream.ScalingBenchmark;
+
+/**
+ * Command line tool to benchmark the game loop on levels of increasing size.
+ *
+ * Usage: BenchmarkLauncher [--scales 1,10,100,1000] [--seed n] [--out file|directory] [--serial]
+ */
+public class BenchmarkLauncher {
+	/** The directory to write results to when none is given */
+	private static final String DEFAULT_DIRECTORY = "benchmarks";
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args The level sizes, the seed, the output file or directory, and the mode
+	 */
+	public static void main(String[] args) {
+		float[] scales = ScalingBenchmark.DEFAULT_SCALES;
+		long seed = ScalingBenchmark.DEFAULT_SEED;
+		File output = new File(DEFAULT_DIRECTORY);
+		boolean parallel = true;
+		for (int ii = 0; ii < args.length; ii++) {
+			if (args[ii].equals("--scales") && ii+1 < args.length) {
+				String[] values = args[++ii].split(",");
+				scales = new float[values.length];
+				for (int jj = 0; jj < values.length; jj++) {
+					scales[jj] = Float.parseFloat(values[jj].trim());
+				}
+			} else if (args[ii].equals("--seed") && ii+1 < args.length) {
+				seed = Long.parseLong(args[++ii]);
+			} else if (args[ii].equals("--out") && ii+1 < args.length) {
+				output = new File(args[++ii]);
+			} else if (args[ii].equals("--serial")) {
+				parallel = false;
+			} else {
+				System.out.println("Usage: BenchmarkLauncher [--scales 1,10,100,1000] [--seed n] [--out file] [--serial]");
+				System.exit(1);
+			}
+		}
+		if (!output.getName().endsWith(".json")) {
+			String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+			output = new File(output, "scaling-"+stamp+".json");
+		}
+
+		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
+		config.width  = 1280;
+		config.height = 720;
+		config.resizable = false;
+		config.title = "Scaling benchmark";
+		ScalingBenchmark benchmark = new ScalingBenchmark(scales, seed, output);
+		benchmark.setParallel(parallel);
+		new LwjglApplication(benchmark, config);
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * CollectionBenchmark.java
+ *
+ * Microbenchmark comparing the collections that can hold the world objects:
+ * PooledList (the old store), Bag (swap-remove) and an ordered Array compacted in
+ * place (what ObjectStore does).  Each one runs the same sweep as postUpdate: visit
+ * every element, remove the ones that have expired, and add the same number back.
+ *
+ * This is run from gradle (gradle desktop:benchmarkCollections), with the desktop
+ * directory as the working directory.  It needs no natives and no window.  It is
+ * not part of the game itself.
+ */
+package edu.cornell.gdiac.downstream.desktop;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import com.badlogic.gdx.utils.Array;
+
+import edu.cornell.gdiac.util.Bag;
+import edu.cornell.gdiac.util.PooledList;
+
+/**
+ * Command line tool to time world object sweeps on each collection.
+ *
+ * Usage: CollectionBenchmark [size...]
+ */
+public class CollectionBenchmark {
+	/** The collection sizes to time when none are given */
+	private static final int[] DEFAULT_SIZES = { 100, 1000, 10000 };
+	/** The fraction of elements removed (and replaced) per sweep */
+	private static final float REMOVAL_RATE = 0.01f;
+	/** How long to warm up each case (in nanoseconds) */
+	private static final long WARMUP_NANOS = 500000000L;
+	/** How long to time each trial (in nanoseconds) */
+	private static final long TRIAL_NANOS = 200000000L;
+	/** The number of timed trials per case; the median is reported */
+	private static final int TRIALS = 5;
+
+	/** Stand-in for an obstacle, with the fields the sweep touches */
+	private static class Item {
+		/** The number of sweeps until the item is removed */
+		int life;
+		/** The number of times the item was updated */
+		int ticks;
+
+		/** Creates an item with a random lifetime (1% of items expire per sweep) */
+		Item() {
+			life = 1+random.nextInt((int)(2/REMOVAL_RATE));
+		}
+
+		/** Stand-in for Obstacle.isRemoved */
+		boolean isRemoved() {
+			return ticks >= life;
+		}
+
+		/** Stand-in for Obstacle.update */
+		void update() {
+			ticks++;
+		}
+	}
+
+	/** A collection under test */
+	private static abstract class Case {
+		/** The name to report */
+		final String name;
+
+		Case(String name) {
+			this.name = name;
+		}
+
+		/** Fills the collection with n new items */
+		abstract void fill(int n);
+		/** Runs one sweep, replacing removed items, and returns the number visited */
+		abstract int sweep();
+	}
+
+	/** Random source for item lifetimes */
+	private static Random random = new Random(42);
+	/** Sink for results, so the JIT cannot discard the sweeps */
+	private static long sink;
+
+	/**
+	 * Times every collection at each size and prints the results.
+	 *
+	 * @param args The collection sizes
+	 */
+	public static void main(String[] args) {
+		int[] sizes = DEFAULT_SIZES;
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int ii = 0; ii < args.length; ii++) {
+				sizes[ii] = Integer.parseInt(args[ii]);
+			}
+		}
+
+		System.out.println(String.format("%-12s %8s %14s %14s", "collection", "size", "ns/sweep", "ns/element"));
+		for (int n : sizes) {
+			Case[] cases = { pooledList(), bag(), orderedArray() };
+			for (Case c : cases) {
+				c.fill(n);
+				run(c, WARMUP_NANOS);
+				double[] trials = new double[TRIALS];
+				for (int ii = 0; ii < TRIALS; ii++) {
+					trials[ii] = run(c, TRIAL_NANOS);
+				}
+				Arrays.sort(trials);
+				double median = trials[TRIALS/2];
+				System.out.println(String.format("%-12s %8d %14.1f %14.2f", c.name, n, median, median/n));
+			}
+		}
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Returns the mean time per sweep, sweeping for at least the given time.
+	 *
+	 * @param c		The collection under test
+	 * @param nanos	How long to run
+	 *
+	 * @return the mean time per sweep (in nanoseconds)
+	 */
+	private static double run(Case c, long nanos) {
+		long start = System.nanoTime();
+		long elapsed;
+		int sweeps = 0;
+		do {
+			sink += c.sweep();
+			sweeps++;
+			elapsed = System.nanoTime()-start;
+		} while (elapsed < nanos);
+		return elapsed/(double)sweeps;
+	}
+
+	/**
+	 * Returns the old store: a PooledList swept with its entry iterator
+	 *
+	 * @return the PooledList case
+	 */
+	private static Case pooledList() {
+		return new Case("PooledList") {
+			PooledList<Item> list = new PooledList<Item>();
+
+			void fill(int n) {
+				for (int ii = 0; ii < n; ii++) {
+					list.add(new Item());
+				}
+			}
+
+			int sweep() {
+				int visited = 0;
+				int removed = 0;
+				Iterator<PooledList<Item>.Entry> iterator = list.entryIterator();
+				while (iterator.hasNext()) {
+					PooledList<Item>.Entry entry = iterator.next();
+					Item item = entry.getValue();
+					if (item.isRemoved()) {
+						entry.remove();
+						removed++;
+					} else {
+						item.update();
+					}
+					visited++;
+				}
+				for (int ii = 0; ii < removed; ii++) {
+					list.add(new Item());
+				}
+				return visited;
+			}
+		};
+	}
+
+	/**
+	 * Returns a Bag swept by index with swap-remove
+	 *
+	 * @return the Bag case
+	 */
+	private static Case bag() {
+		return new Case("Bag") {
+			Bag<Item> bag = new Bag<Item>();
+
+			void fill(int n) {
+				for (int ii = 0; ii < n; ii++) {
+					bag.add(new Item());
+				}
+			}
+
+			int sweep() {
+				int visited = 0;
+				int removed = 0;
+				for (int ii = 0; ii < bag.size(); ) {
+					Item item = bag.get(ii);
+					if (item.isRemoved()) {
+						bag.removeIndex(ii);
+						removed++;
+					} else {
+						item.update();
+						ii++;
+					}
+					visited++;
+				}
+				for (int ii = 0; ii < removed; ii++) {
+					bag.add(new Item());
+				}
+				return visited;
+			}
+		};
+	}
+
+	/**
+	 * Returns an ordered Array compacted in place (as ObjectStore sweeps)
+	 *
+	 * @return the ordered Array case
+	 */
+	private static Case orderedArray() {
+		return new Case("Array") {
+			Array<Item> array = new Array<Item>(true, 16, Item.class);
+
+			void fill(int n) {
+				for (int ii = 0; ii < n; ii++) {
+					array.add(new Item());
+				}
+			}
+
+			int sweep() {
+				int kept = 0;
+				int size = array.size;
+				for (int ii = 0; ii < size; ii++) {
+					Item item = array.get(ii);
+					if (!item.isRemoved()) {
+						item.update();
+						array.set(kept++, item);
+					}
+				}
+				array.truncate(kept);
+				for (int ii = kept; ii < size; ii++) {
+					array.add(new Item());
+				}
+				return size;
+			}
+		};
+	}
+}
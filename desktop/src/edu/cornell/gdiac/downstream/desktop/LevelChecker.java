@@ -0,0 +1,79 @@
+/*
+ * LevelChecker.java
+ *
+ * Command line front end for the LevelValidator.  It checks every level in the
+ * levels directory at once and prints a table of problems and load timings.  It
+ * exits with a non-zero status if any level is broken, so that it can be run
+ * before a build.
+ *
+ * This is run from gradle (gradle desktop:checkLevels), with the desktop
+ * directory as the working directory.  It is not part of the game itself.
+ */
+package edu.cornell.gdiac.downstream.desktop;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import com.badlogic.gdx.math.Vector2;
+
+import edu.cornell.gdiac.downstream.LevelValidator;
+
+/**
+ * Command line tool to validate and profile every level in a directory.
+ *
+ * Usage: LevelChecker [directory] [--no-bodies]
+ */
+public class LevelChecker {
+	/** The directory to check when none is given */
+	private static final String DEFAULT_DIRECTORY = "levels";
+	/** The draw scale for the default window (see DesktopLauncher) */
+	private static final Vector2 SCALE = new Vector2(1280/32.0f, 720/18.0f);
+
+	/**
+	 * Validates every level and prints the results.
+	 *
+	 * @param args The level directory, and --no-bodies to skip body timing
+	 */
+	public static void main(String[] args) {
+		String dir = DEFAULT_DIRECTORY;
+		boolean bodies = true;
+		for(String arg : args) {
+			if (arg.equals("--no-bodies")) {
+				bodies = false;
+			} else {
+				dir = arg;
+			}
+		}
+		if (bodies) {
+			try {
+				new com.badlogic.gdx.utils.SharedLibraryLoader().load("gdx-box2d");
+			} catch (Throwable e) {
+				System.out.println("Box2D natives are not available; skipping body timing");
+				bodies = false;
+			}
+		}
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		long start = System.nanoTime();
+		ArrayList<LevelValidator.Report> reports = LevelValidator.validateAll(new File(dir), SCALE, bodies, threads);
+		long total = System.nanoTime()-start;
+
+		int broken = 0;
+		System.out.println(String.format("%-12s %8s %8s %8s %10s %10s %10s", "level", "polys", "tris", "pieces", "parse ms", "tri ms", "build ms"));
+		for(LevelValidator.Report report : reports) {
+			System.out.println(String.format("%-12s %8d %8d %8d %10.3f %10.3f %10s",
+					report.file.getName(), report.polygons, report.triangles, report.pieces,
+					report.parseTime/1e6, report.triangulateTime/1e6,
+					report.buildTime < 0 ? "-" : String.format("%.3f", report.buildTime/1e6)));
+			for(String error : report.errors) {
+				System.out.println("    "+error);
+			}
+			if (!report.isValid()) {
+				broken++;
+			}
+		}
+		System.out.println(reports.size()+" levels checked on "+threads+" threads in "
+						   +String.format("%.1f", total/1e6)+" ms, "+broken+" with problems");
+		System.exit(broken == 0 ? 0 : 1);
+	}
+}
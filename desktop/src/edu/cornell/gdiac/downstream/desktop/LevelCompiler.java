@@ -0,0 +1,55 @@
+/*
+ * LevelCompiler.java
+ *
+ * Offline conversion of our JSON levels into the compiled .dlvl format.  The
+ * game still loads the JSON if there is no compiled level (or if it is out of
+ * date), so this only needs to be run before shipping or timing a build.
+ *
+ * This is run from gradle (gradle desktop:compileLevels), with the desktop
+ * directory as the working directory.  It is not part of the game itself.
+ */
+package edu.cornell.gdiac.downstream.desktop;
+
+import java.io.File;
+import java.io.IOException;
+
+import edu.cornell.gdiac.downstream.CompiledLevel;
+
+/**
+ * Command line tool to compile every JSON level in the given directories.
+ *
+ * Each levels/N.json is compiled to levels/N.dlvl, next to the original.
+ */
+public class LevelCompiler {
+	/** The directory to convert when none is given */
+	private static final String DEFAULT_DIRECTORY = "levels";
+
+	/**
+	 * Compiles every JSON level in the given directories.
+	 *
+	 * @param args The directories to convert, relative to the working directory
+	 */
+	public static void main(String[] args) {
+		String[] directories = (args.length == 0 ? new String[] { DEFAULT_DIRECTORY } : args);
+		for(String dir : directories) {
+			File[] files = new File(dir).listFiles();
+			if (files == null) {
+				System.out.println("Skipping "+dir+" (not a directory)");
+				continue;
+			}
+			for(File file : files) {
+				String name = file.getName();
+				if (!name.endsWith(".json")) {
+					continue;
+				}
+				File output = new File(dir, name.substring(0, name.length()-5)+CompiledLevel.EXTENSION);
+				try {
+					CompiledLevel.compile(file, output);
+					System.out.println(file.getPath()+" -> "+output.getName()+" ("+file.length()+" -> "+output.length()+" bytes)");
+				} catch (IOException e) {
+					System.out.println(file.getPath()+": "+e);
+				}
+			}
+		}
+	}
+}
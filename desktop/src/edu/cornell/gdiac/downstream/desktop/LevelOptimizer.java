@@ -0,0 +1,77 @@
+/*
+ * LevelOptimizer.java
+ *
+ * Command line front end for the PathSimplifier.  It removes the redundant
+ * vertices from every wall and shore in the levels directory, and reports how
+ * many vertices and triangles each level had before and after.
+ *
+ * This is run from gradle (gradle desktop:optimizeLevels), with the desktop
+ * directory as the working directory.  It is not part of the game itself.
+ * Run compileLevels afterwards, since the compiled levels will be out of date.
+ */
+package edu.cornell.gdiac.downstream.desktop;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+
+import edu.cornell.gdiac.downstream.PathSimplifier;
+
+/**
+ * Command line tool to simplify the walls and shores of every level in a directory.
+ *
+ * Usage: LevelOptimizer [directory] [--tolerance t] [--dry-run]
+ */
+public class LevelOptimizer {
+	/** The directory to optimize when none is given */
+	private static final String DEFAULT_DIRECTORY = "levels";
+
+	/**
+	 * Optimizes every level and prints the results.
+	 *
+	 * @param args The level directory, the tolerance, and --dry-run to only report
+	 */
+	public static void main(String[] args) {
+		String dir = DEFAULT_DIRECTORY;
+		float tolerance = PathSimplifier.DEFAULT_TOLERANCE;
+		boolean write = true;
+		for(int ii = 0; ii < args.length; ii++) {
+			if (args[ii].equals("--dry-run")) {
+				write = false;
+			} else if (args[ii].equals("--tolerance") && ii+1 < args.length) {
+				tolerance = Float.parseFloat(args[++ii]);
+			} else {
+				dir = args[ii];
+			}
+		}
+
+		File[] files = new File(dir).listFiles(new FilenameFilter() {
+			public boolean accept(File parent, String name) {
+				return name.endsWith(".json");
+			}
+		});
+		if (files == null) {
+			System.out.println(dir+" is not a directory");
+			return;
+		}
+		Arrays.sort(files);
+
+		int vertsBefore = 0, vertsAfter = 0, trisBefore = 0, trisAfter = 0;
+		System.out.println(String.format("%-12s %16s %16s", "level", "vertices", "triangles"));
+		for(File file : files) {
+			try {
+				PathSimplifier.Report report = PathSimplifier.optimize(file, tolerance, write);
+				System.out.println(String.format("%-12s %7d -> %5d %7d -> %5d", file.getName(),
+						report.verticesBefore, report.verticesAfter, report.trianglesBefore, report.trianglesAfter));
+				vertsBefore += report.verticesBefore;
+				vertsAfter  += report.verticesAfter;
+				trisBefore  += report.trianglesBefore;
+				trisAfter   += report.trianglesAfter;
+			} catch (Exception e) {
+				System.out.println(file.getName()+": "+e);
+			}
+		}
+		System.out.println(String.format("%-12s %7d -> %5d %7d -> %5d", "total", vertsBefore, vertsAfter, trisBefore, trisAfter));
+		System.out.println("Tolerance "+tolerance+(write ? "" : " (dry run, nothing written)"));
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * TextureCompressor.java
+ *
+ * Offline conversion of our PNG sprite sheets into ETC1.  The sheets are huge
+ * RGBA images, and most of them are far larger in video memory than anything
+ * the screen can show.  ETC1 is a quarter of the size of RGB565, but it has no
+ * alpha channel.  So images with transparency are packed: the color goes in the
+ * top half of the texture and the alpha (as gray) goes in the bottom half.  The
+ * GameCanvas has a shader that puts them back together.
+ *
+ * This is run from gradle (gradle desktop:compressTextures), with the assets
+ * directory as the working directory.  It is not part of the game itself.
+ */
+package edu.cornell.gdiac.downstream.desktop;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.glutils.ETC1;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import edu.cornell.gdiac.util.TextureController;
+
+/**
+ * Command line tool to write ETC1 copies of every PNG in the given directories.
+ *
+ * Opaque images are written as .etc1 files, which the TextureController uses in
+ * place of the original.  Images with transparency are written as packed .etc1a
+ * files, which are only used for sprite sheets.  Files that are already up to
+ * date are skipped, so it is safe to run this after every art drop.
+ */
+public class TextureCompressor {
+	/** The directories to convert when none are given */
+	private static final String[] DEFAULT_DIRECTORIES = { "koi", "enemy", "tethers" };
+
+	/** The number of bytes of PNG that were converted */
+	private static long sourceBytes = 0;
+	/** The number of bytes of ETC1 that were written */
+	private static long outputBytes = 0;
+
+	/**
+	 * Converts every PNG in the given directories (recursively).
+	 *
+	 * @param args The directories to convert, relative to the working directory
+	 */
+	public static void main(String[] args) {
+		GdxNativesLoader.load();
+		String[] directories = (args.length == 0 ? DEFAULT_DIRECTORIES : args);
+		for(String dir : directories) {
+			FileHandle handle = new FileHandle(dir);
+			if (!handle.isDirectory()) {
+				System.out.println("Skipping "+dir+" (not a directory)");
+				continue;
+			}
+			convertDirectory(handle);
+		}
+		System.out.println("PNG: "+sourceBytes/1024+" KB, ETC1: "+outputBytes/1024+" KB");
+	}
+
+	/**
+	 * Converts every PNG in the given directory (recursively).
+	 *
+	 * @param dir The directory to convert
+	 */
+	private static void convertDirectory(FileHandle dir) {
+		for(FileHandle child : dir.list()) {
+			if (child.isDirectory()) {
+				convertDirectory(child);
+			} else if (child.extension().equalsIgnoreCase("png")) {
+				convertFile(child);
+			}
+		}
+	}
+
+	/**
+	 * Writes the ETC1 copy of a single PNG, if it is out of date.
+	 *
+	 * Only one of the .etc1 or .etc1a copies is kept, since the image may have
+	 * gained or lost transparency since the last conversion.
+	 *
+	 * @param file The PNG file
+	 */
+	private static void convertFile(FileHandle file) {
+		String path = file.path();
+		FileHandle plain  = new FileHandle(TextureController.replaceExtension(path, TextureController.ETC1_EXTENSION));
+		FileHandle packed = new FileHandle(TextureController.replaceExtension(path, TextureController.PACKED_EXTENSION));
+		if (plain.lastModified() > file.lastModified() || packed.lastModified() > file.lastModified()) {
+			return;
+		}
+
+		Pixmap source = new Pixmap(file);
+		Pixmap image;
+		FileHandle output;
+		if (isOpaque(source)) {
+			image  = copy(source, false);
+			output = plain;
+			packed.delete();
+		} else {
+			image  = copy(source, true);
+			output = packed;
+			plain.delete();
+		}
+
+		ETC1.ETC1Data data = ETC1.encodeImagePKM(image);
+		data.write(output);
+		data.dispose();
+		image.dispose();
+		source.dispose();
+
+		sourceBytes += file.length();
+		outputBytes += output.length();
+		System.out.println(path+" -> "+output.name()+" ("+file.length()/1024+" KB -> "+output.length()/1024+" KB)");
+	}
+
+	/**
+	 * Returns true if every pixel in the image is fully opaque
+	 *
+	 * @param pixmap The image to check
+	 *
+	 * @return true if every pixel in the image is fully opaque
+	 */
+	private static boolean isOpaque(Pixmap pixmap) {
+		if (pixmap.getFormat() == Pixmap.Format.RGB888 || pixmap.getFormat() == Pixmap.Format.RGB565) {
+			return true;
+		}
+		for(int y = 0; y < pixmap.getHeight(); y++) {
+			for(int x = 0; x < pixmap.getWidth(); x++) {
+				if ((pixmap.getPixel(x, y) & 0xff) != 0xff) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns an RGB888 copy of the image, ready for ETC1 encoding.
+	 *
+	 * If pack is true, the copy is twice as tall.  The color is in the top half
+	 * and the alpha, as gray, is in the bottom half.
+	 *
+	 * @param source	The image to copy
+	 * @param pack		Whether to append the alpha channel
+	 *
+	 * @return an RGB888 copy of the image
+	 */
+	private static Pixmap copy(Pixmap source, boolean pack) {
+		int width  = source.getWidth();
+		int height = source.getHeight();
+
+		// Blending is global in this version of LibGDX, so restore it afterwards
+		Pixmap rgba = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+		Pixmap.setBlending(Pixmap.Blending.None);
+		rgba.drawPixmap(source, 0, 0);
+		Pixmap.setBlending(Pixmap.Blending.SourceOver);
+
+		Pixmap result = new Pixmap(width, pack ? 2*height : height, Pixmap.Format.RGB888);
+		ByteBuffer in  = rgba.getPixels();
+		ByteBuffer out = result.getPixels();
+		int alphaOffset = width*height*3;
+		for(int ii = 0; ii < width*height; ii++) {
+			out.put(3*ii,   in.get(4*ii));
+			out.put(3*ii+1, in.get(4*ii+1));
+			out.put(3*ii+2, in.get(4*ii+2));
+			if (pack) {
+				byte alpha = in.get(4*ii+3);
+				out.put(alphaOffset+3*ii,   alpha);
+				out.put(alphaOffset+3*ii+1, alpha);
+				out.put(alphaOffset+3*ii+2, alpha);
+			}
+		}
+		rgba.dispose();
+		return result;
+	}
+}